@@ -0,0 +1,21 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.fetch")
+public class FetchSettings {
+    private long connectTimeoutMs = 5000;
+    private long timeoutMs = 5000;
+    /** Сколько байт тела ответа читать; остаток страницы отбрасывается. */
+    private int maxBodySize = 5 * 1024 * 1024;
+    /** Запрашивать у сервера сжатый ответ (gzip, deflate). */
+    private boolean compression = true;
+    /** Общий лимит одновременных запросов ко всем сайтам; слоты делятся между сайтами по кругу. */
+    private int maxInFlight = 16;
+}
@@ -0,0 +1,17 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.index-writer")
+public class IndexWriterSettings {
+    /** Сколько строк index накапливать перед записью в базу. */
+    private int flushSize = 5000;
+    /** Как часто записывать накопленное, даже если буфер не заполнен. */
+    private long flushIntervalMs = 2000;
+}
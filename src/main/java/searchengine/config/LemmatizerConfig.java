@@ -0,0 +1,19 @@
+package searchengine.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import searchengine.util.LemmaFinder;
+
+import java.io.IOException;
+
+/**
+ * Общий лемматизатор для индексации и поиска: словари морфологии загружаются один раз при старте.
+ */
+@Configuration
+public class LemmatizerConfig {
+
+    @Bean
+    public LemmaFinder lemmaFinder() throws IOException {
+        return LemmaFinder.getInstance();
+    }
+}
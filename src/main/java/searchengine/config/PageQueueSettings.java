@@ -0,0 +1,19 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.page-queue")
+public class PageQueueSettings {
+    /** Потоки, которые переиндексируют отдельные страницы по запросам /api/indexPage. */
+    private int threads = 1;
+    /** Сколько страниц может ждать в очереди; сверх этого запросы отклоняются. */
+    private int capacity = 10000;
+    /** Сколько завершённых задач хранить, чтобы их состояние можно было запросить. */
+    private int historySize = 1000;
+}
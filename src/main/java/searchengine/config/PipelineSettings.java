@@ -0,0 +1,21 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.pipeline")
+public class PipelineSettings {
+    /** Потоки разбора HTML и извлечения ссылок. */
+    private int parseThreads = Runtime.getRuntime().availableProcessors();
+    /** Потоки лемматизации текста страниц. */
+    private int lemmatizeThreads = Runtime.getRuntime().availableProcessors();
+    /** Потоки записи страниц в базу. */
+    private int persistThreads = 2;
+    /** Ёмкость очереди перед каждой стадией; заполненная очередь останавливает предыдущую стадию. */
+    private int queueCapacity = 256;
+}
@@ -0,0 +1,28 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.resources")
+public class ResourceSettings {
+    /** Расширения файлов, которые не загружаются совсем: документы, изображения, архивы, медиа. */
+    private List<String> skippedExtensions = new ArrayList<>(List.of(
+            "pdf", "doc", "docx", "xls", "xlsx", "ppt", "pptx", "odt", "ods", "odp", "rtf", "csv",
+            "jpg", "jpeg", "png", "gif", "webp", "svg", "bmp", "ico", "tif", "tiff", "avif", "heic",
+            "zip", "rar", "7z", "gz", "tgz", "tar", "bz2", "xz", "exe", "msi", "dmg", "apk", "iso", "bin",
+            "mp3", "wav", "ogg", "flac", "m4a", "aac", "mp4", "m4v", "avi", "mov", "mkv", "wmv", "flv", "webm",
+            "css", "js", "json", "xml", "rss", "atom", "woff", "woff2", "ttf", "otf", "eot", "txt"));
+    /** Расширения страниц, которые загружаются без предварительной проверки; адрес без расширения тоже страница. */
+    private List<String> htmlExtensions = new ArrayList<>(List.of(
+            "html", "htm", "xhtml", "shtml", "php", "asp", "aspx", "jsp", "cfm"));
+    /** Проверять адрес с незнакомым расширением запросом HEAD, прежде чем загружать его. */
+    private boolean headProbe = true;
+}
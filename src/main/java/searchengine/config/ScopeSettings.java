@@ -0,0 +1,35 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.scope")
+public class ScopeSettings {
+    /** Сколько переходов по ссылкам от главной страницы разрешено; 0 – без ограничения. */
+    private int maxDepth = 0;
+    /** Сколько адресов обходить на одном сайте; 0 – без ограничения. */
+    private int maxPages = 0;
+    /** Параметры запроса, которые сохраняются в адресе; если список пуст, сохраняются все, кроме запрещённых. */
+    private List<String> allowedQueryParams = new ArrayList<>();
+    /**
+     * Параметры запроса, которые удаляются из адреса; «*» в конце задаёт префикс.
+     * По умолчанию – только метки рекламных систем и идентификаторы сессий. Общие имена
+     * вроде from и sid на некоторых сайтах выбирают содержимое, поэтому их нужно добавлять явно.
+     */
+    private List<String> deniedQueryParams = new ArrayList<>(List.of(
+            "utm_*", "fbclid", "gclid", "yclid", "ymclid", "_openstat", "sessionid", "phpsessid", "jsessionid"));
+    /** Регулярные выражения путей, которые не обходятся (например, бесконечные календари). */
+    private List<String> excludedPaths = new ArrayList<>();
+    /** Считать «/path/» и «/path» одним адресом. */
+    private boolean stripTrailingSlash = true;
+    /** Сколько раз один сегмент может повторяться в пути, прежде чем адрес считается ловушкой. */
+    private int maxRepeatedSegments = 3;
+}
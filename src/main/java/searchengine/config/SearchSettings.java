@@ -0,0 +1,18 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.search")
+public class SearchSettings {
+    /**
+     * Держать обратный индекс в памяти и искать по нему без запросов к таблицам index и lemma.
+     * Индекс загружается из базы при запуске и занимает 8–12 байт на строку index.
+     */
+    private boolean inMemoryIndex = false;
+}
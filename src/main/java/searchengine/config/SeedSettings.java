@@ -0,0 +1,21 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.seed")
+public class SeedSettings {
+    /** Соблюдать запреты и Crawl-delay из robots.txt. */
+    private boolean robots = true;
+    /** Заполнять очередь обхода адресами из sitemap.xml. */
+    private boolean sitemaps = true;
+    /** Сколько файлов карт сайта (вместе с вложенными) загружать на один сайт. */
+    private int maxSitemaps = 20;
+    /** Сколько адресов из карт сайта ставить в очередь на один сайт. */
+    private int maxSitemapUrls = 50000;
+}
@@ -8,4 +8,8 @@ import lombok.Setter;
 public class Site {
     private String url;
     private String name;
+    /** Сколько запросов в секунду разрешено отправлять на хост сайта. */
+    private double requestsPerSecond = 2.0;
+    /** Сколько запросов к хосту сайта может выполняться одновременно. */
+    private int maxInFlight = 4;
 }
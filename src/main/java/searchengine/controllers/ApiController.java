@@ -4,8 +4,10 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import searchengine.dto.indexing.IndexPageResponse;
 import searchengine.dto.search.SearchResponse;
 import searchengine.dto.statistics.GenericResponse;
+import searchengine.dto.statistics.PipelineStatisticsResponse;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.services.IndexingService;
 import searchengine.services.SearchService;
@@ -25,6 +27,11 @@ public class ApiController {
         return ResponseEntity.ok(statisticsService.getStatistics());
     }
 
+    @GetMapping("/pipelineStatistics")
+    public ResponseEntity<PipelineStatisticsResponse> pipelineStatistics() {
+        return ResponseEntity.ok(statisticsService.getPipelineStatistics());
+    }
+
     @GetMapping("/startIndexing")
     public ResponseEntity<GenericResponse> startIndexing() {
         GenericResponse response = indexingService.startIndexing();
@@ -45,6 +52,38 @@ public class ApiController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/startIncrementalIndexing")
+    public ResponseEntity<GenericResponse> startIncrementalIndexing() {
+        GenericResponse response = indexingService.startIncrementalIndexing();
+        if (!response.isResult()) {
+            HttpStatus status = HttpStatus.BAD_REQUEST;
+            String error = response.getError();
+            if (error != null) {
+                if (error.startsWith("Ошибка базы данных") || error.startsWith("Ошибка при работе с базой данных")) {
+                    status = HttpStatus.INTERNAL_SERVER_ERROR;
+                }
+            }
+            return ResponseEntity.status(status).body(response);
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/resumeIndexing")
+    public ResponseEntity<GenericResponse> resumeIndexing() {
+        GenericResponse response = indexingService.resumeIndexing();
+        if (!response.isResult()) {
+            HttpStatus status = HttpStatus.BAD_REQUEST;
+            String error = response.getError();
+            if (error != null) {
+                if (error.startsWith("Ошибка базы данных") || error.startsWith("Ошибка при работе с базой данных")) {
+                    status = HttpStatus.INTERNAL_SERVER_ERROR;
+                }
+            }
+            return ResponseEntity.status(status).body(response);
+        }
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/stopIndexing")
     public ResponseEntity<GenericResponse> stopIndexing() {
         GenericResponse response = indexingService.stopIndexing();
@@ -65,8 +104,9 @@ public class ApiController {
     }
 
     @PostMapping("/indexPage")
-    public ResponseEntity<GenericResponse> indexPage(@RequestParam("url") String url) {
-        GenericResponse response = indexingService.indexPage(url);
+    public ResponseEntity<IndexPageResponse> indexPage(@RequestParam("url") String url,
+                                                       @RequestParam(value = "priority", defaultValue = "0") int priority) {
+        IndexPageResponse response = indexingService.indexPage(url, priority);
         if (!response.isResult()) {
             HttpStatus status = HttpStatus.BAD_REQUEST;
             String error = response.getError();
@@ -74,13 +114,21 @@ public class ApiController {
                 if (error.startsWith("Данная страница находится за пределами")) {
                     status = HttpStatus.BAD_REQUEST;
                 }
-                if (error.startsWith("Ошибка базы данных") || error.startsWith("Ошибка при работе с базой данных")
-                        || error.startsWith("Ошибка при индексации страницы")) {
-                    status = HttpStatus.INTERNAL_SERVER_ERROR;
+                if (error.startsWith("Очередь переиндексации страниц")) {
+                    status = HttpStatus.SERVICE_UNAVAILABLE;
                 }
             }
             return ResponseEntity.status(status).body(response);
         }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    @GetMapping("/indexPage/status")
+    public ResponseEntity<IndexPageResponse> indexPageStatus(@RequestParam("ticket") long ticket) {
+        IndexPageResponse response = indexingService.getPageTask(ticket);
+        if (!response.isResult()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
         return ResponseEntity.ok(response);
     }
 
@@ -1,13 +1,52 @@
 package searchengine.dao;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import searchengine.model.IndexEntity;
-import searchengine.model.Page;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface IndexRepository extends JpaRepository<IndexEntity, Integer> {
-    List<IndexEntity> findByPage(Page page);
+    /**
+     * Страницы, на которых встречается хотя бы одна из лемм. Читается только индекс (lemma_id, page_id).
+     */
+    @Query("SELECT DISTINCT i.page.id FROM IndexEntity i WHERE i.lemma.id IN :lemmaIds")
+    List<Integer> findPageIdsByLemmaIds(@Param("lemmaIds") Collection<Integer> lemmaIds);
+
+    /**
+     * То же, что {@link #findPageIdsByLemmaIds}, но только среди заданных страниц.
+     */
+    @Query("SELECT DISTINCT i.page.id FROM IndexEntity i WHERE i.lemma.id IN :lemmaIds AND i.page.id IN :pageIds")
+    List<Integer> findPageIdsByLemmaIdsAndPageIds(@Param("lemmaIds") Collection<Integer> lemmaIds,
+                                                  @Param("pageIds") Collection<Integer> pageIds);
+
+    @Query("SELECT i.page.id AS pageId, SUM(i.rank) AS relevance FROM IndexEntity i "
+            + "WHERE i.page.id IN :pageIds AND i.lemma.id IN :lemmaIds GROUP BY i.page.id")
+    List<PageRank> sumRanksByPageIds(@Param("pageIds") Collection<Integer> pageIds,
+                                     @Param("lemmaIds") Collection<Integer> lemmaIds);
+
+    /**
+     * Вхождения лемм запроса на страницах окна результатов – для сниппетов.
+     */
+    @Query("SELECT i.page.id AS pageId, i.positions AS positions FROM IndexEntity i "
+            + "WHERE i.page.id IN :pageIds AND i.lemma.lemma IN :lemmas")
+    List<PagePositions> findPositions(@Param("pageIds") Collection<Integer> pageIds,
+                                      @Param("lemmas") Collection<String> lemmas);
+
+    /**
+     * Сумма rank лемм запроса на странице – абсолютная релевантность.
+     */
+    interface PageRank {
+        int getPageId();
+        double getRelevance();
+    }
+
+    interface PagePositions {
+        int getPageId();
+        byte[] getPositions();
+    }
 }
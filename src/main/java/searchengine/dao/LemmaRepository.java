@@ -6,10 +6,13 @@ import searchengine.model.Lemma;
 import searchengine.model.Site;
 
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface LemmaRepository extends JpaRepository<Lemma, Integer> {
     Optional<Lemma> findBySiteAndLemma(Site site, String lemma);
     int countBySite(searchengine.model.Site site);
+    List<Lemma> findBySiteInAndLemmaIn(Collection<Site> sites, Collection<String> lemmas);
 }
@@ -8,6 +8,8 @@ import org.springframework.stereotype.Repository;
 import searchengine.model.Page;
 import searchengine.model.Site;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -21,4 +23,40 @@ public interface PageRepository extends JpaRepository<Page, Integer> {
     Optional<Page> findBySiteAndPath(Site site, String path);
     int countBySite(searchengine.model.Site site);
 
+    @Query("SELECT p.path FROM Page p WHERE p.site = :site")
+    List<String> findPathsBySite(@Param("site") Site site);
+
+    @Query("SELECT p.id AS id, p.path AS path, p.contentHash AS contentHash, p.etag AS etag, "
+            + "p.lastModified AS lastModified FROM Page p WHERE p.site = :site")
+    List<PageFingerprint> findFingerprintsBySite(@Param("site") Site site);
+
+    @Query("SELECT p.id AS id, p.path AS path, p.title AS title, p.text AS text, "
+            + "s.id AS siteId, s.url AS siteUrl, s.name AS siteName "
+            + "FROM Page p JOIN p.site s WHERE p.id IN :ids")
+    List<PageSummary> findSummariesByIdIn(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Данные страницы для результата поиска, без сжатого HTML.
+     */
+    interface PageSummary {
+        int getId();
+        String getPath();
+        String getTitle();
+        String getText();
+        int getSiteId();
+        String getSiteUrl();
+        String getSiteName();
+    }
+
+    /**
+     * Данные страницы, нужные для условного запроса и сравнения содержимого, без самого HTML.
+     */
+    interface PageFingerprint {
+        int getId();
+        String getPath();
+        String getContentHash();
+        String getEtag();
+        String getLastModified();
+    }
+
 }
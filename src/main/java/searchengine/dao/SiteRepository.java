@@ -11,5 +11,14 @@ import java.util.List;
 public interface SiteRepository extends JpaRepository<Site, Integer> {
     List<Site> findByStatus(SiteStatus status);
     void deleteByUrl(String url);
-    Site findByUrl(String url);
+
+    /** Действующее поколение сайта: по нему идёт поиск. */
+    Site findByUrlAndLiveTrue(String url);
+
+    /** Самое новое поколение сайта: строящееся, если полная индексация не закончена. */
+    Site findFirstByUrlOrderByIdDesc(String url);
+
+    List<Site> findByUrlAndLiveFalse(String url);
+
+    List<Site> findByLiveTrue();
 }
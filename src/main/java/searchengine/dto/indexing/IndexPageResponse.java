@@ -0,0 +1,27 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class IndexPageResponse {
+    private boolean result;
+    private String error;
+
+    /** Номер задачи: по нему состояние запрашивается через /api/indexPage/status. */
+    private Long ticket;
+    private String url;
+    private Integer priority;
+    /** Состояние задачи: QUEUED, RUNNING, DONE или FAILED. */
+    private String status;
+    /** Сколько запросов одного адреса объединено в этой задаче. */
+    private Integer requests;
+    /** Почему страницу не удалось переиндексировать, если status = FAILED. */
+    private String failure;
+
+    public IndexPageResponse(boolean result, String error) {
+        this.result = result;
+        this.error = error;
+    }
+}
@@ -0,0 +1,16 @@
+package searchengine.dto.statistics;
+
+import lombok.Data;
+
+@Data
+public class PipelineStageStatistics {
+    private String name;
+    private int workers;
+    private int busyWorkers;
+    private int queueSize;
+    private int queueCapacity;
+    private long processed;
+    private long failed;
+    private double averageMillis;
+    private double throughputPerSecond;
+}
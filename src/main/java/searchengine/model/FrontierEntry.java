@@ -0,0 +1,42 @@
+package searchengine.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+/**
+ * Адрес, который обход сайта уже обнаружил, но ещё не обработал до конца.
+ * Строки остаются в таблице после остановки или падения приложения, и обход продолжается с них.
+ */
+@Entity
+@Table(
+        name = "frontier",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "site_url_unique", columnNames = {"site_id", "url_hash"})
+        }
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class FrontierEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "site_id", nullable = false)
+    private Site site;
+
+    @Column(columnDefinition = "TEXT NOT NULL")
+    private String url;
+
+    /** SHA-256 адреса: по нему строка находится и удаляется без индекса на длинном url. */
+    @Column(name = "url_hash", columnDefinition = "CHAR(64) NOT NULL")
+    private String urlHash;
+
+    /** Число переходов по ссылкам от главной страницы. */
+    @Column(columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int depth;
+}
@@ -5,7 +5,13 @@ import lombok.*;
 import javax.persistence.*;
 
 @Entity
-@Table(name = "`index`")
+@Table(
+        name = "`index`",
+        indexes = {
+                // Списки страниц леммы и rank по (страницы, леммы) читаются без обхода всей таблицы
+                @Index(name = "lemma_page_index", columnList = "lemma_id, page_id")
+        }
+)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -26,5 +32,12 @@ public class IndexEntity {
 
     @Column(columnDefinition = "FLOAT NOT NULL")
     private float rank;
+
+    /**
+     * Вхождения леммы в текст страницы ({@link searchengine.util.TokenPositions#toBytes()}):
+     * по ним строятся сниппеты. Пусто у строк, записанных до появления колонки.
+     */
+    @Column(columnDefinition = "MEDIUMBLOB")
+    private byte[] positions;
 }
 
@@ -5,7 +5,12 @@ import lombok.*;
 import javax.persistence.*;
 
 @Entity
-@Table(name = "lemma")
+@Table(
+        name = "lemma",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "site_lemma_unique", columnNames = {"site_id", "lemma"})
+        }
+)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -20,7 +25,7 @@ public class Lemma {
     @JoinColumn(name = "site_id", nullable = false)
     private Site site;
 
-    @Column(columnDefinition = "VARCHAR(255) NOT NULL")
+    @Column(columnDefinition = "VARCHAR(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL")
     private String lemma;
 
     @Column(columnDefinition = "INT NOT NULL")
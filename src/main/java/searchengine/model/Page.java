@@ -1,6 +1,8 @@
 package searchengine.model;
 
 import lombok.*;
+import searchengine.util.CompressedText;
+
 import javax.persistence.*;
 
 @Entity
@@ -30,6 +32,33 @@ public class Page {
     @Column(columnDefinition = "INT NOT NULL")
     private int code;
 
-    @Column(columnDefinition = "MEDIUMTEXT NOT NULL")
-    private String content;
+    /** HTML страницы, сжатый deflate; нужен только индексатору, поиск его не читает. */
+    @Column(name = "html_deflated", columnDefinition = "MEDIUMBLOB NOT NULL")
+    private byte[] compressedHtml;
+
+    /** Заголовок страницы, извлечённый при индексации. */
+    @Column(columnDefinition = "VARCHAR(512)")
+    private String title;
+
+    /** Текст страницы без разметки, извлечённый при индексации: по нему строятся сниппеты. */
+    @Column(name = "text_content", columnDefinition = "MEDIUMTEXT")
+    private String text;
+
+    /** SHA-256 текста страницы: по нему повторная индексация узнаёт неизменившиеся страницы. */
+    @Column(name = "content_hash", columnDefinition = "CHAR(64)")
+    private String contentHash;
+
+    @Column(columnDefinition = "VARCHAR(255)")
+    private String etag;
+
+    @Column(name = "last_modified", columnDefinition = "VARCHAR(64)")
+    private String lastModified;
+
+    public String getHtml() {
+        return CompressedText.decompress(compressedHtml);
+    }
+
+    public void setHtml(String html) {
+        this.compressedHtml = CompressedText.compress(html);
+    }
 }
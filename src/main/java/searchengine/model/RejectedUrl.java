@@ -0,0 +1,42 @@
+package searchengine.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+/**
+ * Адрес сайта, который оказался не HTML-страницей. Такие адреса не загружаются снова
+ * ни при продолжении, ни при повторной индексации сайта.
+ */
+@Entity
+@Table(
+        name = "rejected_url",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "site_path_unique", columnNames = {"site_id", "path_hash"})
+        }
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RejectedUrl {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "site_id", nullable = false)
+    private Site site;
+
+    @Column(columnDefinition = "TEXT NOT NULL")
+    private String path;
+
+    /** SHA-256 пути: по нему соблюдается уникальность без индекса на длинном path. */
+    @Column(name = "path_hash", columnDefinition = "CHAR(64) NOT NULL")
+    private String pathHash;
+
+    /** Почему адрес отклонён, например тип содержимого ответа. */
+    @Column(columnDefinition = "VARCHAR(255) NOT NULL")
+    private String reason;
+}
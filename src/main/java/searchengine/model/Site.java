@@ -3,8 +3,6 @@ package searchengine.model;
 import lombok.*;
 import javax.persistence.*;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
 
 @Entity
 @Table(name = "site")
@@ -34,7 +32,11 @@ public class Site {
     @Column(columnDefinition = "VARCHAR(255) NOT NULL")
     private String name;
 
-    @OneToMany(mappedBy = "site", cascade = CascadeType.ALL, orphanRemoval = true)
-    private List<Page> pages = new ArrayList<>();
+    /**
+     * Поколение сайта, по которому идёт поиск. Полная индексация строит новое поколение
+     * отдельной строкой site с тем же url и делает его действующим только после окончания обхода.
+     */
+    @Column(columnDefinition = "BOOLEAN NOT NULL DEFAULT TRUE")
+    private boolean live = true;
 }
 
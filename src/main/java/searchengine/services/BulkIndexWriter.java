@@ -0,0 +1,255 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.IndexWriterSettings;
+import searchengine.util.TokenPositions;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Пакетная запись результатов индексации страниц.
+ * Частоты лемм копятся в {@link LemmaDictionary}, строки index — в буфере писателя;
+ * при сбросе буфера всё записывается одной транзакцией: сначала изменения частот лемм,
+ * затем пакетная вставка строк index с id лемм из словаря.
+ * Буфер сбрасывается по размеру, по таймеру и явным вызовом {@link #flush()}.
+ * Если транзакция откатилась, строки возвращаются в буфер, а изменения частот – в словарь,
+ * и записываются при следующем сбросе.
+ * Записанные страницы затем попадают в {@link InvertedIndex}, если он включён.
+ */
+@Component
+@Slf4j
+public class BulkIndexWriter {
+
+    private static final String INSERT_INDEX_SQL =
+            "INSERT INTO `index` (page_id, lemma_id, `rank`, positions) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final LemmaDictionary lemmaDictionary;
+    private final IndexWriterSettings settings;
+    private final InvertedIndex invertedIndex;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "index-writer-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private List<PageLemmas> buffer = new ArrayList<>();
+    private int bufferedRows;
+
+    public BulkIndexWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                           LemmaDictionary lemmaDictionary, IndexWriterSettings settings,
+                           InvertedIndex invertedIndex) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.lemmaDictionary = lemmaDictionary;
+        this.settings = settings;
+        this.invertedIndex = invertedIndex;
+    }
+
+    @PostConstruct
+    public void startFlusher() {
+        long interval = settings.getFlushIntervalMs();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        flushQuietly();
+    }
+
+    /**
+     * Учитывает леммы страницы в словаре и ставит её строки index в буфер.
+     * Страница без лемм тоже проходит через буфер, чтобы попасть в {@link InvertedIndex}.
+     *
+     * @param lemmaPositions лемма → её вхождения на странице; их число – rank
+     */
+    public void add(int siteId, int pageId, Map<String, TokenPositions> lemmaPositions) {
+        lemmaDictionary.record(siteId, lemmaPositions.keySet(), 1);
+        boolean full;
+        synchronized (this) {
+            buffer.add(new PageLemmas(siteId, pageId, lemmaPositions));
+            bufferedRows += lemmaPositions.size();
+            full = bufferedRows >= settings.getFlushSize();
+        }
+        if (full && flushLock.tryLock()) {
+            try {
+                flushBuffer();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Записывает в базу всё, что накопилось к моменту вызова, включая изменения частот лемм.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushBuffer();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Удаляет строки index страницы, не загружая сущности. Частоты её лемм уменьшаются в словаре
+     * и попадут в базу при следующем сбросе. Строки страницы, ещё не записанные из буфера,
+     * просто выбрасываются; остальной буфер не сбрасывается.
+     */
+    public void removePage(int siteId, int pageId) {
+        removePage(siteId, pageId, () -> null);
+    }
+
+    /**
+     * Удаляет строки index страницы и в той же транзакции выполняет {@code inTransaction} –
+     * например, сохраняет новую версию страницы или удаляет её саму. Если транзакция откатилась,
+     * прежние строки остаются и в базе, и в буфере, и в {@link InvertedIndex}.
+     *
+     * @return результат {@code inTransaction}
+     */
+    public <T> T removePage(int siteId, int pageId, Supplier<T> inTransaction) {
+        // Блокировка сброса: порция, которая пишется сейчас, успеет оказаться в базе,
+        // а следующая не начнётся, пока строки страницы не удалены
+        flushLock.lock();
+        try {
+            PageLemmas pending = dropPending(pageId);
+            List<String> lemmas = new ArrayList<>();
+            T result;
+            try {
+                result = transactionTemplate.execute(status -> {
+                    lemmas.addAll(jdbcTemplate.queryForList("SELECT l.lemma FROM `index` i "
+                            + "JOIN lemma l ON l.id = i.lemma_id WHERE i.page_id = ?", String.class, pageId));
+                    jdbcTemplate.update("DELETE FROM `index` WHERE page_id = ?", pageId);
+                    return inTransaction.get();
+                });
+            } catch (RuntimeException e) {
+                if (pending != null) {
+                    requeue(new ArrayList<>(List.of(pending)));
+                }
+                throw e;
+            }
+            if (pending != null) {
+                lemmaDictionary.record(siteId, pending.lemmaPositions.keySet(), -1);
+            }
+            lemmaDictionary.record(siteId, lemmas, -1);
+            invertedIndex.removePage(siteId, pageId, lemmas);
+            return result;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private synchronized PageLemmas dropPending(int pageId) {
+        for (Iterator<PageLemmas> it = buffer.iterator(); it.hasNext(); ) {
+            PageLemmas page = it.next();
+            if (page.pageId == pageId) {
+                it.remove();
+                bufferedRows -= page.lemmaPositions.size();
+                return page;
+            }
+        }
+        return null;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Ошибка при пакетной записи индекса", e);
+        }
+    }
+
+    private void flushBuffer() {
+        List<PageLemmas> batch;
+        synchronized (this) {
+            batch = buffer;
+            buffer = new ArrayList<>();
+            bufferedRows = 0;
+        }
+        long start = System.nanoTime();
+        LemmaDictionary.FlushedChanges changes = new LemmaDictionary.FlushedChanges();
+        Integer rows;
+        try {
+            rows = transactionTemplate.execute(status -> write(batch, changes));
+        } catch (RuntimeException e) {
+            lemmaDictionary.restore(changes);
+            requeue(batch);
+            throw e;
+        }
+        batch.forEach(page -> invertedIndex.addPage(page.siteId, page.pageId, page.lemmaCounts()));
+        if (!batch.isEmpty()) {
+            log.debug("Записано страниц: {}, строк index: {} за {} мс", batch.size(), rows,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Возвращает в начало буфера страницы откатившейся транзакции, чтобы записать их при следующем сбросе.
+     */
+    private void requeue(List<PageLemmas> batch) {
+        synchronized (this) {
+            batch.addAll(buffer);
+            buffer = batch;
+            bufferedRows = 0;
+            for (PageLemmas page : buffer) {
+                bufferedRows += page.lemmaPositions.size();
+            }
+        }
+    }
+
+    private int write(List<PageLemmas> batch, LemmaDictionary.FlushedChanges changes) {
+        lemmaDictionary.flush(changes);
+
+        List<Object[]> indexRows = new ArrayList<>();
+        for (PageLemmas page : batch) {
+            page.lemmaPositions.forEach((lemma, positions) -> {
+                Integer lemmaId = lemmaDictionary.findId(page.siteId, lemma);
+                if (lemmaId == null) {
+                    log.warn("Не найден id леммы '{}' сайта {}", lemma, page.siteId);
+                    return;
+                }
+                indexRows.add(new Object[]{page.pageId, lemmaId, (float) positions.size(), positions.toBytes()});
+            });
+        }
+        jdbcTemplate.batchUpdate(INSERT_INDEX_SQL, indexRows);
+        return indexRows.size();
+    }
+
+    private static class PageLemmas {
+        private final int siteId;
+        private final int pageId;
+        private final Map<String, TokenPositions> lemmaPositions;
+
+        PageLemmas(int siteId, int pageId, Map<String, TokenPositions> lemmaPositions) {
+            this.siteId = siteId;
+            this.pageId = pageId;
+            this.lemmaPositions = lemmaPositions;
+        }
+
+        Map<String, Integer> lemmaCounts() {
+            Map<String, Integer> counts = new HashMap<>();
+            lemmaPositions.forEach((lemma, positions) -> counts.put(lemma, positions.size()));
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.ScopeSettings;
+import searchengine.util.UrlNormalizer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Границы обхода сайта: канонический вид адресов и правила, по которым адрес не ставится в очередь —
+ * глубина переходов, число страниц сайта, запрещённые шаблоны путей и пути-ловушки
+ * с многократно повторяющимися сегментами. Адрес приводится к каноническому виду
+ * до проверки на повтор, поэтому варианты одного адреса не загружаются дважды.
+ */
+@Component
+public class CrawlScope {
+
+    private final ScopeSettings settings;
+    private final UrlNormalizer normalizer;
+    private final List<Pattern> excludedPaths = new ArrayList<>();
+
+    public CrawlScope(ScopeSettings settings) {
+        this.settings = settings;
+        this.normalizer = new UrlNormalizer(settings.getAllowedQueryParams(), settings.getDeniedQueryParams(),
+                settings.isStripTrailingSlash());
+        for (String pattern : settings.getExcludedPaths()) {
+            excludedPaths.add(Pattern.compile(pattern));
+        }
+    }
+
+    /**
+     * @return канонический адрес или null, если адрес не http(s) или не разбирается
+     */
+    public String canonicalize(String url) {
+        return normalizer.normalize(url);
+    }
+
+    /**
+     * @param path  путь страницы относительно сайта, с запросом
+     * @param depth число переходов по ссылкам от главной страницы
+     */
+    public boolean isInScope(String path, int depth) {
+        if (settings.getMaxDepth() > 0 && depth > settings.getMaxDepth()) {
+            return false;
+        }
+        for (Pattern pattern : excludedPaths) {
+            if (pattern.matcher(path).find()) {
+                return false;
+            }
+        }
+        return !hasRepeatedSegments(path);
+    }
+
+    /**
+     * @param claimedPages сколько адресов сайта уже взято в обход
+     * @return true, если на сайте можно взять в обход ещё один адрес
+     */
+    public boolean hasRoom(int claimedPages) {
+        return settings.getMaxPages() <= 0 || claimedPages < settings.getMaxPages();
+    }
+
+    private boolean hasRepeatedSegments(String path) {
+        int limit = settings.getMaxRepeatedSegments();
+        if (limit <= 0) {
+            return false;
+        }
+        int queryStart = path.indexOf('?');
+        String pathOnly = queryStart >= 0 ? path.substring(0, queryStart) : path;
+        Map<String, Integer> counts = new HashMap<>();
+        for (String segment : pathOnly.split("/")) {
+            if (!segment.isEmpty() && counts.merge(segment, 1, Integer::sum) > limit) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
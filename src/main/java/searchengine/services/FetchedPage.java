@@ -0,0 +1,69 @@
+package searchengine.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Locale;
+
+/**
+ * Ответ сервера на запрос страницы.
+ */
+@Getter
+@AllArgsConstructor
+public class FetchedPage {
+    /** Адрес, с которого фактически получен ответ (после перенаправлений). */
+    private final String url;
+    private final int statusCode;
+    private final String contentType;
+    private final byte[] body;
+    /** Тело обрезано по лимиту размера. */
+    private final boolean truncated;
+    private final String etag;
+    private final String lastModified;
+
+    /**
+     * @return тот же ответ без тела: его можно хранить, пока страница ждёт следующих стадий
+     */
+    public FetchedPage withoutBody() {
+        return new FetchedPage(url, statusCode, contentType, null, truncated, etag, lastModified);
+    }
+
+    public boolean isNotModified() {
+        return statusCode == 304;
+    }
+
+    public boolean isError() {
+        return statusCode >= 400 && statusCode < 600;
+    }
+
+    public boolean isHtml() {
+        return isHtmlType(contentType);
+    }
+
+    /**
+     * @return true, если тип содержимого HTML или не указан
+     */
+    public static boolean isHtmlType(String contentType) {
+        if (contentType == null) {
+            return true;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("text/html") || type.startsWith("application/xhtml+xml");
+    }
+
+    /**
+     * @return кодировка из заголовка Content-Type или null, если её нужно определить по самой странице
+     */
+    public String getCharset() {
+        if (contentType == null) {
+            return null;
+        }
+        for (String part : contentType.split(";")) {
+            String param = part.trim();
+            if (param.toLowerCase(Locale.ROOT).startsWith("charset=")) {
+                return param.substring("charset=".length()).replace("\"", "").trim();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,208 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.util.ContentHash;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Журнал границы обхода в таблице frontier: адреса, которые обнаружены, но ещё не обработаны до конца.
+ * Адрес добавляется, когда обход впервые ставит его в очередь, и удаляется, когда страница
+ * прошла все стадии конвейера. После остановки или падения в таблице остаётся ровно то,
+ * что нужно обойти, чтобы продолжить обход.
+ * <p>
+ * Изменения копятся в буфере и записываются одной транзакцией по таймеру и вызовом {@link #flush()}.
+ * Адрес, который успел и появиться, и обработаться между сбросами, в базу не попадает вовсе.
+ * Перед записью удалений сбрасывается {@link BulkIndexWriter}: адрес исчезает из журнала
+ * не раньше, чем строки index его страницы оказались в базе.
+ */
+@Component
+@Slf4j
+public class FrontierJournal {
+
+    private static final String INSERT_SQL = "INSERT IGNORE INTO frontier (site_id, url, url_hash, depth) VALUES (?, ?, ?, ?)";
+    private static final String DELETE_SQL = "DELETE FROM frontier WHERE site_id = ? AND url_hash = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BulkIndexWriter bulkIndexWriter;
+    private final long flushIntervalMs;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "frontier-journal-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Map<String, Object[]> added = new LinkedHashMap<>();
+    private List<Object[]> completed = new ArrayList<>();
+
+    public FrontierJournal(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                           BulkIndexWriter bulkIndexWriter,
+                           @Value("${indexing-settings.frontier-flush-interval-ms:1000}") long flushIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.bulkIndexWriter = bulkIndexWriter;
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    @PostConstruct
+    public void startFlusher() {
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        flushQuietly();
+    }
+
+    /**
+     * Отмечает адрес как обнаруженный и ещё не обработанный.
+     *
+     * @param depth число переходов по ссылкам от главной страницы
+     */
+    public void add(int siteId, String url, int depth) {
+        String hash = ContentHash.sha256(url);
+        synchronized (this) {
+            added.put(key(siteId, hash), new Object[]{siteId, url, hash, depth});
+        }
+    }
+
+    /**
+     * Отмечает адрес как обработанный: после продолжения обхода он не будет загружен снова.
+     */
+    public void complete(int siteId, String url) {
+        String hash = ContentHash.sha256(url);
+        synchronized (this) {
+            if (added.remove(key(siteId, hash)) == null) {
+                completed.add(new Object[]{siteId, hash});
+            }
+        }
+    }
+
+    /**
+     * @return адреса сайта, которые обход ещё не обработал, в порядке их обнаружения
+     */
+    public List<Entry> load(int siteId) {
+        flush();
+        return jdbcTemplate.query("SELECT url, depth FROM frontier WHERE site_id = ? ORDER BY id",
+                (rs, rowNum) -> new Entry(rs.getString("url"), rs.getInt("depth")), siteId);
+    }
+
+    /**
+     * Удаляет журнал сайта: обход закончен или сайт индексируется заново.
+     */
+    public void clear(int siteId) {
+        flushLock.lock();
+        try {
+            flushBuffer();
+            jdbcTemplate.update("DELETE FROM frontier WHERE site_id = ?", siteId);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Записывает в базу всё, что накопилось к моменту вызова.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushBuffer();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Ошибка при записи журнала обхода", e);
+        }
+    }
+
+    private void flushBuffer() {
+        List<Object[]> inserts;
+        List<Object[]> deletes;
+        synchronized (this) {
+            inserts = new ArrayList<>(added.values());
+            deletes = completed;
+            added = new LinkedHashMap<>();
+            completed = new ArrayList<>();
+        }
+        if (inserts.isEmpty() && deletes.isEmpty()) {
+            return;
+        }
+        if (!deletes.isEmpty()) {
+            bulkIndexWriter.flush();
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+                jdbcTemplate.batchUpdate(DELETE_SQL, deletes);
+            });
+        } catch (RuntimeException e) {
+            requeue(inserts, deletes);
+            throw e;
+        }
+        log.debug("Журнал обхода: добавлено {}, удалено {}", inserts.size(), deletes.size());
+    }
+
+    /**
+     * Возвращает в буфер изменения откатившейся транзакции, чтобы записать их при следующем сбросе.
+     */
+    private void requeue(List<Object[]> inserts, List<Object[]> deletes) {
+        synchronized (this) {
+            Map<String, Object[]> merged = new LinkedHashMap<>();
+            for (Object[] row : inserts) {
+                merged.put(key((Integer) row[0], (String) row[2]), row);
+            }
+            merged.putAll(added);
+            added = merged;
+            deletes.addAll(completed);
+            completed = deletes;
+        }
+    }
+
+    private static String key(int siteId, String urlHash) {
+        return siteId + ":" + urlHash;
+    }
+
+    /**
+     * Необработанный адрес из журнала.
+     */
+    public static class Entry {
+        private final String url;
+        private final int depth;
+
+        public Entry(String url, int depth) {
+            this.url = url;
+            this.depth = depth;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+    }
+}
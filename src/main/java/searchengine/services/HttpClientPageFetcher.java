@@ -0,0 +1,288 @@
+package searchengine.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import searchengine.config.FetchSettings;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Загрузчик страниц на асинхронном {@link HttpClient}.
+ * Сотни запросов могут находиться в полёте одновременно: сокеты обслуживает селектор клиента,
+ * а потоки нужны только на приём ответов, поэтому число запросов не ограничено числом ядер.
+ * Клиент один на всё приложение, поэтому keep-alive соединения к хосту переиспользуются между запросами.
+ * Страница скачивается одним запросом, по возможности в сжатом виде, и не дальше
+ * {@link FetchSettings#getMaxBodySize()} байт. При загрузке для индексации тело ответа
+ * с типом, отличным от HTML, не читается вовсе.
+ */
+@Component
+public class HttpClientPageFetcher implements PageFetcher {
+
+    private final ExecutorService ioExecutor = Executors.newCachedThreadPool(new IoThreadFactory());
+    private final FetchSettings settings;
+    private final HttpClient httpClient;
+
+    @Value("${indexing-settings.user-agent:HeliontSearchBot}")
+    private String userAgent = "HeliontSearchBot";
+
+    @Value("${indexing-settings.referrer:http://www.google.com}")
+    private String referrer = "http://www.google.com";
+
+    public HttpClientPageFetcher(FetchSettings settings) {
+        this.settings = settings;
+        this.httpClient = HttpClient.newBuilder()
+                .executor(ioExecutor)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(settings.getConnectTimeoutMs()))
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<FetchedPage> fetch(String url, String etag, String lastModified) {
+        return send(url, etag, lastModified, false);
+    }
+
+    @Override
+    public CompletableFuture<FetchedPage> fetchHtml(String url, String etag, String lastModified) {
+        return send(url, etag, lastModified, true);
+    }
+
+    @Override
+    public CompletableFuture<FetchedPage> probe(String url) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofMillis(settings.getTimeoutMs()))
+                    .header("User-Agent", userAgent)
+                    .header("Referer", referrer)
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> new FetchedPage(
+                        response.uri().toString(),
+                        response.statusCode(),
+                        response.headers().firstValue("Content-Type").orElse(null),
+                        new byte[0],
+                        false,
+                        response.headers().firstValue("ETag").orElse(null),
+                        response.headers().firstValue("Last-Modified").orElse(null)));
+    }
+
+    private CompletableFuture<FetchedPage> send(String url, String etag, String lastModified, boolean htmlOnly) {
+        HttpRequest.Builder builder;
+        try {
+            builder = HttpRequest.newBuilder(URI.create(url));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        builder.timeout(Duration.ofMillis(settings.getTimeoutMs()))
+                .header("User-Agent", userAgent)
+                .header("Referer", referrer)
+                .GET();
+        if (settings.isCompression()) {
+            builder.header("Accept-Encoding", "gzip, deflate");
+        }
+        if (etag != null) {
+            builder.header("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            builder.header("If-Modified-Since", lastModified);
+        }
+        int maxBodySize = settings.getMaxBodySize();
+        return httpClient.sendAsync(builder.build(), info -> htmlOnly && isSuccessful(info) && !isHtml(info)
+                        ? new SkippedBodySubscriber()
+                        : new LimitedBodySubscriber(maxBodySize))
+                .thenApply(response -> {
+                    LimitedBody body = response.body();
+                    String encoding = response.headers().firstValue("Content-Encoding").orElse(null);
+                    return new FetchedPage(
+                            response.uri().toString(),
+                            response.statusCode(),
+                            response.headers().firstValue("Content-Type").orElse(null),
+                            decode(body.bytes, encoding, maxBodySize),
+                            body.truncated,
+                            response.headers().firstValue("ETag").orElse(null),
+                            response.headers().firstValue("Last-Modified").orElse(null));
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ioExecutor.shutdownNow();
+    }
+
+    private static boolean isSuccessful(HttpResponse.ResponseInfo info) {
+        return info.statusCode() >= 200 && info.statusCode() < 300;
+    }
+
+    private static boolean isHtml(HttpResponse.ResponseInfo info) {
+        return FetchedPage.isHtmlType(info.headers().firstValue("Content-Type").orElse(null));
+    }
+
+    /**
+     * Распаковывает тело ответа, не выходя за лимит размера.
+     * Обрезанный поток распаковывается до места обрыва.
+     */
+    static byte[] decode(byte[] body, String contentEncoding, int limit) {
+        if (contentEncoding == null || body.length == 0) {
+            return body;
+        }
+        String encoding = contentEncoding.trim().toLowerCase(Locale.ROOT);
+        try {
+            if (encoding.equals("gzip") || encoding.equals("x-gzip")) {
+                return readUpTo(new GZIPInputStream(new ByteArrayInputStream(body)), limit);
+            }
+            if (encoding.equals("deflate")) {
+                try {
+                    return readUpTo(new InflaterInputStream(new ByteArrayInputStream(body)), limit);
+                } catch (ZipException e) {
+                    // часть серверов отдаёт deflate без zlib-заголовка
+                    return readUpTo(new InflaterInputStream(new ByteArrayInputStream(body), new Inflater(true)), limit);
+                }
+            }
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+        return body;
+    }
+
+    private static byte[] readUpTo(InputStream in, int limit) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (in) {
+            int read;
+            while (out.size() < limit && (read = in.read(buffer, 0, Math.min(buffer.length, limit - out.size()))) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } catch (EOFException e) {
+            // тело было обрезано по лимиту: возвращаем то, что успели распаковать
+        }
+        return out.toByteArray();
+    }
+
+    private static class LimitedBody {
+        private final byte[] bytes;
+        private final boolean truncated;
+
+        LimitedBody(byte[] bytes, boolean truncated) {
+            this.bytes = bytes;
+            this.truncated = truncated;
+        }
+    }
+
+    /**
+     * Собирает тело ответа, пока оно не превысило лимит, после чего отменяет чтение.
+     */
+    private static class LimitedBodySubscriber implements HttpResponse.BodySubscriber<LimitedBody> {
+        private final int limit;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final CompletableFuture<LimitedBody> result = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        LimitedBodySubscriber(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public CompletionStage<LimitedBody> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            for (ByteBuffer item : items) {
+                int length = Math.min(item.remaining(), limit - buffer.size());
+                byte[] chunk = new byte[length];
+                item.get(chunk);
+                buffer.write(chunk, 0, length);
+                if (item.hasRemaining()) {
+                    subscription.cancel();
+                    result.complete(new LimitedBody(buffer.toByteArray(), true));
+                    return;
+                }
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(new LimitedBody(buffer.toByteArray(), false));
+        }
+    }
+
+    /**
+     * Отменяет чтение тела сразу после заголовков: ответ с типом, отличным от HTML, не скачивается.
+     */
+    private static class SkippedBodySubscriber implements HttpResponse.BodySubscriber<LimitedBody> {
+        private final CompletableFuture<LimitedBody> result = new CompletableFuture<>();
+
+        @Override
+        public CompletionStage<LimitedBody> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.cancel();
+            result.complete(new LimitedBody(new byte[0], false));
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.complete(new LimitedBody(new byte[0], false));
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(new LimitedBody(new byte[0], false));
+        }
+    }
+
+    private static class IoThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "fetch-io-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
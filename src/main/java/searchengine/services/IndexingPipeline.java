@@ -0,0 +1,70 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.PipelineSettings;
+import searchengine.dto.statistics.PipelineStageStatistics;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+
+/**
+ * Конвейер индексации страниц: загрузка → разбор → лемматизация → запись в базу.
+ * Загрузкой управляет {@link PolitenessScheduler}, остальные стадии – {@link PipelineStage}
+ * со своими потоками и ограниченными очередями. Ответ передаётся на разбор до того,
+ * как освобождается слот хоста, поэтому переполненный конвейер останавливает и загрузку.
+ */
+@Component
+public class IndexingPipeline {
+
+    private final PolitenessScheduler politenessScheduler;
+    private final PipelineStage parseStage;
+    private final PipelineStage lemmatizeStage;
+    private final PipelineStage persistStage;
+
+    public IndexingPipeline(PipelineSettings settings, PolitenessScheduler politenessScheduler) {
+        this.politenessScheduler = politenessScheduler;
+        this.parseStage = new PipelineStage("parse", settings.getParseThreads(), settings.getQueueCapacity());
+        this.lemmatizeStage = new PipelineStage("lemmatize", settings.getLemmatizeThreads(), settings.getQueueCapacity());
+        this.persistStage = new PipelineStage("persist", settings.getPersistThreads(), settings.getQueueCapacity());
+    }
+
+    public void parse(Runnable task) {
+        parseStage.submit(task);
+    }
+
+    public void lemmatize(Runnable task) {
+        lemmatizeStage.submit(task);
+    }
+
+    public void persist(Runnable task) {
+        persistStage.submit(task);
+    }
+
+    /**
+     * Отбрасывает задачи, которые ещё ждут в очередях стадий.
+     */
+    public void clear() {
+        parseStage.clear();
+        lemmatizeStage.clear();
+        persistStage.clear();
+    }
+
+    public void resetStatistics() {
+        politenessScheduler.resetStatistics();
+        parseStage.resetStatistics();
+        lemmatizeStage.resetStatistics();
+        persistStage.resetStatistics();
+    }
+
+    public List<PipelineStageStatistics> getStatistics() {
+        return List.of(politenessScheduler.getStatistics(), parseStage.getStatistics(),
+                lemmatizeStage.getStatistics(), persistStage.getStatistics());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        parseStage.shutdown();
+        lemmatizeStage.shutdown();
+        persistStage.shutdown();
+    }
+}
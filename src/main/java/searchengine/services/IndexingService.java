@@ -1,9 +1,13 @@
 package searchengine.services;
 
+import searchengine.dto.indexing.IndexPageResponse;
 import searchengine.dto.statistics.GenericResponse;
 
 public interface IndexingService {
     GenericResponse startIndexing();
+    GenericResponse startIncrementalIndexing();
+    GenericResponse resumeIndexing();
     GenericResponse stopIndexing();
-    GenericResponse indexPage(String url);
+    IndexPageResponse indexPage(String url, int priority);
+    IndexPageResponse getPageTask(long ticket);
 }
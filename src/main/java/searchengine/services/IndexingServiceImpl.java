@@ -2,102 +2,500 @@ package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import searchengine.config.SitesList;
-import searchengine.dao.IndexRepository;
-import searchengine.dao.LemmaRepository;
 import searchengine.dao.PageRepository;
+import searchengine.dao.PageRepository.PageFingerprint;
 import searchengine.dao.SiteRepository;
+import searchengine.dto.indexing.IndexPageResponse;
 import searchengine.dto.statistics.GenericResponse;
 import searchengine.model.*;
+import searchengine.util.CompressedText;
+import searchengine.util.ContentHash;
+import searchengine.util.HtmlExtractor;
+import searchengine.util.HtmlExtractor.ExtractedPage;
+import searchengine.util.LemmaFinder;
+import searchengine.util.RobotsRules;
+import searchengine.util.SitemapParser.SitemapUrl;
+import searchengine.util.TokenPositions;
+import searchengine.util.VisitedUrlSet;
 
+import java.net.URI;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class IndexingServiceImpl implements IndexingService {
 
+    /** Адреса из карты сайта считаются найденными на главной странице. */
+    private static final int SITEMAP_DEPTH = 1;
+    private static final int MAX_TITLE_LENGTH = 512;
+    private static final String NOT_HTML_ERROR = "Адрес ведёт не на HTML-страницу";
+
     private final SitesList sitesList;
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
-    private final IndexRepository indexRepository;
+    private final PolitenessScheduler politenessScheduler;
+    private final PageFetcher pageFetcher;
+    private final BulkIndexWriter bulkIndexWriter;
+    private final LemmaDictionary lemmaDictionary;
+    private final LemmaFinder lemmaFinder;
+    private final IndexingPipeline indexingPipeline;
+    private final FrontierJournal frontierJournal;
+    private final SiteSeeder siteSeeder;
+    private final CrawlScope crawlScope;
+    private final ResourceFilter resourceFilter;
+    private final RejectedUrlRegistry rejectedUrlRegistry;
+    private final SiteGenerations siteGenerations;
+    private final PageIndexQueue pageIndexQueue;
 
     private final AtomicBoolean indexingInProgress = new AtomicBoolean(false);
-    private final List<ForkJoinPool> activePools = new CopyOnWriteArrayList<>();
+    private final List<SiteCrawl> activeCrawls = new CopyOnWriteArrayList<>();
+    private final Map<Integer, VisitedUrlSet> visitedUrls = new ConcurrentHashMap<>();
 
-    @Value("${indexing-settings.user-agent:HeliontSearchBot}")
-    private String userAgent;
+    /**
+     * Полная индексация строит новое поколение каждого сайта рядом с действующим:
+     * поиск продолжает работать по прежним данным, пока обход не закончится.
+     */
+    @Override
+    @Transactional
+    public GenericResponse startIndexing() {
+        try {
+            if (indexingInProgress.get()) {
+                return new GenericResponse(false, "Индексация уже запущена");
+            }
+            indexingInProgress.set(true);
+            indexingPipeline.resetStatistics();
 
-    @Value("${indexing-settings.referrer:http://www.google.com}")
-    private String referrer;
+            for (searchengine.config.Site configSite : sitesList.getSites()) {
+                discardUnfinishedGenerations(configSite.getUrl());
+                searchengine.model.Site liveSite = siteRepository.findByUrlAndLiveTrue(configSite.getUrl());
+                searchengine.model.Site siteEntity = createSite(configSite);
+                if (liveSite != null) {
+                    rejectedUrlRegistry.copy(liveSite.getId(), siteEntity.getId());
+                }
+                startCrawl(configSite, siteEntity, false);
+            }
+            awaitCrawls();
+            return new GenericResponse(true);
+        } catch (DataAccessException ex) {
+            log.error("Ошибка при работе с БД во время индексации: {}", ex.getMessage(), ex);
+            return new GenericResponse(false, "Ошибка базы данных");
+        }
+    }
 
+    /**
+     * Повторная индексация без удаления сайта: страницы запрашиваются условными запросами,
+     * неизменившиеся страницы не лемматизируются заново, а исчезнувшие удаляются после обхода.
+     * Проиндексированный сайт остаётся доступным для поиска всё время обхода.
+     */
     @Override
     @Transactional
-    public GenericResponse startIndexing() {
+    public GenericResponse startIncrementalIndexing() {
         try {
             if (indexingInProgress.get()) {
                 return new GenericResponse(false, "Индексация уже запущена");
             }
             indexingInProgress.set(true);
+            indexingPipeline.resetStatistics();
 
             for (searchengine.config.Site configSite : sitesList.getSites()) {
-                searchengine.model.Site existingSite = siteRepository.findByUrl(configSite.getUrl());
-                if (existingSite != null) {
-                    siteRepository.delete(existingSite);
+                discardUnfinishedGenerations(configSite.getUrl());
+                searchengine.model.Site siteEntity = siteRepository.findByUrlAndLiveTrue(configSite.getUrl());
+                if (siteEntity == null) {
+                    startCrawl(configSite, createSite(configSite), false);
+                    continue;
+                }
+                if (siteEntity.getStatus() != SiteStatus.INDEXED) {
+                    siteEntity.setStatus(SiteStatus.INDEXING);
                 }
-                searchengine.model.Site siteEntity = new searchengine.model.Site();
-                siteEntity.setName(configSite.getName());
-                siteEntity.setUrl(configSite.getUrl());
-                siteEntity.setStatus(SiteStatus.INDEXING);
                 siteEntity.setStatusTime(LocalDateTime.now());
                 siteEntity.setLastError(null);
                 siteEntity = siteRepository.save(siteEntity);
+                startCrawl(configSite, siteEntity, true);
+            }
+            awaitCrawls();
+            return new GenericResponse(true);
+        } catch (DataAccessException ex) {
+            log.error("Ошибка при работе с БД во время повторной индексации: {}", ex.getMessage(), ex);
+            return new GenericResponse(false, "Ошибка базы данных");
+        }
+    }
 
-                ForkJoinPool pool = new ForkJoinPool();
-                activePools.add(pool);
-                pool.submit(new PageCrawlerTask(siteEntity, configSite.getUrl()));
+    /**
+     * Продолжает остановленную или прерванную падением индексацию с адресов из журнала обхода.
+     * Страницы, которые уже есть в таблице page, не загружаются снова: незаконченные из них
+     * обрабатываются повторно по сохранённому HTML. Продолжается самое новое поколение сайта:
+     * недостроенное поколение полной индексации становится действующим, когда обход закончится.
+     */
+    @Override
+    @Transactional
+    public GenericResponse resumeIndexing() {
+        try {
+            if (indexingInProgress.get()) {
+                return new GenericResponse(false, "Индексация уже запущена");
             }
+            indexingInProgress.set(true);
+            indexingPipeline.resetStatistics();
 
-            CompletableFuture.runAsync(() -> {
-                for (ForkJoinPool pool : activePools) {
-                    pool.shutdown();
-                    try {
-                        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
-                    } catch (InterruptedException e) {
-                        log.error("Ожидание завершения пула прервано", e);
-                    }
+            for (searchengine.config.Site configSite : sitesList.getSites()) {
+                searchengine.model.Site siteEntity = siteRepository.findFirstByUrlOrderByIdDesc(configSite.getUrl());
+                if (siteEntity == null) {
+                    continue;
                 }
-                activePools.clear();
-                List<searchengine.model.Site> indexedSites = siteRepository.findByStatus(SiteStatus.INDEXING);
-                for (searchengine.model.Site site : indexedSites) {
-                    site.setStatus(SiteStatus.INDEXED);
-                    site.setStatusTime(LocalDateTime.now());
-                    siteRepository.save(site);
+                List<FrontierJournal.Entry> frontier = frontierJournal.load(siteEntity.getId());
+                if (frontier.isEmpty()) {
+                    continue;
                 }
+                siteEntity.setStatus(SiteStatus.INDEXING);
+                siteEntity.setStatusTime(LocalDateTime.now());
+                siteEntity.setLastError(null);
+                siteEntity = siteRepository.save(siteEntity);
+                resumeCrawl(configSite, siteEntity, frontier);
+            }
+            if (activeCrawls.isEmpty()) {
                 indexingInProgress.set(false);
-            });
-
+                return new GenericResponse(false, "Нет прерванной индексации");
+            }
+            awaitCrawls();
             return new GenericResponse(true);
         } catch (DataAccessException ex) {
-            log.error("Ошибка при работе с БД во время индексации: {}", ex.getMessage(), ex);
+            indexingInProgress.set(false);
+            log.error("Ошибка при работе с БД при продолжении индексации: {}", ex.getMessage(), ex);
             return new GenericResponse(false, "Ошибка базы данных");
         }
     }
 
+    /**
+     * Создаёт новое поколение сайта. Поиск его не видит, пока обход не закончится.
+     */
+    private searchengine.model.Site createSite(searchengine.config.Site configSite) {
+        searchengine.model.Site siteEntity = new searchengine.model.Site();
+        siteEntity.setName(configSite.getName());
+        siteEntity.setUrl(configSite.getUrl());
+        siteEntity.setStatus(SiteStatus.INDEXING);
+        siteEntity.setStatusTime(LocalDateTime.now());
+        siteEntity.setLastError(null);
+        siteEntity.setLive(false);
+        return siteRepository.save(siteEntity);
+    }
+
+    /**
+     * Удаляет недостроенные поколения сайта, оставшиеся от прерванной полной индексации:
+     * новый обход начинается заново и продолжать их больше не нужно.
+     */
+    private void discardUnfinishedGenerations(String url) {
+        for (searchengine.model.Site generation : siteRepository.findByUrlAndLiveFalse(url)) {
+            frontierJournal.clear(generation.getId());
+            siteGenerations.discard(generation);
+        }
+    }
+
+    private void startCrawl(searchengine.config.Site configSite, searchengine.model.Site siteEntity, boolean incremental) {
+        VisitedUrlSet visited;
+        Map<String, PageFingerprint> fingerprints = new HashMap<>();
+        if (incremental) {
+            visited = new VisitedUrlSet();
+            visitedUrls.put(siteEntity.getId(), visited);
+            for (PageFingerprint fingerprint : pageRepository.findFingerprintsBySite(siteEntity)) {
+                fingerprints.put(fingerprint.getPath(), fingerprint);
+            }
+        } else {
+            visited = createVisitedSet(siteEntity);
+        }
+        visited.seed(rejectedUrlRegistry.findPaths(siteEntity.getId()));
+        visited.claim(getPath(configSite.getUrl(), siteEntity.getUrl()));
+
+        SiteCrawl crawl = new SiteCrawl(siteEntity, visited, getHost(siteEntity.getUrl()), incremental, fingerprints);
+        politenessScheduler.configure(crawl.host, configSite.getRequestsPerSecond(), configSite.getMaxInFlight());
+        activeCrawls.add(crawl);
+
+        // пока загружаются robots.txt и карты сайта, обход не может завершиться
+        crawl.pending.incrementAndGet();
+        siteSeeder.loadRobots(siteEntity.getUrl())
+                .thenCompose(robots -> {
+                    applyRobots(crawl, configSite, robots);
+                    if (!indexingInProgress.get() || robots.isUnavailable()) {
+                        return CompletableFuture.completedFuture(List.<SitemapUrl>of());
+                    }
+                    if (isAllowed(crawl, configSite.getUrl())) {
+                        enqueuePage(crawl, configSite.getUrl(), 0);
+                    }
+                    return siteSeeder.loadSitemaps(siteEntity.getUrl(), robots);
+                })
+                .thenAccept(sitemapUrls -> seedFromSitemaps(crawl, sitemapUrls))
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        log.warn("Ошибка при подготовке обхода {}: {}", siteEntity.getUrl(), error.getMessage());
+                    }
+                    crawl.taskFinished();
+                });
+    }
+
+    /**
+     * Запоминает запреты robots.txt и, если задан Crawl-delay, замедляет запросы к хосту.
+     * Если robots.txt временно недоступен, сайт отмечается FAILED: обход ничего не загрузит,
+     * а пустое поколение не должно заменить действующее.
+     */
+    private void applyRobots(SiteCrawl crawl, searchengine.config.Site configSite, RobotsRules robots) {
+        crawl.robots = robots;
+        if (robots.isUnavailable()) {
+            markSiteFailed(crawl.site, "robots.txt временно недоступен");
+            return;
+        }
+        double delay = robots.getCrawlDelaySeconds();
+        if (delay > 0) {
+            double requestsPerSecond = Math.min(configSite.getRequestsPerSecond(), 1.0 / delay);
+            politenessScheduler.configure(crawl.host, requestsPerSecond, configSite.getMaxInFlight());
+            log.info("Crawl-delay {} с для {}: не больше {} запросов в секунду", delay, crawl.host, requestsPerSecond);
+        }
+    }
+
+    /**
+     * Ставит в очередь адреса из карт сайта, не дожидаясь, пока обход дойдёт до них по ссылкам.
+     * При повторной индексации страница, которая по карте сайта не менялась с прошлой загрузки,
+     * не запрашивается: её ссылки берутся из сохранённого HTML.
+     */
+    private void seedFromSitemaps(SiteCrawl crawl, List<SitemapUrl> sitemapUrls) {
+        String siteUrl = crawl.site.getUrl();
+        int seeded = 0;
+        for (SitemapUrl sitemapUrl : sitemapUrls) {
+            if (!indexingInProgress.get()) {
+                return;
+            }
+            String url = claimUrl(crawl, sitemapUrl.getUrl(), SITEMAP_DEPTH);
+            if (url == null) continue;
+            PageFingerprint known = crawl.fingerprints.get(getPath(url, siteUrl));
+            if (known != null && isUnchangedSince(known, sitemapUrl.getLastmod())) {
+                enqueueUnchanged(crawl, url, SITEMAP_DEPTH, known);
+            } else {
+                enqueuePage(crawl, url, SITEMAP_DEPTH);
+            }
+            seeded++;
+        }
+        if (!sitemapUrls.isEmpty()) {
+            log.info("Карта сайта {}: адресов {}, поставлено в очередь {}", siteUrl, sitemapUrls.size(), seeded);
+        }
+    }
+
+    /**
+     * @return true, если страница загружена не раньше даты изменения из карты сайта
+     */
+    private boolean isUnchangedSince(PageFingerprint known, Instant lastmod) {
+        if (lastmod == null || known.getLastModified() == null) {
+            return false;
+        }
+        try {
+            Instant stored = ZonedDateTime.parse(known.getLastModified(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return !lastmod.isAfter(stored);
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Передаёт неизменившуюся страницу сразу на разбор, как если бы сервер ответил 304.
+     */
+    private void enqueueUnchanged(SiteCrawl crawl, String url, int depth, PageFingerprint known) {
+        frontierJournal.add(crawl.site.getId(), url, depth);
+        crawl.pending.incrementAndGet();
+        FetchedPage notModified = new FetchedPage(url, 304, null, null, false, known.getEtag(), known.getLastModified());
+        indexingPipeline.parse(() -> runStep(crawl, url, () -> parsePage(crawl, url, depth, notModified)));
+    }
+
+    /**
+     * Приводит найденный адрес к каноническому виду и решает, нужно ли его обходить:
+     * адрес должен принадлежать сайту, не вести на документ, изображение или архив,
+     * укладываться в границы обхода, встретиться впервые и быть разрешён robots.txt.
+     *
+     * @return канонический адрес, который нужно поставить в очередь, или null
+     */
+    private String claimUrl(SiteCrawl crawl, String rawUrl, int depth) {
+        String siteUrl = crawl.site.getUrl();
+        String url = crawlScope.canonicalize(rawUrl);
+        if (url == null || !url.startsWith(siteUrl) || resourceFilter.classify(url) == ResourceFilter.Kind.SKIPPED) {
+            return null;
+        }
+        String path = getPath(url, siteUrl);
+        if (!crawlScope.isInScope(path, depth) || !crawlScope.hasRoom(crawl.visited.size())) {
+            // Часть сайта осталась за границами обхода: по нему нельзя судить, какие страницы исчезли
+            crawl.truncated = true;
+            return null;
+        }
+        if (!crawl.visited.claim(path) || !isAllowed(crawl, url)) {
+            return null;
+        }
+        return url;
+    }
+
+    /**
+     * Проверяет адрес по правилам robots.txt сайта.
+     */
+    private boolean isAllowed(SiteCrawl crawl, String url) {
+        try {
+            URI uri = URI.create(url);
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            if (uri.getRawQuery() != null) {
+                path += "?" + uri.getRawQuery();
+            }
+            return crawl.robots.isAllowed(path);
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Восстанавливает обход сайта по журналу. Пути сохранённых страниц и адреса журнала
+     * сразу считаются посещёнными, поэтому обход не возвращается к уже обработанным страницам.
+     */
+    private void resumeCrawl(searchengine.config.Site configSite, searchengine.model.Site siteEntity,
+                             List<FrontierJournal.Entry> frontier) {
+        List<String> storedPaths = pageRepository.findPathsBySite(siteEntity);
+        Set<String> stored = new HashSet<>(storedPaths);
+        VisitedUrlSet visited = new VisitedUrlSet();
+        visited.seed(storedPaths);
+        visited.seed(rejectedUrlRegistry.findPaths(siteEntity.getId()));
+        visitedUrls.put(siteEntity.getId(), visited);
+
+        SiteCrawl crawl = new SiteCrawl(siteEntity, visited, getHost(siteEntity.getUrl()), false, new HashMap<>());
+        politenessScheduler.configure(crawl.host, configSite.getRequestsPerSecond(), configSite.getMaxInFlight());
+        activeCrawls.add(crawl);
+        log.info("Продолжение индексации {}: в журнале {} адресов", siteEntity.getUrl(), frontier.size());
+        for (FrontierJournal.Entry entry : frontier) {
+            visited.claim(getPath(entry.getUrl(), siteEntity.getUrl()));
+        }
+
+        crawl.pending.incrementAndGet();
+        siteSeeder.loadRobots(siteEntity.getUrl())
+                .thenAccept(robots -> {
+                    applyRobots(crawl, configSite, robots);
+                    for (FrontierJournal.Entry entry : frontier) {
+                        if (!indexingInProgress.get() || robots.isUnavailable()) {
+                            return;
+                        }
+                        String path = getPath(entry.getUrl(), siteEntity.getUrl());
+                        if (stored.contains(path)) {
+                            reprocessStoredPage(crawl, entry.getUrl(), path, entry.getDepth());
+                        } else {
+                            schedulePage(crawl, entry.getUrl(), entry.getDepth());
+                        }
+                    }
+                })
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        log.warn("Ошибка при продолжении обхода {}: {}", siteEntity.getUrl(), error.getMessage());
+                    }
+                    crawl.taskFinished();
+                });
+    }
+
+    /**
+     * В фоне дожидается окончания обхода всех сайтов и отмечает их проиндексированными.
+     * Если завершить индексацию не удалось, недостроенные поколения отмечаются FAILED,
+     * а флаг индексации сбрасывается в любом случае.
+     */
+    private void awaitCrawls() {
+        List<SiteCrawl> crawls = List.copyOf(activeCrawls);
+        CompletableFuture.runAsync(() -> {
+            for (SiteCrawl crawl : crawls) {
+                crawl.done.join();
+            }
+            if (!indexingInProgress.get()) {
+                return;
+            }
+            try {
+                finishCrawls(crawls);
+            } catch (RuntimeException e) {
+                log.error("Ошибка при завершении индексации", e);
+                failUnfinished(crawls, e);
+            } finally {
+                activeCrawls.clear();
+                visitedUrls.clear();
+                indexingInProgress.set(false);
+            }
+        });
+    }
+
+    private void finishCrawls(List<SiteCrawl> crawls) {
+        bulkIndexWriter.flush();
+        for (SiteCrawl crawl : crawls) {
+            if (crawl.incremental && crawl.site.getStatus() != SiteStatus.FAILED && crawl.failedPages.get() == 0) {
+                removeVanishedPages(crawl);
+            }
+            if (crawl.site.getStatus() != SiteStatus.FAILED) {
+                frontierJournal.clear(crawl.site.getId());
+            }
+            if (crawl.failedPages.get() > 0) {
+                log.info("Индексация {}: не удалось загрузить страниц {}", crawl.site.getUrl(), crawl.failedPages.get());
+            }
+            lemmaDictionary.purgeUnused(crawl.site.getId());
+        }
+        List<searchengine.model.Site> indexedSites = siteRepository.findByStatus(SiteStatus.INDEXING);
+        for (searchengine.model.Site site : indexedSites) {
+            site.setStatus(SiteStatus.INDEXED);
+            site.setStatusTime(LocalDateTime.now());
+            siteRepository.save(site);
+        }
+        for (SiteCrawl crawl : crawls) {
+            if (!crawl.site.isLive() && crawl.site.getStatus() != SiteStatus.FAILED) {
+                siteGenerations.promote(crawl.site);
+            }
+        }
+    }
+
+    /**
+     * Отмечает FAILED сайты, индексацию которых не удалось завершить: ещё не ставшие действующими
+     * поколения и сайты, оставшиеся в статусе INDEXING. Их можно проиндексировать заново.
+     */
+    private void failUnfinished(List<SiteCrawl> crawls, RuntimeException cause) {
+        String error = "Ошибка при завершении индексации: " + cause.getMessage();
+        try {
+            for (SiteCrawl crawl : crawls) {
+                if (!crawl.site.isLive() && crawl.site.getStatus() != SiteStatus.FAILED) {
+                    markSiteFailed(crawl.site, error);
+                }
+            }
+            for (searchengine.model.Site site : siteRepository.findByStatus(SiteStatus.INDEXING)) {
+                markSiteFailed(site, error);
+            }
+        } catch (RuntimeException e) {
+            log.error("Не удалось отметить сайты как FAILED", e);
+        }
+    }
+
+    /**
+     * Удаляет страницы, которые были в индексе, но исчезли с сайта: сервер ответил на них 404 или 410,
+     * либо обход прошёл весь сайт без ошибок и не дошёл до них по ссылкам.
+     * Вызывается только для обхода без ошибок загрузки: временный сбой сети не должен стирать индекс.
+     */
+    private void removeVanishedPages(SiteCrawl crawl) {
+        int removed = 0;
+        for (PageFingerprint fingerprint : crawl.fingerprints.values()) {
+            String path = fingerprint.getPath();
+            if (crawl.alive.contains(path) || crawl.truncated && !crawl.gone.contains(path)) {
+                continue;
+            }
+            Optional<Page> page = pageRepository.findById(fingerprint.getId());
+            if (page.isPresent()) {
+                removePage(page.get());
+                removed++;
+            }
+        }
+        log.info("Повторная индексация {}: удалено исчезнувших страниц {}", crawl.site.getUrl(), removed);
+    }
+
     @Override
     @Transactional
     public GenericResponse stopIndexing() {
@@ -105,11 +503,15 @@ public class IndexingServiceImpl implements IndexingService {
             if (!indexingInProgress.get()) {
                 return new GenericResponse(false, "Индексация не запущена");
             }
-            for (ForkJoinPool pool : activePools) {
-                pool.shutdownNow();
-            }
-            activePools.clear();
             indexingInProgress.set(false);
+            politenessScheduler.cancelAll();
+            indexingPipeline.clear();
+            for (SiteCrawl crawl : activeCrawls) {
+                crawl.done.complete(null);
+            }
+            activeCrawls.clear();
+            visitedUrls.clear();
+            frontierJournal.flush();
 
             List<searchengine.model.Site> indexingSites = siteRepository.findByStatus(SiteStatus.INDEXING);
             for (searchengine.model.Site site : indexingSites) {
@@ -124,22 +526,64 @@ public class IndexingServiceImpl implements IndexingService {
         }
     }
 
+    /**
+     * Проверяет адрес и ставит страницу в очередь переиндексации, не дожидаясь загрузки.
+     * Повторные запросы адреса, ещё ждущего в очереди, объединяются с ним.
+     */
     @Override
-    @Transactional
-    public GenericResponse indexPage(String url) {
-        try {
-            searchengine.config.Site matchingConfig = null;
-            for (searchengine.config.Site configSite : sitesList.getSites()) {
-                if (url.startsWith(configSite.getUrl())) {
-                    matchingConfig = configSite;
-                    break;
-                }
-            }
-            if (matchingConfig == null) {
-                return new GenericResponse(false, "Данная страница находится за пределами сайтов, указанных в конфигурационном файле");
+    public IndexPageResponse indexPage(String url, int priority) {
+        String canonicalUrl = crawlScope.canonicalize(url);
+        if (canonicalUrl != null) {
+            url = canonicalUrl;
+        }
+        searchengine.config.Site matchingConfig = null;
+        for (searchengine.config.Site configSite : sitesList.getSites()) {
+            if (url.startsWith(configSite.getUrl())) {
+                matchingConfig = configSite;
+                break;
             }
+        }
+        if (matchingConfig == null) {
+            return new IndexPageResponse(false, "Данная страница находится за пределами сайтов, указанных в конфигурационном файле");
+        }
+        if (resourceFilter.classify(url) == ResourceFilter.Kind.SKIPPED) {
+            return new IndexPageResponse(false, NOT_HTML_ERROR);
+        }
+        String pageUrl = url;
+        searchengine.config.Site siteConfig = matchingConfig;
+        try {
+            return toResponse(pageIndexQueue.submit(pageUrl, priority, () -> reindexPage(pageUrl, siteConfig)));
+        } catch (RejectedExecutionException e) {
+            return new IndexPageResponse(false, e.getMessage());
+        }
+    }
+
+    @Override
+    public IndexPageResponse getPageTask(long ticket) {
+        return pageIndexQueue.find(ticket)
+                .map(IndexingServiceImpl::toResponse)
+                .orElseGet(() -> new IndexPageResponse(false, "Задача переиндексации не найдена"));
+    }
+
+    private static IndexPageResponse toResponse(PageIndexQueue.Ticket ticket) {
+        IndexPageResponse response = new IndexPageResponse(true, null);
+        response.setTicket(ticket.getId());
+        response.setUrl(ticket.getUrl());
+        response.setPriority(ticket.getPriority());
+        response.setStatus(ticket.getStatus().name());
+        response.setRequests(ticket.getRequests());
+        response.setFailure(ticket.getError());
+        return response;
+    }
 
-            searchengine.model.Site siteEntity = siteRepository.findByUrl(matchingConfig.getUrl());
+    /**
+     * Переиндексирует одну страницу в потоке {@link PageIndexQueue}. Загрузка идёт через
+     * {@link PolitenessScheduler} вне очереди обхода, а прежние данные страницы заменяются
+     * новой версией одной транзакцией: при ошибке записи остаётся прежняя версия.
+     */
+    private GenericResponse reindexPage(String url, searchengine.config.Site matchingConfig) {
+        try {
+            searchengine.model.Site siteEntity = siteRepository.findByUrlAndLiveTrue(matchingConfig.getUrl());
             if (siteEntity == null) {
                 siteEntity = new searchengine.model.Site();
                 siteEntity.setName(matchingConfig.getName());
@@ -151,121 +595,108 @@ public class IndexingServiceImpl implements IndexingService {
             }
 
             String pagePath = getPath(url, siteEntity.getUrl());
+            VisitedUrlSet visited = visitedUrls.get(siteEntity.getId());
+            if (visited != null) {
+                visited.claim(pagePath);
+            }
 
-            pageRepository.findBySiteAndPath(siteEntity, pagePath).ifPresent(existingPage -> {
-                List<IndexEntity> indexEntities = indexRepository.findByPage(existingPage);
-                for (IndexEntity idx : indexEntities) {
-                    Lemma lemma = idx.getLemma();
-                    int newFreq = lemma.getFrequency() - 1;
-                    if (newFreq <= 0) {
-                        lemmaRepository.delete(lemma);
-                    } else {
-                        lemma.setFrequency(newFreq);
-                        lemmaRepository.save(lemma);
-                    }
-                }
-                indexRepository.deleteAll(indexEntities);
-                pageRepository.delete(existingPage);
-            });
-
-
-            Connection connection = Jsoup.connect(url)
-                    .userAgent(userAgent)
-                    .referrer(referrer)
-                    .timeout(5000);
-            Connection.Response response = connection.execute();
-            int statusCode = response.statusCode();
-            if (statusCode >= 400 && statusCode < 600) {
-                return new GenericResponse(false, "Страница вернула ошибку " + statusCode);
-            }
-            Document doc = connection.get();
-
-            Page page = new Page();
-            page.setSite(siteEntity);
-            page.setPath(pagePath);
-            page.setCode(statusCode);
-            page.setContent(doc.html());
-            page = pageRepository.save(page);
-
-            processPageIndexing(siteEntity, page, doc.text());
+            FetchedPage fetched = politenessScheduler.submit(getHost(url),
+                    () -> pageFetcher.fetchHtml(url, null, null), true).join();
+            if (fetched.isError()) {
+                return new GenericResponse(false, "Страница вернула ошибку " + fetched.getStatusCode());
+            }
+            if (!fetched.isHtml()) {
+                return new GenericResponse(false, NOT_HTML_ERROR);
+            }
+            String html = HtmlExtractor.decode(fetched.getBody(), fetched.getCharset());
+            ExtractedPage extracted = HtmlExtractor.extract(html, fetched.getUrl());
+            String text = extracted.getText();
+            Map<String, TokenPositions> lemmaPositions = lemmaFinder.collectLemmaPositions(text);
+
+            Page page = pageRepository.findBySiteAndPath(siteEntity, pagePath).orElse(null);
+            if (page == null) {
+                page = new Page();
+                page.setSite(siteEntity);
+                page.setPath(pagePath);
+            }
+            fillPage(page, fetched, CompressedText.compress(html), extracted.getTitle(), text,
+                    ContentHash.ofPage(extracted.getTitle(), text));
+            page = replacePage(page);
+
+            processPageIndexing(siteEntity, page, lemmaPositions);
+            bulkIndexWriter.flush();
+            if (!indexingInProgress.get()) {
+                lemmaDictionary.purgeUnused(siteEntity.getId());
+            }
             return new GenericResponse(true);
         } catch (DataAccessException e) {
-            log.error("Ошибка при работе с БД в indexPage()", e);
+            log.error("Ошибка при работе с БД при переиндексации страницы {}", url, e);
             return new GenericResponse(false, "Ошибка при работе с базой данных: " + e.getMessage());
         } catch (Exception e) {
-            // Ловим любые другие ошибки (например, Jsoup и т.д.)
-            log.error("Общая ошибка в indexPage()", e);
+            // Ловим любые другие ошибки (например, сетевые)
+            log.error("Ошибка при переиндексации страницы {}", url, e);
             return new GenericResponse(false, "Ошибка при индексации страницы: " + e.getMessage());
         }
     }
 
     /**
-     * Метод для извлечения лемм из текста, обновления таблицы lemma и создания записей в index.
+     * Удаляет страницу вместе с её записями index одной транзакцией.
      */
-    private void processPageIndexing(searchengine.model.Site site, Page page, String text) {
-        // Разбиваем текст на токены (можно заменить на использование LemmaFinder, если потребуется)
-        String[] tokens = text.toLowerCase().split("\\W+");
-        Map<String, Integer> lemmaCount = new HashMap<>();
-        log.info("Начинается обработка страницы {}. Найдено токенов: {}", page.getPath(), tokens.length);
+    private void removePage(Page page) {
+        bulkIndexWriter.removePage(page.getSite().getId(), page.getId(), () -> {
+            pageRepository.delete(page);
+            return null;
+        });
+    }
 
-        RussianLuceneMorphology morphology;
-        try {
-            morphology = new RussianLuceneMorphology();
-        } catch (Exception ex) {
-            log.error("Ошибка при создании экземпляра RussianLuceneMorphology", ex);
-            return;
+    /**
+     * Сохраняет новую версию страницы; у известной страницы в той же транзакции удаляются
+     * прежние записи index, так что при ошибке в базе остаётся прежняя версия целиком.
+     */
+    private Page replacePage(Page page) {
+        if (page.getId() == 0) {
+            return pageRepository.save(page);
         }
+        return bulkIndexWriter.removePage(page.getSite().getId(), page.getId(), () -> pageRepository.save(page));
+    }
 
-        for (String token : tokens) {
-            if (token == null || token.trim().isEmpty()) continue;
-            // Фильтрация: оставляем только токены, состоящие из строчных кириллических букв
-            if (!token.matches("[а-яёa-z]+")) {
-                log.debug("Пропускаем токен '{}' - не соответствует шаблону", token);
-                continue;
-            }
-            try {
-                List<String> normalForms = morphology.getNormalForms(token);
-                if (normalForms.isEmpty()) continue;
-                String lemma = normalForms.get(0);
-                lemmaCount.put(lemma, lemmaCount.getOrDefault(lemma, 0) + 1);
-            } catch (org.apache.lucene.morphology.WrongCharaterException ex) {
-                log.debug("Пропускаем токен '{}' из-за ошибки: {}", token, ex.getMessage());
-                continue;
-            } catch (Exception ex) {
-                log.error("Ошибка обработки токена '{}'", token, ex);
-            }
-        }
-        log.info("Сформирован мап лемм для страницы {}: {}", page.getPath(), lemmaCount);
+    /**
+     * Заполняет страницу: HTML сохраняется сжатым, а заголовок и текст – отдельно,
+     * чтобы поиск строил сниппеты, не распаковывая и не разбирая HTML.
+     */
+    private void fillPage(Page page, FetchedPage fetched, byte[] compressedHtml, String title, String text,
+                          String contentHash) {
+        page.setCode(fetched.getStatusCode());
+        page.setCompressedHtml(compressedHtml);
+        page.setTitle(title.length() > MAX_TITLE_LENGTH ? title.substring(0, MAX_TITLE_LENGTH) : title);
+        page.setText(text);
+        page.setContentHash(contentHash);
+        page.setEtag(fetched.getEtag());
+        page.setLastModified(fetched.getLastModified());
+    }
+
+    /**
+     * Передаёт леммы страницы на пакетную запись в таблицы lemma и index.
+     */
+    private void processPageIndexing(searchengine.model.Site site, Page page, Map<String, TokenPositions> lemmaPositions) {
+        log.debug("Сформирован мап лемм для страницы {}: {}", page.getPath(), lemmaPositions.keySet());
 
-        if (lemmaCount.isEmpty()) {
+        if (lemmaPositions.isEmpty()) {
             log.warn("Для страницы {} не найдено лемм", page.getPath());
-            return;
         }
 
-        // Сохраняем леммы и создаем записи в таблице index
-        for (Map.Entry<String, Integer> entry : lemmaCount.entrySet()) {
-            String lemmaStr = entry.getKey();
-            int rank = entry.getValue();
-
-            Optional<Lemma> optionalLemma = lemmaRepository.findBySiteAndLemma(site, lemmaStr);
-            Lemma lemma;
-            if (optionalLemma.isPresent()) {
-                lemma = optionalLemma.get();
-                lemma.setFrequency(lemma.getFrequency() + 1);
-            } else {
-                lemma = new Lemma();
-                lemma.setSite(site);
-                lemma.setLemma(lemmaStr);
-                lemma.setFrequency(1);
-            }
-            lemma = lemmaRepository.save(lemma);
+        // Леммы и записи index пишутся пакетно вместе с другими страницами
+        bulkIndexWriter.add(site.getId(), page.getId(), lemmaPositions);
+    }
 
-            IndexEntity indexEntity = new IndexEntity();
-            indexEntity.setPage(page);
-            indexEntity.setLemma(lemma);
-            indexEntity.setRank(rank);
-            indexRepository.save(indexEntity);
-        }
+    /**
+     * Создаёт множество посещённых путей сайта и заполняет его путями из таблицы page.
+     */
+    private VisitedUrlSet createVisitedSet(searchengine.model.Site site) {
+        VisitedUrlSet visited = new VisitedUrlSet();
+        visited.seed(pageRepository.findPathsBySite(site));
+        visitedUrls.put(site.getId(), visited);
+        return visited;
     }
 
     /**
@@ -282,71 +713,316 @@ public class IndexingServiceImpl implements IndexingService {
         return fullUrl;
     }
 
+    private String getHost(String url) {
+        return URI.create(url).getHost();
+    }
+
     /**
-     * Вложенный класс для обхода страниц с использованием Fork–Join.
-     * Расширен вызовом processPageIndexing для каждой страницы.
+     * Записывает новый адрес в журнал обхода и ставит страницу в очередь.
      */
-    private class PageCrawlerTask extends RecursiveAction {
-        private final searchengine.model.Site site;
-        private final String url;
+    private void enqueuePage(SiteCrawl crawl, String url, int depth) {
+        frontierJournal.add(crawl.site.getId(), url, depth);
+        schedulePage(crawl, url, depth);
+    }
 
-        public PageCrawlerTask(searchengine.model.Site site, String url) {
-            this.site = site;
-            this.url = url;
+    /**
+     * Ставит страницу в очередь хоста сайта. Загрузка начинается, когда планировщик вежливости
+     * выделил ей слот; слот освобождается только после того, как ответ принят стадией разбора.
+     * Адрес с незнакомым расширением сначала проверяется запросом HEAD, если страница
+     * не была проиндексирована раньше.
+     */
+    private void schedulePage(SiteCrawl crawl, String url, int depth) {
+        crawl.pending.incrementAndGet();
+        PageFingerprint known = crawl.fingerprints.get(getPath(url, crawl.site.getUrl()));
+        CompletableFuture<Boolean> accepted = known == null && resourceFilter.classify(url) == ResourceFilter.Kind.UNKNOWN
+                ? politenessScheduler.submit(crawl.host, () -> pageFetcher.probe(url))
+                        .thenApply(probe -> acceptProbe(crawl, url, probe))
+                : CompletableFuture.completedFuture(true);
+        accepted.thenCompose(page -> {
+                    if (!indexingInProgress.get()) {
+                        crawl.taskFinished();
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    if (!page) {
+                        frontierJournal.complete(crawl.site.getId(), url);
+                        crawl.taskFinished();
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    return fetchPage(crawl, url, depth, known);
+                })
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        onPageFailed(crawl, url, error);
+                        crawl.taskFinished();
+                    }
+                });
+    }
+
+    private CompletableFuture<Void> fetchPage(SiteCrawl crawl, String url, int depth, PageFingerprint known) {
+        String etag = known != null ? known.getEtag() : null;
+        String lastModified = known != null ? known.getLastModified() : null;
+        return politenessScheduler.submit(crawl.host, () -> pageFetcher.fetchHtml(url, etag, lastModified)
+                .thenAccept(fetched -> indexingPipeline.parse(
+                        () -> runStep(crawl, url, () -> parsePage(crawl, url, depth, fetched)))));
+    }
+
+    /**
+     * @return true, если по ответу на HEAD адрес может оказаться страницей. Ошибку HEAD
+     * не считаем отказом: часть серверов его не поддерживает, и тип проверит сама загрузка.
+     */
+    private boolean acceptProbe(SiteCrawl crawl, String url, FetchedPage probe) {
+        if (probe.isError() || probe.isHtml()) {
+            return true;
         }
+        rejectUrl(crawl, url, probe.getContentType());
+        return false;
+    }
 
-        @Override
-        protected void compute() {
-            if (!indexingInProgress.get() || Thread.currentThread().isInterrupted()) {
-                return;
+    /**
+     * Запоминает адрес, который оказался не страницей, чтобы не проверять и не загружать его снова.
+     */
+    private void rejectUrl(SiteCrawl crawl, String url, String contentType) {
+        log.debug("Адрес {} пропущен: Content-Type {}", url, contentType);
+        rejectedUrlRegistry.record(crawl.site.getId(), getPath(url, crawl.site.getUrl()), "Content-Type: " + contentType);
+    }
+
+    /**
+     * Выполняет шаг обработки страницы в стадии конвейера.
+     * Шаг возвращает true, если передал страницу следующей стадии; иначе страница обработана
+     * и обход уменьшает счётчик ожидающих страниц.
+     */
+    private void runStep(SiteCrawl crawl, String url, BooleanSupplier step) {
+        boolean handedOver = false;
+        boolean completed = false;
+        try {
+            if (indexingInProgress.get()) {
+                handedOver = step.getAsBoolean();
+                completed = !handedOver;
             }
-            try {
-                String path = getPath(url, site.getUrl());
-                if (pageRepository.existsBySiteAndPath(site, path)) {
-                    return;
-                }
-                long delay = 500 + (long) (Math.random() * 4500);
-                Thread.sleep(delay);
-
-                Connection connection = Jsoup.connect(url)
-                        .userAgent(userAgent)
-                        .referrer(referrer)
-                        .timeout(5000);
-                Connection.Response response = connection.execute();
-                int statusCode = response.statusCode();
-                if (statusCode >= 400 && statusCode < 600) {
-                    return;
-                }
-                Document doc = connection.get();
+        } catch (RuntimeException e) {
+            onPageFailed(crawl, url, e);
+            throw e;
+        } finally {
+            if (completed) {
+                // страница, не дошедшая до конца из-за остановки или ошибки, остаётся в журнале
+                frontierJournal.complete(crawl.site.getId(), url);
+            }
+            if (!handedOver) {
+                crawl.taskFinished();
+            }
+        }
+    }
 
-                Page page = new Page();
-                page.setSite(site);
-                page.setPath(path);
-                page.setCode(statusCode);
-                page.setContent(doc.html());
-                page = pageRepository.save(page);
+    /**
+     * Повторно обрабатывает по сохранённому HTML страницу, которая есть в таблице page,
+     * но осталась в журнале: до остановки она могла не успеть передать ссылки или строки index.
+     */
+    private void reprocessStoredPage(SiteCrawl crawl, String url, String path, int depth) {
+        crawl.pending.incrementAndGet();
+        indexingPipeline.parse(() -> runStep(crawl, url, () -> {
+            Optional<Page> stored = pageRepository.findBySiteAndPath(crawl.site, path);
+            if (stored.isEmpty()) {
+                return false;
+            }
+            Page page = stored.get();
+            ExtractedPage extracted = HtmlExtractor.extract(page.getHtml(), url);
+            crawl.alive.add(path);
+            scheduleLinks(crawl, extracted.getLinks(), depth + 1);
+            String text = extracted.getText();
+            FetchedPage fetched = new FetchedPage(url, page.getCode(), null, null, false,
+                    page.getEtag(), page.getLastModified());
+            ParsedPage parsed = new ParsedPage(url, path, page.getId(), fetched, page.getCompressedHtml(),
+                    extracted.getTitle(), text, ContentHash.ofPage(extracted.getTitle(), text));
+            indexingPipeline.lemmatize(() -> runStep(crawl, url, () -> lemmatizePage(crawl, parsed)));
+            return true;
+        }));
+    }
 
-                site.setStatusTime(LocalDateTime.now());
-                siteRepository.save(site);
+    /**
+     * Стадия разбора: за один проход извлекает заголовок, текст и ссылки, ставит ссылки в очередь
+     * и решает, нужно ли лемматизировать страницу заново. DOM не строится, а дальше по конвейеру
+     * уходят только сжатый HTML и текст: тело ответа не удерживается очередями стадий.
+     */
+    private boolean parsePage(SiteCrawl crawl, String url, int depth, FetchedPage fetched) {
+        String path = getPath(url, crawl.site.getUrl());
+        PageFingerprint known = crawl.fingerprints.get(path);
+        if (fetched.isNotModified()) {
+            Optional<Page> stored = known != null ? pageRepository.findById(known.getId()) : Optional.empty();
+            if (stored.isPresent()) {
+                crawl.alive.add(path);
+                scheduleLinks(crawl, HtmlExtractor.extract(stored.get().getHtml(), url).getLinks(), depth + 1);
+            }
+            return false;
+        }
+        if (fetched.isError()) {
+            if (fetched.getStatusCode() == 404 || fetched.getStatusCode() == 410) {
+                crawl.gone.add(path);
+            } else {
+                log.warn("Страница {} вернула ошибку {}", url, fetched.getStatusCode());
+                crawl.failedPages.incrementAndGet();
+            }
+            return false;
+        }
+        if (!fetched.isHtml()) {
+            rejectUrl(crawl, url, fetched.getContentType());
+            return false;
+        }
+        String html = HtmlExtractor.decode(fetched.getBody(), fetched.getCharset());
+        ExtractedPage extracted = HtmlExtractor.extract(html, fetched.getUrl());
+        crawl.alive.add(path);
+        scheduleLinks(crawl, extracted.getLinks(), depth + 1);
 
-                processPageIndexing(site, page, doc.text());
-
-                Elements links = doc.select("a[href]");
-                List<PageCrawlerTask> tasks = new ArrayList<>();
-                for (Element link : links) {
-                    String absUrl = link.absUrl("href");
-                    if (absUrl.isEmpty()) continue;
-                    if (!absUrl.startsWith(site.getUrl())) continue;
-                    String linkPath = getPath(absUrl, site.getUrl());
-                    if (pageRepository.existsBySiteAndPath(site, linkPath)) continue;
-                    tasks.add(new PageCrawlerTask(site, absUrl));
-                }
-                invokeAll(tasks);
-            } catch (Exception e) {
-                site.setStatus(SiteStatus.FAILED);
-                site.setLastError(e.getMessage());
-                siteRepository.save(site);
+        String text = extracted.getText();
+        String contentHash = ContentHash.ofPage(extracted.getTitle(), text);
+        FetchedPage headers = fetched.withoutBody();
+        if (known != null && contentHash.equals(known.getContentHash())) {
+            indexingPipeline.persist(() -> runStep(crawl, url, () -> updateValidators(known, headers)));
+            return true;
+        }
+        ParsedPage parsed = new ParsedPage(url, path, known != null ? known.getId() : null,
+                headers, CompressedText.compress(html), extracted.getTitle(), text, contentHash);
+        indexingPipeline.lemmatize(() -> runStep(crawl, url, () -> lemmatizePage(crawl, parsed)));
+        return true;
+    }
+
+    /**
+     * Стадия лемматизации: считает леммы текста и передаёт страницу на запись.
+     */
+    private boolean lemmatizePage(SiteCrawl crawl, ParsedPage parsed) {
+        Map<String, TokenPositions> lemmaPositions = lemmaFinder.collectLemmaPositions(parsed.text);
+        indexingPipeline.persist(() -> runStep(crawl, parsed.url, () -> savePage(crawl, parsed, lemmaPositions)));
+        return true;
+    }
+
+    /**
+     * Стадия записи: сохраняет страницу и передаёт её леммы пакетному писателю.
+     * Изменившаяся известная страница сначала теряет старые записи index.
+     */
+    private boolean savePage(SiteCrawl crawl, ParsedPage parsed, Map<String, TokenPositions> lemmaPositions) {
+        searchengine.model.Site site = crawl.site;
+        Page page = parsed.pageId != null ? pageRepository.findById(parsed.pageId).orElse(null) : null;
+        if (page == null) {
+            page = new Page();
+            page.setSite(site);
+            page.setPath(parsed.path);
+        }
+        fillPage(page, parsed.fetched, parsed.compressedHtml, parsed.title, parsed.text, parsed.contentHash);
+        page = replacePage(page);
+
+        site.setStatusTime(LocalDateTime.now());
+        siteRepository.save(site);
+
+        processPageIndexing(site, page, lemmaPositions);
+        return false;
+    }
+
+    /**
+     * Стадия записи для неизменившейся страницы: обновляет только заголовки кеширования.
+     */
+    private boolean updateValidators(PageFingerprint known, FetchedPage fetched) {
+        pageRepository.findById(known.getId()).ifPresent(page -> {
+            page.setEtag(fetched.getEtag());
+            page.setLastModified(fetched.getLastModified());
+            pageRepository.save(page);
+        });
+        return false;
+    }
+
+    /**
+     * @param depth глубина, на которой находятся страницы по ссылкам документа
+     */
+    private void scheduleLinks(SiteCrawl crawl, List<String> links, int depth) {
+        for (String absUrl : links) {
+            String url = claimUrl(crawl, absUrl, depth);
+            if (url == null) continue;
+            enqueuePage(crawl, url, depth);
+        }
+    }
+
+    /**
+     * Ошибка одной страницы не прерывает обход: сайт отмечается ошибочным,
+     * только если недоступна главная страница или отказала база данных.
+     */
+    private void onPageFailed(SiteCrawl crawl, String url, Throwable error) {
+        if (!indexingInProgress.get()) {
+            return;
+        }
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        log.warn("Ошибка при загрузке страницы {}: {}", url, cause.getMessage());
+        crawl.failedPages.incrementAndGet();
+        if (url.equals(crawl.site.getUrl()) || cause instanceof DataAccessException) {
+            markSiteFailed(crawl.site, cause.getMessage());
+        }
+    }
+
+    private void markSiteFailed(searchengine.model.Site site, String error) {
+        site.setStatus(SiteStatus.FAILED);
+        site.setLastError(error);
+        siteRepository.save(site);
+    }
+
+    /**
+     * Состояние обхода одного сайта: множество посещённых путей
+     * и счётчик страниц, которые ещё ждут очереди или обрабатываются.
+     * При повторной индексации хранит отпечатки уже известных страниц,
+     * пути страниц, которые подтвердились при этом обходе, и страниц, на которые сервер ответил 404 или 410.
+     */
+    private static class SiteCrawl {
+        private final searchengine.model.Site site;
+        private final VisitedUrlSet visited;
+        private final String host;
+        private final boolean incremental;
+        private final Map<String, PageFingerprint> fingerprints;
+        private final Set<String> alive = ConcurrentHashMap.newKeySet();
+        private final Set<String> gone = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicInteger failedPages = new AtomicInteger();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile RobotsRules robots = RobotsRules.allowAll();
+        /** Обход упёрся в maxDepth, maxPages или исключённые пути. */
+        private volatile boolean truncated;
+
+        SiteCrawl(searchengine.model.Site site, VisitedUrlSet visited, String host,
+                  boolean incremental, Map<String, PageFingerprint> fingerprints) {
+            this.site = site;
+            this.visited = visited;
+            this.host = host;
+            this.incremental = incremental;
+            this.fingerprints = fingerprints;
+        }
+
+        void taskFinished() {
+            if (pending.decrementAndGet() == 0) {
+                done.complete(null);
             }
         }
     }
+
+    /**
+     * Разобранная страница, которая ждёт лемматизации и записи.
+     */
+    private static class ParsedPage {
+        private final String url;
+        private final String path;
+        /** id уже сохранённой страницы, которую нужно переписать, или null для новой. */
+        private final Integer pageId;
+        private final FetchedPage fetched;
+        /** HTML, сжатый ещё на стадии разбора: в очередях стадий он занимает в 5–10 раз меньше. */
+        private final byte[] compressedHtml;
+        private final String title;
+        private final String text;
+        private final String contentHash;
+
+        ParsedPage(String url, String path, Integer pageId, FetchedPage fetched,
+                   byte[] compressedHtml, String title, String text, String contentHash) {
+            this.url = url;
+            this.path = path;
+            this.pageId = pageId;
+            this.fetched = fetched;
+            this.compressedHtml = compressedHtml;
+            this.title = title;
+            this.text = text;
+            this.contentHash = contentHash;
+        }
+    }
 }
@@ -0,0 +1,271 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.util.PageBitmap;
+import searchengine.util.PostingList;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Обратный индекс в памяти: лемма → множество страниц с ней ({@link PageBitmap}) и rank на каждой
+ * ({@link PostingList}), плюс множество страниц каждого сайта.
+ * Загружается из таблиц index и lemma при запуске, если включена настройка
+ * {@code indexing-settings.search.in-memory-index}, и дальше обновляется {@link BulkIndexWriter}
+ * после каждой записанной в базу порции страниц и {@link SitePurger} при удалении сайта.
+ * <p>
+ * Поиск целиком идёт над сжатыми множествами: страницы выбранных сайтов – объединение их множеств,
+ * частота леммы на них – размер пересечения, страницы запроса – пересечение множеств лемм начиная
+ * с самой редкой. Списки rank читаются только для найденных страниц.
+ * <p>
+ * Изменения и поиск разделены блокировкой чтения-записи: запись держит её только на время
+ * изменения множеств, поиски между собой не блокируются.
+ */
+@Component
+@DependsOn({"entityManagerFactory", "lemmaMigration"})
+@Slf4j
+public class InvertedIndex {
+
+    private static final String LOAD_SQL = "SELECT l.lemma, i.page_id, i.`rank` "
+            + "FROM `index` i JOIN lemma l ON l.id = i.lemma_id";
+    // Все сохранённые страницы, в том числе без лемм: доля страниц с леммой считается так же, как в поиске по базе
+    private static final String LOAD_PAGES_SQL = "SELECT site_id, id FROM page ORDER BY id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, LemmaPostings> lemmas = new HashMap<>();
+    private final Map<Integer, PageBitmap> sitePages = new HashMap<>();
+    private volatile boolean ready;
+
+    public InvertedIndex(JdbcTemplate jdbcTemplate, SearchSettings settings) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = settings.isInMemoryIndex();
+    }
+
+    /**
+     * Загружает индекс из базы потоковыми запросами, не держа результат целиком в памяти драйвера.
+     */
+    @PostConstruct
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        // Для MySQL Connector/J это включает построчное чтение результата
+        streaming.setFetchSize(Integer.MIN_VALUE);
+        long[] rows = new long[1];
+        lock.writeLock().lock();
+        try {
+            streaming.query(LOAD_PAGES_SQL, rs -> {
+                sitePages.computeIfAbsent(rs.getInt(1), id -> new PageBitmap()).add(rs.getInt(2));
+            });
+            streaming.query(LOAD_SQL, rs -> {
+                lemmas.computeIfAbsent(rs.getString(1), lemma -> new LemmaPostings()).ranks.append(rs.getInt(2), rs.getFloat(3));
+                rows[0]++;
+            });
+            // Множества строятся по упорядоченным спискам: значения добавляются в конец без сдвигов
+            for (LemmaPostings postings : lemmas.values()) {
+                postings.ranks.seal();
+                for (int i = 0; i < postings.ranks.size(); i++) {
+                    postings.pages.add(postings.ranks.pageId(i));
+                }
+                postings.pages.runOptimize();
+            }
+            sitePages.values().forEach(PageBitmap::runOptimize);
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Обратный индекс загружен за {} мс: сайтов {}, лемм {}, строк index {}",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), sitePages.size(), lemmas.size(), rows[0]);
+    }
+
+    /**
+     * @return true, если индекс включён и загружен – поиск может обойтись без базы
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Добавляет записанную в базу страницу и её леммы. Страница без лемм тоже учитывается
+     * в числе страниц сайта.
+     *
+     * @param lemmaCounts лемма → rank на странице
+     */
+    public void addPage(int siteId, int pageId, Map<String, Integer> lemmaCounts) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            sitePages.computeIfAbsent(siteId, id -> new PageBitmap()).add(pageId);
+            lemmaCounts.forEach((lemma, rank) -> {
+                LemmaPostings postings = lemmas.computeIfAbsent(lemma, l -> new LemmaPostings());
+                postings.pages.add(pageId);
+                postings.ranks.put(pageId, rank);
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Удаляет страницу из списков её лемм. Леммы, не оставшиеся ни на одной странице, удаляются.
+     */
+    public void removePage(int siteId, int pageId, Collection<String> pageLemmas) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            PageBitmap pages = sitePages.get(siteId);
+            if (pages != null) {
+                pages.remove(pageId);
+            }
+            for (String lemma : pageLemmas) {
+                LemmaPostings postings = lemmas.get(lemma);
+                if (postings == null) {
+                    continue;
+                }
+                postings.pages.remove(pageId);
+                postings.ranks.remove(pageId);
+                if (postings.pages.isEmpty()) {
+                    lemmas.remove(lemma);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Вычитает страницы сайта из множеств всех лемм.
+     */
+    public void dropSite(int siteId) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            PageBitmap pages = sitePages.remove(siteId);
+            if (pages == null) {
+                return;
+            }
+            Iterator<LemmaPostings> iterator = lemmas.values().iterator();
+            while (iterator.hasNext()) {
+                LemmaPostings postings = iterator.next();
+                if (!postings.pages.intersects(pages)) {
+                    continue;
+                }
+                postings.pages = postings.pages.andNot(pages);
+                postings.ranks.removeAll(pages);
+                if (postings.pages.isEmpty()) {
+                    iterator.remove();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ищет страницы сайтов, на которых есть все леммы запроса. Леммы, встречающиеся на доле
+     * страниц не меньше {@code maxPageShare}, в поиске не участвуют, как и в поиске по базе.
+     *
+     * @return id страницы → сумма rank лемм запроса на ней (абсолютная релевантность)
+     */
+    public Map<Integer, Float> search(Collection<Integer> siteIds, Collection<String> queryLemmas, float maxPageShare) {
+        Map<Integer, Float> result = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            PageBitmap scope = scope(siteIds);
+            int totalPages = scope.cardinality();
+            if (totalPages == 0) {
+                return result;
+            }
+            List<LemmaPostings> filtered = new ArrayList<>();
+            List<Integer> frequencies = new ArrayList<>();
+            for (String lemma : queryLemmas) {
+                LemmaPostings postings = lemmas.get(lemma);
+                int frequency = postings == null ? 0 : postings.pages.andCardinality(scope);
+                if ((float) frequency / totalPages >= maxPageShare) {
+                    continue;
+                }
+                if (frequency == 0) {
+                    return result;
+                }
+                int position = 0;
+                while (position < frequencies.size() && frequencies.get(position) <= frequency) {
+                    position++;
+                }
+                filtered.add(position, postings);
+                frequencies.add(position, frequency);
+            }
+            if (filtered.isEmpty()) {
+                return result;
+            }
+            PageBitmap pages = filtered.get(0).pages.and(scope);
+            for (int l = 1; l < filtered.size() && !pages.isEmpty(); l++) {
+                pages = pages.and(filtered.get(l).pages);
+            }
+            sumRanks(pages, filtered, result);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return страницы выбранных сайтов; для одного сайта – его собственное множество без копирования
+     */
+    private PageBitmap scope(Collection<Integer> siteIds) {
+        PageBitmap scope = null;
+        for (int siteId : siteIds) {
+            PageBitmap pages = sitePages.get(siteId);
+            if (pages != null) {
+                scope = scope == null ? pages : scope.or(pages);
+            }
+        }
+        return scope == null ? new PageBitmap() : scope;
+    }
+
+    /**
+     * Складывает rank лемм на найденных страницах. Страницы перебираются по возрастанию id,
+     * поэтому позиция в каждом списке только сдвигается вперёд.
+     */
+    private static void sumRanks(PageBitmap pages, List<LemmaPostings> lemmas, Map<Integer, Float> result) {
+        int[] positions = new int[lemmas.size()];
+        pages.forEach(pageId -> {
+            float score = 0;
+            for (int l = 0; l < positions.length; l++) {
+                PostingList ranks = lemmas.get(l).ranks;
+                positions[l] = ranks.seek(pageId, positions[l]);
+                score += ranks.rank(positions[l]);
+            }
+            result.put(pageId, score);
+        });
+    }
+
+    /**
+     * Страницы одной леммы на всех сайтах: множество для пересечений и rank для подсчёта релевантности.
+     */
+    private static class LemmaPostings {
+        private PageBitmap pages = new PageBitmap();
+        private final PostingList ranks = new PostingList();
+    }
+}
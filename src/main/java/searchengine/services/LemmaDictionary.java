@@ -0,0 +1,230 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Словарь лемм сайтов в памяти: лемма → id строки в таблице lemma и накопленное изменение частоты.
+ * Индексатор получает id леммы без запросов к базе, а частоты складываются в {@link LongAdder}
+ * без чтения-изменения-записи строки, поэтому параллельные страницы не теряют обновлений.
+ * Накопленные изменения записываются в таблицу lemma методом {@link #flush(FlushedChanges)};
+ * если транзакция сброса откатилась, {@link #restore(FlushedChanges)} возвращает их в словарь.
+ * <p>
+ * Изменения частот вносятся под общей блокировкой сайта, а {@link #purgeUnused(int)} берёт её
+ * исключительно: поток, который получил словарь сайта до очистки, не запишет в него изменения после неё.
+ */
+@Component
+@DependsOn("lemmaMigration")
+@Slf4j
+public class LemmaDictionary {
+
+    private static final int IN_CLAUSE_CHUNK = 1000;
+
+    private static final String UPSERT_LEMMA_SQL = "INSERT INTO lemma (site_id, lemma, frequency) VALUES (?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE frequency = frequency + VALUES(frequency)";
+    private static final String SELECT_LEMMA_IDS_SQL = "SELECT id, lemma FROM lemma "
+            + "WHERE site_id = :siteId AND lemma IN (:lemmas)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final Map<Integer, SiteLemmas> sites = new ConcurrentHashMap<>();
+
+    public LemmaDictionary(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    /**
+     * Прибавляет delta к частоте каждой из лемм сайта.
+     */
+    public void record(int siteId, Collection<String> lemmas, int delta) {
+        update(siteId, siteLemmas -> {
+            for (String lemma : lemmas) {
+                siteLemmas.entries.computeIfAbsent(lemma, l -> new Entry()).delta.add(delta);
+            }
+        });
+    }
+
+    /**
+     * @return id леммы или null, если лемма ещё не записана в базу
+     */
+    public Integer findId(int siteId, String lemma) {
+        Entry entry = site(siteId).entries.get(lemma);
+        return entry == null || entry.id == 0 ? null : entry.id;
+    }
+
+    /**
+     * Записывает накопленные изменения частот и получает id новых лемм.
+     * Должен вызываться внутри транзакции вызывающего.
+     *
+     * @param changes сюда складывается всё, что взято из словаря, – даже если запись прервалась ошибкой
+     */
+    public void flush(FlushedChanges changes) {
+        for (Map.Entry<Integer, SiteLemmas> site : sites.entrySet()) {
+            synchronized (site.getValue()) {
+                flushSite(site.getKey(), site.getValue(), changes);
+            }
+        }
+    }
+
+    /**
+     * Возвращает в словарь изменения сброса, транзакция которого откатилась: частоты будут
+     * записаны при следующем сбросе, а id лемм, созданных в этой транзакции, забываются.
+     */
+    public void restore(FlushedChanges changes) {
+        for (Change change : changes.changes) {
+            update(change.siteId, siteLemmas -> {
+                synchronized (siteLemmas) {
+                    Entry entry = siteLemmas.entries.computeIfAbsent(change.lemma, l -> new Entry());
+                    entry.delta.add(change.delta);
+                    if (change.createdId != 0 && entry.id == change.createdId) {
+                        entry.id = 0;
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Удаляет из базы леммы сайта, которые больше не встречаются ни на одной странице,
+     * и сбрасывает словарь сайта: при следующем обращении он загрузится заново.
+     * Изменения частот сайта на это время ждут; после очистки они попадают в заново загруженный словарь.
+     */
+    public void purgeUnused(int siteId) {
+        SiteLemmas siteLemmas = site(siteId);
+        siteLemmas.purgeLock.writeLock().lock();
+        try {
+            synchronized (siteLemmas) {
+                flushSite(siteId, siteLemmas, new FlushedChanges());
+            }
+            int removed = jdbcTemplate.update("DELETE FROM lemma WHERE site_id = ? AND frequency <= 0", siteId);
+            if (removed > 0) {
+                log.info("Удалено неиспользуемых лемм сайта {}: {}", siteId, removed);
+            }
+            siteLemmas.purged = true;
+            sites.remove(siteId, siteLemmas);
+        } finally {
+            siteLemmas.purgeLock.writeLock().unlock();
+        }
+    }
+
+    public void evict(int siteId) {
+        sites.remove(siteId);
+    }
+
+    /**
+     * Выполняет изменение словаря сайта под общей блокировкой; если словарь успели очистить,
+     * повторяет его над заново загруженным.
+     */
+    private void update(int siteId, Consumer<SiteLemmas> change) {
+        while (true) {
+            SiteLemmas siteLemmas = site(siteId);
+            siteLemmas.purgeLock.readLock().lock();
+            try {
+                if (!siteLemmas.purged) {
+                    change.accept(siteLemmas);
+                    return;
+                }
+            } finally {
+                siteLemmas.purgeLock.readLock().unlock();
+            }
+        }
+    }
+
+    private SiteLemmas site(int siteId) {
+        return sites.computeIfAbsent(siteId, this::load);
+    }
+
+    private SiteLemmas load(int siteId) {
+        SiteLemmas siteLemmas = new SiteLemmas();
+        jdbcTemplate.query("SELECT id, lemma FROM lemma WHERE site_id = ?", rs -> {
+            Entry entry = new Entry();
+            entry.id = rs.getInt("id");
+            siteLemmas.entries.put(rs.getString("lemma"), entry);
+        }, siteId);
+        return siteLemmas;
+    }
+
+    private void flushSite(int siteId, SiteLemmas siteLemmas, FlushedChanges changes) {
+        List<Object[]> rows = new ArrayList<>();
+        List<String> created = new ArrayList<>();
+        siteLemmas.entries.forEach((lemma, entry) -> {
+            long delta = entry.delta.sumThenReset();
+            if (delta != 0) {
+                rows.add(new Object[]{siteId, lemma, delta});
+                changes.changes.add(new Change(siteId, lemma, delta));
+            }
+            if (entry.id == 0 && delta > 0) {
+                created.add(lemma);
+            }
+        });
+        if (rows.isEmpty()) {
+            return;
+        }
+        rows.sort(Comparator.comparing(row -> (String) row[1]));
+        jdbcTemplate.batchUpdate(UPSERT_LEMMA_SQL, rows);
+
+        for (int from = 0; from < created.size(); from += IN_CLAUSE_CHUNK) {
+            List<String> chunk = created.subList(from, Math.min(created.size(), from + IN_CLAUSE_CHUNK));
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("siteId", siteId)
+                    .addValue("lemmas", chunk);
+            namedJdbcTemplate.query(SELECT_LEMMA_IDS_SQL, params, rs -> {
+                Entry entry = siteLemmas.entries.get(rs.getString("lemma"));
+                if (entry != null) {
+                    entry.id = rs.getInt("id");
+                    changes.created(siteId, rs.getString("lemma"), entry.id);
+                }
+            });
+        }
+    }
+
+    /**
+     * Изменения частот и новые id лемм, взятые из словаря одним сбросом.
+     */
+    public static class FlushedChanges {
+        private final List<Change> changes = new ArrayList<>();
+
+        private void created(int siteId, String lemma, int id) {
+            Change change = new Change(siteId, lemma, 0);
+            change.createdId = id;
+            changes.add(change);
+        }
+    }
+
+    private static class Change {
+        private final int siteId;
+        private final String lemma;
+        private final long delta;
+        private int createdId;
+
+        Change(int siteId, String lemma, long delta) {
+            this.siteId = siteId;
+            this.lemma = lemma;
+            this.delta = delta;
+        }
+    }
+
+    private static class SiteLemmas {
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+        private final ReadWriteLock purgeLock = new ReentrantReadWriteLock();
+        /** Словарь очищен и убран из {@link #sites}; изменения вносятся в новый. */
+        private volatile boolean purged;
+    }
+
+    private static class Entry {
+        private volatile int id;
+        private final LongAdder delta = new LongAdder();
+    }
+}
@@ -0,0 +1,90 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Приводит таблицу lemma, созданную до появления {@link LemmaDictionary}, к виду, на который он
+ * рассчитывает: колонка lemma с двоичным сравнением и уникальный ключ (site_id, lemma) для
+ * INSERT ... ON DUPLICATE KEY UPDATE. ddl-auto=update не меняет сравнение существующей колонки,
+ * а ключ не может добавить, пока в таблице есть повторы, которые оставляли параллельные потоки.
+ * Повторы сливаются в строку с наименьшим id: частоты складываются, строки index переводятся на неё.
+ * Выполняется при запуске, после обновления схемы Hibernate.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class LemmaMigration {
+
+    private static final String UNIQUE_KEY = "site_lemma_unique";
+    private static final String COLLATION = "utf8mb4_bin";
+
+    private static final String DUPLICATES_SQL = "SELECT l.id, d.keep_id FROM lemma l "
+            + "JOIN (SELECT site_id, lemma, MIN(id) AS keep_id FROM lemma GROUP BY site_id, lemma HAVING COUNT(*) > 1) d "
+            + "ON d.site_id = l.site_id AND d.lemma = l.lemma WHERE l.id <> d.keep_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public LemmaMigration(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void migrate() {
+        String collation = jdbcTemplate.queryForList("SELECT collation_name FROM information_schema.columns "
+                        + "WHERE table_schema = DATABASE() AND table_name = 'lemma' AND column_name = 'lemma'",
+                String.class).stream().findFirst().orElse(null);
+        if (collation == null) {
+            return;
+        }
+        Integer uniqueKeys = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.statistics "
+                + "WHERE table_schema = DATABASE() AND table_name = 'lemma' AND index_name = ?", Integer.class, UNIQUE_KEY);
+        boolean hasUniqueKey = uniqueKeys != null && uniqueKeys > 0;
+        if (COLLATION.equals(collation) && hasUniqueKey) {
+            return;
+        }
+
+        if (!COLLATION.equals(collation)) {
+            // Сначала сравнение: повторы ищутся по тем же правилам, по которым их проверит ключ
+            log.info("Перевод колонки lemma.lemma на сравнение {}", COLLATION);
+            jdbcTemplate.execute("ALTER TABLE lemma MODIFY lemma VARCHAR(255) CHARACTER SET utf8mb4 "
+                    + "COLLATE utf8mb4_bin NOT NULL");
+        }
+        if (!hasUniqueKey) {
+            mergeDuplicates();
+            jdbcTemplate.execute("ALTER TABLE lemma ADD CONSTRAINT " + UNIQUE_KEY + " UNIQUE (site_id, lemma)");
+            log.info("Добавлен уникальный ключ {}", UNIQUE_KEY);
+        }
+    }
+
+    private void mergeDuplicates() {
+        Integer merged = transactionTemplate.execute(status -> {
+            List<Object[]> duplicates = jdbcTemplate.query(DUPLICATES_SQL,
+                    (rs, rowNum) -> new Object[]{rs.getInt("keep_id"), rs.getInt("id")});
+            if (duplicates.isEmpty()) {
+                return 0;
+            }
+            // Страница ссылается только на одну из копий леммы, поэтому частоты можно сложить
+            jdbcTemplate.batchUpdate("UPDATE lemma k JOIN lemma d ON d.id = ? "
+                    + "SET k.frequency = k.frequency + d.frequency WHERE k.id = ?",
+                    duplicates.stream().map(row -> new Object[]{row[1], row[0]}).collect(Collectors.toList()));
+            jdbcTemplate.batchUpdate("UPDATE `index` SET lemma_id = ? WHERE lemma_id = ?", duplicates);
+            jdbcTemplate.batchUpdate("DELETE FROM lemma WHERE id = ?",
+                    duplicates.stream().map(row -> new Object[]{row[1]}).collect(Collectors.toList()));
+            return duplicates.size();
+        });
+        if (merged != null && merged > 0) {
+            log.info("Слито повторяющихся лемм: {}", merged);
+        }
+    }
+}
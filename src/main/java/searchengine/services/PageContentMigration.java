@@ -0,0 +1,73 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.util.CompressedText;
+import searchengine.util.ContentHash;
+import searchengine.util.HtmlExtractor;
+import searchengine.util.HtmlExtractor.ExtractedPage;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Переносит страницы из старой колонки page.content (HTML как MEDIUMTEXT) в сжатый HTML,
+ * заголовок, текст и хеш содержимого, после чего удаляет колонку. Заголовок и текст извлекаются
+ * так же, как при индексации, поэтому повторная индексация не считает перенесённые страницы изменившимися. ddl-auto=update добавляет новые колонки,
+ * но не удаляет старую, а она NOT NULL и мешала бы вставке новых страниц.
+ * Выполняется при запуске, после обновления схемы Hibernate; прерванный перенос
+ * продолжается со строк, которые ещё не перенесены.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+@Slf4j
+public class PageContentMigration {
+
+    private static final int BATCH_SIZE = 200;
+    private static final int MAX_TITLE_LENGTH = 512;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void migrate() {
+        Integer legacyColumns = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.columns "
+                + "WHERE table_schema = DATABASE() AND table_name = 'page' AND column_name = 'content'", Integer.class);
+        if (legacyColumns == null || legacyColumns == 0) {
+            return;
+        }
+        log.info("Перенос содержимого страниц в сжатый вид");
+        jdbcTemplate.execute("ALTER TABLE page MODIFY content MEDIUMTEXT NULL");
+        int lastId = 0;
+        int migrated = 0;
+        while (true) {
+            List<Object[]> rows = new ArrayList<>();
+            jdbcTemplate.query("SELECT p.id, p.content, p.path, s.url FROM page p JOIN site s ON s.id = p.site_id "
+                            + "WHERE p.id > ? AND p.content IS NOT NULL ORDER BY p.id LIMIT ?",
+                    rs -> {
+                        String html = rs.getString("content");
+                        ExtractedPage extracted = HtmlExtractor.extract(html, rs.getString("url") + rs.getString("path"));
+                        String title = extracted.getTitle();
+                        String text = extracted.getText();
+                        String contentHash = ContentHash.ofPage(title, text);
+                        if (title.length() > MAX_TITLE_LENGTH) {
+                            title = title.substring(0, MAX_TITLE_LENGTH);
+                        }
+                        rows.add(new Object[]{CompressedText.compress(html), title, text, contentHash, rs.getInt("id")});
+                    }, lastId, BATCH_SIZE);
+            if (rows.isEmpty()) {
+                break;
+            }
+            jdbcTemplate.batchUpdate("UPDATE page SET html_deflated = ?, title = ?, text_content = ?, content_hash = ?, "
+                    + "content = NULL WHERE id = ?", rows);
+            lastId = (Integer) rows.get(rows.size() - 1)[4];
+            migrated += rows.size();
+        }
+        jdbcTemplate.execute("ALTER TABLE page DROP COLUMN content");
+        log.info("Перенесено страниц: {}", migrated);
+    }
+}
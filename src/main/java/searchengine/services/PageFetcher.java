@@ -0,0 +1,35 @@
+package searchengine.services;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Загрузчик страниц сайта.
+ * Реализация не должна блокировать вызывающий поток: результат приходит асинхронно,
+ * а разбор и лемматизация выполняются уже в пуле обработки страниц.
+ */
+public interface PageFetcher {
+
+    default CompletableFuture<FetchedPage> fetch(String url) {
+        return fetch(url, null, null);
+    }
+
+    /**
+     * Условный запрос: если страница не менялась с момента прошлой загрузки,
+     * сервер может ответить 304 без тела.
+     *
+     * @param etag         ETag прошлого ответа или null
+     * @param lastModified Last-Modified прошлого ответа или null
+     */
+    CompletableFuture<FetchedPage> fetch(String url, String etag, String lastModified);
+
+    /**
+     * Условный запрос страницы для индексации: если по заголовкам ответа видно,
+     * что это не HTML, тело не скачивается и ответ возвращается с пустым телом.
+     */
+    CompletableFuture<FetchedPage> fetchHtml(String url, String etag, String lastModified);
+
+    /**
+     * Запрос HEAD: узнаёт код ответа и тип содержимого, не загружая тело.
+     */
+    CompletableFuture<FetchedPage> probe(String url);
+}
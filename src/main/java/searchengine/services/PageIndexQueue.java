@@ -0,0 +1,245 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.PageQueueSettings;
+import searchengine.dto.statistics.GenericResponse;
+import searchengine.dto.statistics.PipelineStageStatistics;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Очередь переиндексации отдельных страниц по запросам /api/indexPage.
+ * Запрос сразу получает номер задачи, а страницу переиндексируют собственные потоки очереди:
+ * сначала задачи с большим приоритетом, при равном приоритете – в порядке поступления.
+ * <p>
+ * Повторные запросы одного адреса, пока задача ждёт в очереди, объединяются с ней
+ * (приоритет берётся наибольший). Если страница уже переиндексируется, новая задача ждёт,
+ * пока закончится текущая: один адрес никогда не обрабатывается двумя потоками сразу.
+ */
+@Component
+@Slf4j
+public class PageIndexQueue {
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED }
+
+    private static final Comparator<Ticket> ORDER = Comparator.comparingInt((Ticket ticket) -> -ticket.priority)
+            .thenComparingLong(ticket -> ticket.id);
+
+    private final int capacity;
+    private final int historySize;
+    private final int workers;
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicInteger busyWorkers = new AtomicInteger();
+    private final StageMeter meter = new StageMeter();
+
+    // Поля ниже защищены монитором очереди
+    private final PriorityQueue<Ticket> ready = new PriorityQueue<>(ORDER);
+    /** Задачи, ждущие, пока закончится задача того же адреса. */
+    private final Map<String, Ticket> deferred = new HashMap<>();
+    private final Map<String, Ticket> queuedByUrl = new HashMap<>();
+    private final Set<String> runningUrls = new HashSet<>();
+    private final Map<Long, Ticket> tickets = new HashMap<>();
+    private final Deque<Long> finished = new ArrayDeque<>();
+    private long sequence;
+    private boolean running = true;
+
+    public PageIndexQueue(PageQueueSettings settings) {
+        this.capacity = Math.max(1, settings.getCapacity());
+        this.historySize = Math.max(0, settings.getHistorySize());
+        this.workers = Math.max(1, settings.getThreads());
+        for (int i = 0; i < workers; i++) {
+            Thread thread = new Thread(this::work, "page-index-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+    }
+
+    /**
+     * Ставит страницу в очередь или объединяет запрос с уже ждущей задачей того же адреса.
+     *
+     * @param url      канонический адрес страницы – по нему объединяются повторные запросы
+     * @param priority чем больше, тем раньше задача будет выполнена
+     * @param task     переиндексация страницы; выполняется в потоке очереди
+     * @throws RejectedExecutionException если очередь заполнена или остановлена
+     */
+    public synchronized Ticket submit(String url, int priority, Supplier<GenericResponse> task) {
+        if (!running) {
+            throw new RejectedExecutionException("Очередь переиндексации страниц остановлена");
+        }
+        Ticket queued = queuedByUrl.get(url);
+        if (queued != null) {
+            queued.requests++;
+            if (priority > queued.priority) {
+                boolean wasReady = ready.remove(queued);
+                queued.priority = priority;
+                if (wasReady) {
+                    ready.add(queued);
+                }
+            }
+            return queued;
+        }
+        if (queuedByUrl.size() >= capacity) {
+            throw new RejectedExecutionException("Очередь переиндексации страниц переполнена");
+        }
+        Ticket ticket = new Ticket(++sequence, url, priority, task);
+        queuedByUrl.put(url, ticket);
+        tickets.put(ticket.id, ticket);
+        if (runningUrls.contains(url)) {
+            deferred.put(url, ticket);
+        } else {
+            ready.add(ticket);
+            notifyAll();
+        }
+        return ticket;
+    }
+
+    /**
+     * @return задача, ещё не выполненная или из последних {@code historySize} выполненных
+     */
+    public synchronized Optional<Ticket> find(long id) {
+        return Optional.ofNullable(tickets.get(id));
+    }
+
+    public PipelineStageStatistics getStatistics() {
+        PipelineStageStatistics statistics = new PipelineStageStatistics();
+        statistics.setName("indexPage");
+        statistics.setWorkers(workers);
+        statistics.setBusyWorkers(busyWorkers.get());
+        synchronized (this) {
+            statistics.setQueueSize(queuedByUrl.size());
+        }
+        statistics.setQueueCapacity(capacity);
+        meter.fill(statistics);
+        return statistics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        threads.forEach(Thread::interrupt);
+    }
+
+    private void work() {
+        while (true) {
+            Ticket ticket;
+            try {
+                ticket = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (ticket == null) {
+                return;
+            }
+            busyWorkers.incrementAndGet();
+            long start = System.nanoTime();
+            GenericResponse response = null;
+            try {
+                response = ticket.task.get();
+            } catch (RuntimeException e) {
+                log.error("Ошибка при переиндексации страницы {}", ticket.url, e);
+                response = new GenericResponse(false, "Ошибка при индексации страницы: " + e.getMessage());
+            } finally {
+                // Даже при Error задача завершается, иначе адрес навсегда остался бы занятым
+                if (response == null) {
+                    response = new GenericResponse(false, "Ошибка при индексации страницы");
+                }
+                meter.record(System.nanoTime() - start, response.isResult());
+                busyWorkers.decrementAndGet();
+                complete(ticket, response);
+            }
+        }
+    }
+
+    private synchronized Ticket take() throws InterruptedException {
+        while (running && ready.isEmpty()) {
+            wait();
+        }
+        if (!running) {
+            return null;
+        }
+        Ticket ticket = ready.poll();
+        queuedByUrl.remove(ticket.url);
+        runningUrls.add(ticket.url);
+        ticket.status = Status.RUNNING;
+        return ticket;
+    }
+
+    private synchronized void complete(Ticket ticket, GenericResponse response) {
+        ticket.status = response.isResult() ? Status.DONE : Status.FAILED;
+        ticket.error = response.getError();
+        runningUrls.remove(ticket.url);
+        Ticket next = deferred.remove(ticket.url);
+        if (next != null) {
+            ready.add(next);
+            notifyAll();
+        }
+        finished.add(ticket.id);
+        while (finished.size() > historySize) {
+            tickets.remove(finished.poll());
+        }
+    }
+
+    /**
+     * Задача переиндексации страницы. Поля меняются только под монитором очереди.
+     */
+    public static class Ticket {
+        private final long id;
+        private final String url;
+        private final Supplier<GenericResponse> task;
+        private volatile int priority;
+        private volatile int requests = 1;
+        private volatile Status status = Status.QUEUED;
+        private volatile String error;
+
+        Ticket(long id, String url, int priority, Supplier<GenericResponse> task) {
+            this.id = id;
+            this.url = url;
+            this.priority = priority;
+            this.task = task;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        /** Сколько запросов объединено в этой задаче. */
+        public int getRequests() {
+            return requests;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import searchengine.dto.statistics.PipelineStageStatistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Стадия конвейера индексации: ограниченная очередь задач и собственные рабочие потоки.
+ * Если очередь заполнена, {@link #submit(Runnable)} ждёт свободного места —
+ * так медленная стадия притормаживает предыдущую, а не накапливает задачи в памяти.
+ */
+@Slf4j
+public class PipelineStage {
+
+    private final String name;
+    private final int workers;
+    private final int capacity;
+    private final BlockingQueue<Runnable> queue;
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicInteger busyWorkers = new AtomicInteger();
+    private final StageMeter meter = new StageMeter();
+    private volatile boolean running = true;
+
+    public PipelineStage(String name, int workers, int capacity) {
+        this.name = name;
+        this.workers = Math.max(1, workers);
+        this.capacity = Math.max(1, capacity);
+        this.queue = new ArrayBlockingQueue<>(this.capacity);
+        for (int i = 0; i < this.workers; i++) {
+            Thread thread = new Thread(this::work, "pipeline-" + name + "-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+    }
+
+    /**
+     * Ставит задачу в очередь стадии, при необходимости дожидаясь места.
+     *
+     * @throws RejectedExecutionException если стадия остановлена или ожидание прервано
+     */
+    public void submit(Runnable task) {
+        if (!running) {
+            throw new RejectedExecutionException("Стадия " + name + " остановлена");
+        }
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Ожидание очереди стадии " + name + " прервано", e);
+        }
+    }
+
+    /**
+     * Удаляет из очереди задачи, которые ещё не начали выполняться.
+     */
+    public List<Runnable> clear() {
+        List<Runnable> dropped = new ArrayList<>();
+        queue.drainTo(dropped);
+        return dropped;
+    }
+
+    public void resetStatistics() {
+        meter.reset();
+    }
+
+    public PipelineStageStatistics getStatistics() {
+        PipelineStageStatistics statistics = new PipelineStageStatistics();
+        statistics.setName(name);
+        statistics.setWorkers(workers);
+        statistics.setBusyWorkers(busyWorkers.get());
+        statistics.setQueueSize(queue.size());
+        statistics.setQueueCapacity(capacity);
+        meter.fill(statistics);
+        return statistics;
+    }
+
+    public void shutdown() {
+        running = false;
+        clear();
+        threads.forEach(Thread::interrupt);
+    }
+
+    private void work() {
+        while (running) {
+            Runnable task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            busyWorkers.incrementAndGet();
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                task.run();
+                success = true;
+            } catch (RuntimeException e) {
+                log.error("Ошибка в стадии {}", name, e);
+            } finally {
+                meter.record(System.nanoTime() - start, success);
+                busyWorkers.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.FetchSettings;
+import searchengine.dto.statistics.PipelineStageStatistics;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Общий планировщик запросов ко всем сайтам.
+ * Для каждого хоста держит ведро токенов (запросов в секунду) и лимит одновременных запросов,
+ * а для всех хостов вместе – общий лимит одновременных запросов.
+ * Свободные слоты общего лимита раздаются хостам по кругу, по одному запросу за ход:
+ * маленький сайт не ждёт, пока закончится большой, а большой не может занять все слоты.
+ * Запрос, для которого ещё не наступило время, ждёт в очереди хоста, а не в рабочем потоке:
+ * очередь разбирается по таймеру и по завершении предыдущих запросов.
+ * Срочные запросы (переиндексация страниц по запросу пользователя) обгоняют обход:
+ * у хоста они берутся раньше обычных, а сам хост встаёт в начало круга.
+ * Ограничения хоста на них действуют так же.
+ */
+@Component
+public class PolitenessScheduler {
+
+    static final double DEFAULT_REQUESTS_PER_SECOND = 2.0;
+    static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    private final int globalMaxInFlight;
+    private final Map<String, HostBucket> buckets = new HashMap<>();
+    private final Deque<HostBucket> rotation = new ArrayDeque<>();
+    private final StageMeter meter = new StageMeter();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "politeness-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private int globalInFlight;
+
+    public PolitenessScheduler(FetchSettings settings) {
+        this.globalMaxInFlight = Math.max(1, settings.getMaxInFlight());
+    }
+
+    /**
+     * Задаёт ограничения для хоста. Уже поставленные в очередь запросы подчиняются новым ограничениям.
+     */
+    public void configure(String host, double requestsPerSecond, int maxInFlight) {
+        synchronized (this) {
+            HostBucket bucket = bucket(host);
+            bucket.intervalNanos = toInterval(requestsPerSecond);
+            bucket.maxInFlight = Math.max(1, maxInFlight);
+        }
+    }
+
+    /**
+     * Ставит запрос в очередь хоста.
+     *
+     * @param request запускает запрос, когда подошла его очередь; не должен блокировать поток
+     * @return результат запроса; слот хоста освобождается, когда этот результат завершён
+     */
+    public <T> CompletableFuture<T> submit(String host, Supplier<CompletableFuture<T>> request) {
+        return submit(host, request, false);
+    }
+
+    /**
+     * Ставит запрос в очередь хоста.
+     *
+     * @param urgent запрос выполняется раньше всех обычных запросов, ждущих своей очереди
+     */
+    public <T> CompletableFuture<T> submit(String host, Supplier<CompletableFuture<T>> request, boolean urgent) {
+        PendingRequest<T> pending = new PendingRequest<>(request);
+        synchronized (this) {
+            HostBucket bucket = bucket(host);
+            if (urgent) {
+                bucket.urgent.add(pending);
+                if (bucket.inRotation) {
+                    rotation.remove(bucket);
+                }
+                bucket.inRotation = true;
+                rotation.addFirst(bucket);
+            } else {
+                bucket.queue.add(pending);
+                enterRotation(bucket);
+            }
+        }
+        drain();
+        return pending.result;
+    }
+
+    /**
+     * Отменяет все запросы, которые ещё ждут своей очереди.
+     */
+    public void cancelAll() {
+        List<PendingRequest<?>> cancelled = new ArrayList<>();
+        synchronized (this) {
+            for (HostBucket bucket : buckets.values()) {
+                cancelled.addAll(bucket.urgent);
+                cancelled.addAll(bucket.queue);
+                bucket.urgent.clear();
+                bucket.queue.clear();
+                bucket.inRotation = false;
+            }
+            rotation.clear();
+        }
+        cancelled.forEach(pending -> pending.result.cancel(false));
+    }
+
+    public void resetStatistics() {
+        meter.reset();
+    }
+
+    /**
+     * Загрузка страниц как стадия конвейера: очередь – запросы, ждущие слота хоста,
+     * рабочие – общий лимит одновременных запросов. Очередь не ограничена (queueCapacity = -1).
+     */
+    public PipelineStageStatistics getStatistics() {
+        PipelineStageStatistics statistics = new PipelineStageStatistics();
+        statistics.setName("fetch");
+        synchronized (this) {
+            statistics.setWorkers(globalMaxInFlight);
+            statistics.setBusyWorkers(globalInFlight);
+            statistics.setQueueSize(buckets.values().stream()
+                    .mapToInt(bucket -> bucket.urgent.size() + bucket.queue.size()).sum());
+        }
+        statistics.setQueueCapacity(-1);
+        meter.fill(statistics);
+        return statistics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cancelAll();
+        timer.shutdownNow();
+    }
+
+    private HostBucket bucket(String host) {
+        return buckets.computeIfAbsent(host, h -> new HostBucket());
+    }
+
+    private void enterRotation(HostBucket bucket) {
+        if (!bucket.inRotation && bucket.hasPending()) {
+            bucket.inRotation = true;
+            rotation.add(bucket);
+        }
+    }
+
+    private void onTimer(HostBucket bucket) {
+        synchronized (this) {
+            bucket.timerScheduled = false;
+            enterRotation(bucket);
+        }
+        drain();
+    }
+
+    private void release(HostBucket bucket) {
+        synchronized (this) {
+            bucket.inFlight--;
+            globalInFlight--;
+            enterRotation(bucket);
+        }
+        drain();
+    }
+
+    /**
+     * Обходит хосты по кругу и запускает по одному запросу у каждого, кому это сейчас разрешено.
+     * Хост, которому мешает собственный лимит или интервал, выходит из круга
+     * и возвращается в конец очереди после освобождения слота или по таймеру.
+     */
+    private void drain() {
+        List<Started> ready = new ArrayList<>();
+        synchronized (this) {
+            while (globalInFlight < globalMaxInFlight && !rotation.isEmpty()) {
+                HostBucket bucket = rotation.poll();
+                bucket.inRotation = false;
+                if (!bucket.hasPending() || bucket.inFlight >= bucket.maxInFlight) {
+                    continue;
+                }
+                long now = System.nanoTime();
+                if (now < bucket.nextSlotNanos) {
+                    if (!bucket.timerScheduled) {
+                        bucket.timerScheduled = true;
+                        timer.schedule(() -> onTimer(bucket), bucket.nextSlotNanos - now, TimeUnit.NANOSECONDS);
+                    }
+                    continue;
+                }
+                bucket.nextSlotNanos = now + bucket.intervalNanos;
+                bucket.inFlight++;
+                globalInFlight++;
+                ready.add(new Started(bucket, bucket.poll()));
+                enterRotation(bucket);
+            }
+        }
+        ready.forEach(started -> start(started.bucket, started.pending));
+    }
+
+    private <T> void start(HostBucket bucket, PendingRequest<T> pending) {
+        CompletableFuture<T> started;
+        long startNanos = System.nanoTime();
+        try {
+            started = pending.request.get();
+        } catch (RuntimeException e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        started.whenComplete((value, error) -> {
+            meter.record(System.nanoTime() - startNanos, error == null);
+            release(bucket);
+            if (error != null) {
+                pending.result.completeExceptionally(error);
+            } else {
+                pending.result.complete(value);
+            }
+        });
+    }
+
+    private static class PendingRequest<T> {
+        private final Supplier<CompletableFuture<T>> request;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        PendingRequest(Supplier<CompletableFuture<T>> request) {
+            this.request = request;
+        }
+    }
+
+    private static class Started {
+        private final HostBucket bucket;
+        private final PendingRequest<?> pending;
+
+        Started(HostBucket bucket, PendingRequest<?> pending) {
+            this.bucket = bucket;
+            this.pending = pending;
+        }
+    }
+
+    /**
+     * Состояние хоста. Ведро токенов ёмкостью в один токен: соседние запросы к хосту
+     * разнесены не меньше чем на 1/rps. Поля защищены монитором планировщика.
+     */
+    private static class HostBucket {
+        private final Queue<PendingRequest<?>> urgent = new ArrayDeque<>();
+        private final Queue<PendingRequest<?>> queue = new ArrayDeque<>();
+        private long intervalNanos = toInterval(DEFAULT_REQUESTS_PER_SECOND);
+        private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        private long nextSlotNanos = System.nanoTime();
+        private int inFlight;
+        private boolean inRotation;
+        private boolean timerScheduled;
+
+        private boolean hasPending() {
+            return !urgent.isEmpty() || !queue.isEmpty();
+        }
+
+        private PendingRequest<?> poll() {
+            return urgent.isEmpty() ? queue.poll() : urgent.poll();
+        }
+    }
+
+    private static long toInterval(double requestsPerSecond) {
+        if (requestsPerSecond <= 0) {
+            return 0;
+        }
+        return (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+    }
+}
@@ -0,0 +1,51 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.util.ContentHash;
+
+import java.util.List;
+
+/**
+ * Список адресов сайта, которые оказались не HTML-страницами (таблица rejected_url).
+ * Пути из списка сразу считаются посещёнными при продолжении и повторной индексации,
+ * поэтому документы и изображения не проверяются и не загружаются снова.
+ * Полная индексация копирует список в новое поколение сайта ({@link SiteGenerations}).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RejectedUrlRegistry {
+
+    private static final int MAX_REASON_LENGTH = 255;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Запоминает отклонённый адрес. Ошибка записи не прерывает обход: адрес лишь будет проверен снова.
+     */
+    public void record(int siteId, String path, String reason) {
+        String trimmed = reason.length() > MAX_REASON_LENGTH ? reason.substring(0, MAX_REASON_LENGTH) : reason;
+        try {
+            jdbcTemplate.update("INSERT IGNORE INTO rejected_url (site_id, path, path_hash, reason) VALUES (?, ?, ?, ?)",
+                    siteId, path, ContentHash.sha256(path), trimmed);
+        } catch (DataAccessException e) {
+            log.warn("Не удалось запомнить отклонённый адрес {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Переносит список в новое поколение сайта, чтобы полная индексация не проверяла эти адреса снова.
+     */
+    public void copy(int fromSiteId, int toSiteId) {
+        jdbcTemplate.update("INSERT IGNORE INTO rejected_url (site_id, path, path_hash, reason) "
+                + "SELECT ?, path, path_hash, reason FROM rejected_url WHERE site_id = ?", toSiteId, fromSiteId);
+    }
+
+    public List<String> findPaths(int siteId) {
+        return jdbcTemplate.queryForList("SELECT path FROM rejected_url WHERE site_id = ?", String.class, siteId);
+    }
+}
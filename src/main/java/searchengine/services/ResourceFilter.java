@@ -0,0 +1,74 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.ResourceSettings;
+
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Решает по адресу, стоит ли загружать ресурс как страницу. Документы, изображения, архивы
+ * и медиа отсекаются по расширению до запроса; адрес с незнакомым расширением
+ * сначала проверяется запросом HEAD, а тело ответа с типом, отличным от HTML,
+ * не скачивается и при обычной загрузке ({@link PageFetcher#fetchHtml}).
+ */
+@Component
+public class ResourceFilter {
+
+    public enum Kind {
+        /** Страница: загружается сразу. */
+        HTML,
+        /** Не страница: не загружается. */
+        SKIPPED,
+        /** Тип неизвестен: нужна проверка запросом HEAD. */
+        UNKNOWN
+    }
+
+    private final Set<String> skippedExtensions = new HashSet<>();
+    private final Set<String> htmlExtensions = new HashSet<>();
+    private final boolean headProbe;
+
+    public ResourceFilter(ResourceSettings settings) {
+        for (String extension : settings.getSkippedExtensions()) {
+            skippedExtensions.add(extension.toLowerCase(Locale.ROOT));
+        }
+        for (String extension : settings.getHtmlExtensions()) {
+            htmlExtensions.add(extension.toLowerCase(Locale.ROOT));
+        }
+        this.headProbe = settings.isHeadProbe();
+    }
+
+    public Kind classify(String url) {
+        String extension = extension(url);
+        if (extension == null || htmlExtensions.contains(extension)) {
+            return Kind.HTML;
+        }
+        if (skippedExtensions.contains(extension)) {
+            return Kind.SKIPPED;
+        }
+        return headProbe ? Kind.UNKNOWN : Kind.HTML;
+    }
+
+    /**
+     * @return расширение последнего сегмента пути в нижнем регистре или null, если его нет
+     */
+    private static String extension(String url) {
+        String path;
+        try {
+            path = URI.create(url).getPath();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (path == null) {
+            return null;
+        }
+        String segment = path.substring(path.lastIndexOf('/') + 1);
+        int dot = segment.lastIndexOf('.');
+        if (dot <= 0 || dot == segment.length() - 1) {
+            return null;
+        }
+        return segment.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+}
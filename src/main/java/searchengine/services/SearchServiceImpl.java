@@ -11,9 +11,13 @@ import searchengine.dto.search.SearchData;
 import searchengine.dto.search.SearchResponse;
 import searchengine.model.*;
 import searchengine.util.LemmaFinder;
+import searchengine.util.PageBitmap;
+import searchengine.util.SnippetBuilder;
+import searchengine.util.TokenPositions;
 
 import javax.transaction.Transactional;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,10 +25,18 @@ import java.util.stream.Collectors;
 @Slf4j
 public class SearchServiceImpl implements SearchService {
 
+    private static final int ID_CHUNK_SIZE = 1000;
+    /** Леммы, встречающиеся на такой доле страниц и чаще, в поиске не участвуют. */
+    private static final float MAX_PAGE_SHARE = 0.8f;
+    private static final Comparator<Map.Entry<Integer, Float>> BY_RELEVANCE =
+            Map.Entry.<Integer, Float>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
     private final LemmaRepository lemmaRepository;
     private final IndexRepository indexRepository;
+    private final LemmaFinder lemmaFinder;
+    private final InvertedIndex invertedIndex;
 
     @Override
     @Transactional
@@ -33,7 +45,7 @@ public class SearchServiceImpl implements SearchService {
 
         List<Site> sites;
         if (siteUrl != null && !siteUrl.isBlank()) {
-            Site site = siteRepository.findByUrl(siteUrl);
+            Site site = siteRepository.findByUrlAndLiveTrue(siteUrl);
             if (site == null || site.getStatus() != SiteStatus.INDEXED) {
                 response.setResult(false);
                 response.setError("Сайт не найден или не проиндексирован");
@@ -41,7 +53,7 @@ public class SearchServiceImpl implements SearchService {
             }
             sites = Collections.singletonList(site);
         } else {
-            sites = siteRepository.findAll().stream()
+            sites = siteRepository.findByLiveTrue().stream()
                     .filter(s -> s.getStatus() == SiteStatus.INDEXED)
                     .collect(Collectors.toList());
             if (sites.isEmpty()) {
@@ -51,15 +63,6 @@ public class SearchServiceImpl implements SearchService {
             }
         }
 
-        LemmaFinder lemmaFinder;
-        try {
-            lemmaFinder = LemmaFinder.getInstance();
-        } catch (Exception e) {
-            log.error("Ошибка инициализации LemmaFinder", e);
-            response.setResult(false);
-            response.setError("Ошибка лемматизации");
-            return response;
-        }
         Set<String> queryLemmas = lemmaFinder.getLemmaSet(query);
 
         if (queryLemmas.isEmpty()) {
@@ -68,199 +71,215 @@ public class SearchServiceImpl implements SearchService {
             return response;
         }
 
-        float threshold = 0.8f;
-        Set<String> filteredLemmas = new HashSet<>();
-        for (String lemma : queryLemmas) {
-            int totalCount = 0;
-            int totalPages = 0;
-            for (Site s : sites) {
-                totalPages += pageRepository.countBySite(s);
-                Optional<Lemma> optionalLemma = lemmaRepository.findBySiteAndLemma(s, lemma);
-                if (optionalLemma.isPresent()) {
-                    totalCount += optionalLemma.get().getFrequency();
-                }
-            }
-            // Проверяем отношение
-            if (totalPages == 0) {
-                continue;
-            }
-            float ratio = (float) totalCount / (float) totalPages;
-            if (ratio < threshold) {
-                filteredLemmas.add(lemma);
-            }
+        Map<Integer, Float> absRelevance;
+        if (invertedIndex.isReady()) {
+            List<Integer> siteIds = sites.stream().map(Site::getId).collect(Collectors.toList());
+            absRelevance = invertedIndex.search(siteIds, queryLemmas, MAX_PAGE_SHARE);
+        } else {
+            absRelevance = scoreInDatabase(sites, queryLemmas);
         }
-        if (filteredLemmas.isEmpty()) {
+        if (absRelevance.isEmpty()) {
             response.setResult(true);
             response.setCount(0);
             response.setData(Collections.emptyList());
             return response;
         }
 
-        List<String> sortedLemmas = filteredLemmas.stream()
-                .sorted(Comparator.comparingInt(lemma -> getLemmaFrequencySum(lemma, sites)))
-                .collect(Collectors.toList());
+        float maxAbsRelevance = 0;
+        for (float relevance : absRelevance.values()) {
+            maxAbsRelevance = Math.max(maxAbsRelevance, relevance);
+        }
 
-        Set<Page> resultPages = null;
-        for (String lemma : sortedLemmas) {
-            Set<Page> lemmaPages = findPagesByLemma(lemma, sites);
-            if (resultPages == null) {
-                resultPages = lemmaPages;
-            } else {
-                resultPages.retainAll(lemmaPages);
-            }
-            if (resultPages.isEmpty()) {
-                break;
-            }
+        // Страницы, заголовки и сниппеты загружаются только для запрошенного окна результатов
+        List<Integer> window = topPages(absRelevance, offset, limit);
+        Map<Integer, PageRepository.PageSummary> pages = new HashMap<>();
+        for (PageRepository.PageSummary page : pageRepository.findSummariesByIdIn(window)) {
+            pages.put(page.getId(), page);
         }
+        Map<Integer, List<TokenPositions>> positions = findPositions(window, queryLemmas);
 
-        if (resultPages == null || resultPages.isEmpty()) {
-            response.setResult(true);
-            response.setCount(0);
-            response.setData(Collections.emptyList());
-            return response;
+        List<SearchData> dataList = new ArrayList<>(window.size());
+        for (int pageId : window) {
+            PageRepository.PageSummary page = pages.get(pageId);
+            if (page == null) {
+                // Страница удалена после поиска по индексу
+                continue;
+            }
+            SearchData data = new SearchData();
+            data.setSite(page.getSiteUrl());
+            data.setSiteName(page.getSiteName());
+            data.setUri(page.getPath());
+            data.setTitle(Objects.requireNonNullElse(page.getTitle(), ""));
+            data.setSnippet(SnippetBuilder.build(Objects.requireNonNullElse(page.getText(), ""),
+                    positions.getOrDefault(pageId, Collections.emptyList())));
+            data.setRelevance(absRelevance.get(pageId) / maxAbsRelevance);
+            dataList.add(data);
         }
 
-        List<PageRelevance> relevanceList = new ArrayList<>();
-        float maxAbsRelevance = 0;
+        response.setResult(true);
+        response.setCount(absRelevance.size());
+        response.setData(dataList);
+        return response;
+    }
 
-        for (Page page : resultPages) {
-            float absRelevance = 0;
-            for (String lemma : sortedLemmas) {
-                Optional<Lemma> lemOpt = lemmaRepository.findBySiteAndLemma(page.getSite(), lemma);
-                if (lemOpt.isEmpty()) {
-                    continue;
-                }
-                Lemma lem = lemOpt.get();
-                IndexEntity idx = indexRepository
-                        .findByPage(page)
-                        .stream()
-                        .filter(i -> i.getLemma().getId() == lem.getId())
-                        .findFirst()
-                        .orElse(null);
-                if (idx != null) {
-                    absRelevance += idx.getRank();
-                }
-            }
-            if (absRelevance > maxAbsRelevance) {
-                maxAbsRelevance = absRelevance;
+    /**
+     * Отбирает id страниц окна [offset, offset + limit) по убыванию релевантности, при равной – по id.
+     * Все найденные страницы не сортируются: куча хранит только offset + limit лучших.
+     */
+    static List<Integer> topPages(Map<Integer, Float> absRelevance, int offset, int limit) {
+        int from = Math.max(0, offset);
+        int size = (int) Math.min((long) from + limit, absRelevance.size());
+        if (limit <= 0 || from >= size) {
+            return Collections.emptyList();
+        }
+        // На вершине кучи – худшая из отобранных страниц
+        PriorityQueue<Map.Entry<Integer, Float>> heap = new PriorityQueue<>(size, BY_RELEVANCE.reversed());
+        for (Map.Entry<Integer, Float> entry : absRelevance.entrySet()) {
+            if (heap.size() < size) {
+                heap.add(entry);
+            } else if (BY_RELEVANCE.compare(entry, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(entry);
             }
-            relevanceList.add(new PageRelevance(page, absRelevance));
         }
+        Integer[] ranked = new Integer[heap.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = heap.poll().getKey();
+        }
+        return Arrays.asList(ranked).subList(from, ranked.length);
+    }
 
-        List<SearchData> dataList = new ArrayList<>();
-        for (PageRelevance pr : relevanceList) {
-            if (pr.absRelevance == 0) {
+    /**
+     * Отбирает леммы, пересекает списки страниц и считает абсолютную релевантность запросами к базе.
+     *
+     * @return id страницы → сумма rank лемм запроса на ней
+     */
+    Map<Integer, Float> scoreInDatabase(List<Site> sites, Set<String> queryLemmas) {
+        // Все леммы запроса по всем сайтам – одним запросом по уникальному индексу (site_id, lemma)
+        Map<String, List<Lemma>> lemmasByText = lemmaRepository.findBySiteInAndLemmaIn(sites, queryLemmas)
+                .stream()
+                .collect(Collectors.groupingBy(Lemma::getLemma));
+        int totalPages = 0;
+        for (Site s : sites) {
+            totalPages += pageRepository.countBySite(s);
+        }
+
+        Set<String> filteredLemmas = new HashSet<>();
+        for (String lemma : queryLemmas) {
+            int totalCount = getLemmaFrequencySum(lemmasByText.getOrDefault(lemma, Collections.emptyList()));
+            // Проверяем отношение
+            if (totalPages == 0) {
                 continue;
             }
-            float rel = pr.absRelevance / maxAbsRelevance;
+            float ratio = (float) totalCount / (float) totalPages;
+            if (ratio < MAX_PAGE_SHARE) {
+                filteredLemmas.add(lemma);
+            }
+        }
+        if (filteredLemmas.isEmpty()) {
+            return Collections.emptyMap();
+        }
 
-            SearchData data = new SearchData();
-            data.setSite(pr.page.getSite().getUrl());
-            data.setSiteName(pr.page.getSite().getName());
-            data.setUri(pr.page.getPath());
-            data.setTitle(extractTitle(pr.page.getContent()));
-            data.setSnippet(makeSnippet(pr.page.getContent(), queryLemmas));
-            data.setRelevance(rel);
+        List<String> sortedLemmas = filteredLemmas.stream()
+                .sorted(Comparator.comparingInt(lemma ->
+                        getLemmaFrequencySum(lemmasByText.getOrDefault(lemma, Collections.emptyList()))))
+                .collect(Collectors.toList());
 
-            dataList.add(data);
+        // Пересечение начинается с самой редкой леммы, следующие ищутся только среди найденных страниц
+        PageBitmap resultPageIds = null;
+        List<Integer> allLemmaIds = new ArrayList<>();
+        for (String lemma : sortedLemmas) {
+            List<Integer> lemmaIds = lemmasByText.getOrDefault(lemma, Collections.emptyList()).stream()
+                    .map(Lemma::getId)
+                    .collect(Collectors.toList());
+            allLemmaIds.addAll(lemmaIds);
+            resultPageIds = findPagesByLemma(lemmaIds, resultPageIds);
+            if (resultPageIds.isEmpty()) {
+                break;
+            }
         }
 
-        dataList.sort(Comparator.comparing(SearchData::getRelevance).reversed());
-
-        int totalCount = dataList.size();
-        int toIndex = Math.min(offset + limit, totalCount);
-        if (offset > totalCount) {
-            dataList = Collections.emptyList();
-        } else {
-            dataList = dataList.subList(offset, toIndex);
+        if (resultPageIds == null || resultPageIds.isEmpty()) {
+            return Collections.emptyMap();
         }
 
-        // 10) Формируем ответ
-        response.setResult(true);
-        response.setCount(totalCount);
-        response.setData(dataList);
-        return response;
+        Map<Integer, Float> absRelevance = new HashMap<>();
+        forEachChunk(resultPageIds, chunk -> {
+            for (IndexRepository.PageRank rank : indexRepository.sumRanksByPageIds(chunk, allLemmaIds)) {
+                absRelevance.put(rank.getPageId(), (float) rank.getRelevance());
+            }
+        });
+        return absRelevance;
     }
 
     /**
      * Возвращает суммарный frequency леммы по всем сайтам (для сортировки).
      */
-    int getLemmaFrequencySum(String lemma, List<Site> sites) {
+    int getLemmaFrequencySum(List<Lemma> siteLemmas) {
         int sum = 0;
-        for (Site site : sites) {
-            Optional<Lemma> optional = lemmaRepository.findBySiteAndLemma(site, lemma);
-            if (optional.isPresent()) {
-                sum += optional.get().getFrequency();
-            }
+        for (Lemma lemma : siteLemmas) {
+            sum += lemma.getFrequency();
         }
         return sum;
     }
 
     /**
-     * Находит все страницы, на которых встречается лемма, по всем сайтам из списка.
+     * Находит страницы, на которых встречается лемма (её id на разных сайтах).
+     *
+     * @param candidates если задано, поиск идёт только среди этих страниц
      */
-    Set<Page> findPagesByLemma(String lemma, List<Site> sites) {
-        Set<Page> result = new HashSet<>();
-        for (Site site : sites) {
-            Optional<Lemma> optionalLemma = lemmaRepository.findBySiteAndLemma(site, lemma);
-            if (optionalLemma.isPresent()) {
-                Lemma l = optionalLemma.get();
-                List<IndexEntity> idxList = indexRepository.findAll()
-                        .stream()
-                        .filter(i -> i.getLemma().getId() == l.getId())
-                        .collect(Collectors.toList());
-                for (IndexEntity idx : idxList) {
-                    result.add(idx.getPage());
-                }
-            }
+    PageBitmap findPagesByLemma(List<Integer> lemmaIds, PageBitmap candidates) {
+        PageBitmap result = new PageBitmap();
+        if (lemmaIds.isEmpty()) {
+            return result;
+        }
+        if (candidates == null) {
+            indexRepository.findPageIdsByLemmaIds(lemmaIds).forEach(result::add);
+        } else {
+            forEachChunk(candidates, chunk ->
+                    indexRepository.findPageIdsByLemmaIdsAndPageIds(lemmaIds, chunk).forEach(result::add));
         }
         return result;
     }
 
     /**
-     * Простой метод для извлечения заголовка из HTML-кода.
-     * Можно улучшить, используя Jsoup.
+     * Делит id на части, чтобы списки IN в запросах оставались короткими.
      */
-    String extractTitle(String html) {
-        String lower = html.toLowerCase();
-        int start = lower.indexOf("<title>");
-        int end = lower.indexOf("</title>");
-        if (start == -1 || end == -1 || start > end) {
-            return "";
+    private static void forEachChunk(Collection<Integer> ids, Consumer<List<Integer>> action) {
+        List<Integer> chunk = new ArrayList<>(Math.min(ids.size(), ID_CHUNK_SIZE));
+        for (Integer id : ids) {
+            chunk.add(id);
+            if (chunk.size() == ID_CHUNK_SIZE) {
+                action.accept(chunk);
+                chunk = new ArrayList<>(ID_CHUNK_SIZE);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            action.accept(chunk);
         }
-        return html.substring(start + 7, end).replaceAll("\\s+", " ").trim();
     }
 
-    /**
-     * Примерная логика формирования сниппета:
-     * Ищем первые вхождения слов из query в тексте и обрезаем вокруг.
-     * В реальном проекте лучше использовать Jsoup + регулярки + более сложную логику.
-     */
-    String makeSnippet(String html, Set<String> queryLemmas) {
-        String text = html.replaceAll("<[^>]+>", " ");
-        text = text.trim().replaceAll("\\s+", " ");
-        if (text.length() > 1000) {
-            text = text.substring(0, 1000);
-        }
-        for (String q : queryLemmas) {
-            text = text.replaceAll("(?i)\\b" + q + "\\b", "<b>" + q + "</b>");
-        }
-        if (text.length() > 200) {
-            return text.substring(0, 200) + "...";
-        }
-        return text;
+    private static void forEachChunk(PageBitmap ids, Consumer<List<Integer>> action) {
+        List<Integer> list = new ArrayList<>(ids.cardinality());
+        ids.forEach(list::add);
+        forEachChunk(list, action);
     }
 
     /**
-     * Вспомогательный класс для хранения пары (Page, absRelevance).
+     * Читает из индекса вхождения лемм запроса на страницах окна одним запросом.
+     * Строки, записанные до появления позиций, пропускаются: сниппет для них – начало текста.
      */
-    private static class PageRelevance {
-        private final Page page;
-        private final float absRelevance;
-
-        public PageRelevance(Page page, float absRelevance) {
-            this.page = page;
-            this.absRelevance = absRelevance;
+    private Map<Integer, List<TokenPositions>> findPositions(List<Integer> pageIds, Set<String> queryLemmas) {
+        Map<Integer, List<TokenPositions>> positions = new HashMap<>();
+        if (pageIds.isEmpty()) {
+            return positions;
+        }
+        for (IndexRepository.PagePositions row : indexRepository.findPositions(pageIds, queryLemmas)) {
+            if (row.getPositions() != null) {
+                positions.computeIfAbsent(row.getPageId(), id -> new ArrayList<>())
+                        .add(TokenPositions.fromBytes(row.getPositions()));
+            }
         }
+        return positions;
     }
 }
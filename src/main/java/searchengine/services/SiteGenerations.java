@@ -0,0 +1,108 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.model.Site;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поколения данных сайта. Полная индексация строит новое поколение – отдельную строку site
+ * с тем же url и live = false, к которой привязываются новые страницы, леммы и строки index, –
+ * пока поиск работает по действующему поколению. После обхода поколения меняются местами
+ * одной транзакцией, а старое удаляется в фоне.
+ * <p>
+ * Поколение с live = false и id меньше, чем у действующего, – отслужившее и подлежит удалению;
+ * с id больше – строящееся (или прерванное, которое можно продолжить).
+ */
+@Component
+@DependsOn({"entityManagerFactory", "lemmaMigration"})
+@Slf4j
+public class SiteGenerations {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SitePurger sitePurger;
+    private final LemmaDictionary lemmaDictionary;
+    private final long purgeDelayMs;
+
+    private final ScheduledExecutorService collector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "site-generation-gc");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SiteGenerations(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                           SitePurger sitePurger, LemmaDictionary lemmaDictionary,
+                           @Value("${indexing-settings.generation-purge-delay-ms:60000}") long purgeDelayMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.sitePurger = sitePurger;
+        this.lemmaDictionary = lemmaDictionary;
+        this.purgeDelayMs = purgeDelayMs;
+    }
+
+    /**
+     * Удаляет поколения, отслужившие до перезапуска приложения.
+     */
+    @PostConstruct
+    public void collectRetired() {
+        List<Integer> retired = jdbcTemplate.queryForList("SELECT s.id FROM site s "
+                + "JOIN site l ON l.url = s.url AND l.live WHERE NOT s.live AND s.id < l.id", Integer.class);
+        for (int siteId : retired) {
+            schedulePurge(siteId, 0);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        collector.shutdownNow();
+    }
+
+    /**
+     * Делает поколение действующим. Прежнее действующее поколение того же сайта перестаёт быть
+     * видимым поиску в той же транзакции и удаляется в фоне, когда закончатся начатые по нему запросы.
+     */
+    public void promote(Site site) {
+        List<Integer> retired = transactionTemplate.execute(status -> {
+            List<Integer> ids = jdbcTemplate.queryForList("SELECT id FROM site WHERE url = ? AND live AND id <> ? FOR UPDATE",
+                    Integer.class, site.getUrl(), site.getId());
+            jdbcTemplate.update("UPDATE site SET live = FALSE WHERE url = ? AND id <> ?", site.getUrl(), site.getId());
+            jdbcTemplate.update("UPDATE site SET live = TRUE WHERE id = ?", site.getId());
+            return ids;
+        });
+        site.setLive(true);
+        for (int siteId : retired) {
+            log.info("Сайт {}: поколение {} заменено поколением {}", site.getUrl(), siteId, site.getId());
+            schedulePurge(siteId, purgeDelayMs);
+        }
+    }
+
+    /**
+     * Удаляет в фоне недостроенное поколение, от которого отказались.
+     */
+    public void discard(Site site) {
+        schedulePurge(site.getId(), 0);
+    }
+
+    private void schedulePurge(int siteId, long delayMs) {
+        collector.schedule(() -> {
+            try {
+                lemmaDictionary.evict(siteId);
+                sitePurger.purge(siteId);
+            } catch (RuntimeException e) {
+                log.error("Не удалось удалить поколение сайта {}", siteId, e);
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,94 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Удаление сайта со всеми его данными запросами над множествами строк, без загрузки сущностей.
+ * Таблицы очищаются в порядке зависимостей: index → lemma → page → frontier, rejected_url → site.
+ * Строки удаляются порциями, каждая в своей короткой транзакции (вне транзакции вызывающего),
+ * поэтому удаление большого сайта не держит блокировки и не раздувает журнал отката.
+ */
+@Component
+@Slf4j
+public class SitePurger {
+
+    private static final String SELECT_PAGE_IDS_SQL = "SELECT id FROM page WHERE site_id = ? AND id > ? ORDER BY id LIMIT ?";
+    private static final String DELETE_INDEX_SQL = "DELETE FROM `index` WHERE page_id IN (:pageIds)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final InvertedIndex invertedIndex;
+    private final int chunkSize;
+
+    public SitePurger(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                      InvertedIndex invertedIndex,
+                      @Value("${indexing-settings.purge-chunk-size:5000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.invertedIndex = invertedIndex;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Удаляет сайт, его страницы, леммы, строки index, журнал обхода и отклонённые адреса.
+     */
+    public void purge(int siteId) {
+        long start = System.nanoTime();
+        invertedIndex.dropSite(siteId);
+        long indexRows = deleteIndexRows(siteId);
+        long lemmas = deleteInChunks("lemma", siteId);
+        long pages = deleteInChunks("page", siteId);
+        deleteInChunks("frontier", siteId);
+        deleteInChunks("rejected_url", siteId);
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update("DELETE FROM site WHERE id = ?", siteId));
+        log.info("Сайт {} удалён за {} мс: страниц {}, лемм {}, строк index {}", siteId,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), pages, lemmas, indexRows);
+    }
+
+    /**
+     * Удаляет строки index по страницам сайта: порция id страниц берётся по первичному ключу,
+     * а строки index находятся по индексу page_id.
+     */
+    private long deleteIndexRows(int siteId) {
+        int pagesPerChunk = Math.max(1, chunkSize / 100);
+        long deleted = 0;
+        int lastId = 0;
+        while (true) {
+            List<Integer> pageIds = jdbcTemplate.queryForList(SELECT_PAGE_IDS_SQL, Integer.class, siteId, lastId, pagesPerChunk);
+            if (pageIds.isEmpty()) {
+                return deleted;
+            }
+            Integer rows = transactionTemplate.execute(status ->
+                    namedJdbcTemplate.update(DELETE_INDEX_SQL, Map.of("pageIds", pageIds)));
+            deleted += rows == null ? 0 : rows;
+            lastId = pageIds.get(pageIds.size() - 1);
+        }
+    }
+
+    private long deleteInChunks(String table, int siteId) {
+        String sql = "DELETE FROM " + table + " WHERE site_id = ? LIMIT " + chunkSize;
+        long deleted = 0;
+        while (true) {
+            Integer rows = transactionTemplate.execute(status -> jdbcTemplate.update(sql, siteId));
+            int count = rows == null ? 0 : rows;
+            deleted += count;
+            if (count < chunkSize) {
+                return deleted;
+            }
+        }
+    }
+}
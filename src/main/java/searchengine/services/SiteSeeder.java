@@ -0,0 +1,148 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import searchengine.config.SeedSettings;
+import searchengine.util.RobotsRules;
+import searchengine.util.SitemapParser;
+import searchengine.util.SitemapParser.Sitemap;
+import searchengine.util.SitemapParser.SitemapUrl;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Загружает robots.txt и карты сайта перед обходом.
+ * Запросы идут через {@link PolitenessScheduler}, как и запросы страниц, поэтому подчиняются
+ * тем же ограничениям хоста. Сайт без robots.txt (ответ 4xx) обходится без ограничений,
+ * а без карты сайта – только по ссылкам. Если robots.txt временно недоступен (5xx или ошибка сети),
+ * сайт целиком считается запрещённым до следующего обхода.
+ */
+@Component
+@Slf4j
+public class SiteSeeder {
+
+    private final PageFetcher pageFetcher;
+    private final PolitenessScheduler politenessScheduler;
+    private final SeedSettings settings;
+    private final int maxBodySize;
+
+    @Value("${indexing-settings.user-agent:HeliontSearchBot}")
+    private String userAgent = "HeliontSearchBot";
+
+    public SiteSeeder(PageFetcher pageFetcher, PolitenessScheduler politenessScheduler, SeedSettings settings,
+                      @Value("${indexing-settings.fetch.max-body-size:5242880}") int maxBodySize) {
+        this.pageFetcher = pageFetcher;
+        this.politenessScheduler = politenessScheduler;
+        this.settings = settings;
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * @return правила robots.txt сайта; если файла нет – правила без ограничений,
+     * если сервер ответил 5xx или не ответил – {@link RobotsRules#unavailable()}
+     */
+    public CompletableFuture<RobotsRules> loadRobots(String siteUrl) {
+        if (!settings.isRobots()) {
+            return CompletableFuture.completedFuture(RobotsRules.allowAll());
+        }
+        String robotsUrl = URI.create(siteUrl).resolve("/robots.txt").toString();
+        return fetch(robotsUrl)
+                .thenApply(page -> {
+                    if (page.getStatusCode() == 200) {
+                        return RobotsRules.parse(new String(page.getBody(), StandardCharsets.UTF_8), userAgent);
+                    }
+                    if (page.getStatusCode() >= 500) {
+                        log.warn("{} недоступен (код {}): сайт не обходится", robotsUrl, page.getStatusCode());
+                        return RobotsRules.unavailable();
+                    }
+                    return RobotsRules.allowAll();
+                })
+                .exceptionally(error -> {
+                    log.warn("Не удалось загрузить {}: {}", robotsUrl, error.getMessage());
+                    return RobotsRules.unavailable();
+                });
+    }
+
+    /**
+     * Загружает карты сайта из robots.txt, а если там их нет – /sitemap.xml, вместе с вложенными картами.
+     *
+     * @return адреса страниц сайта с датами изменения в порядке их следования в картах
+     */
+    public CompletableFuture<List<SitemapUrl>> loadSitemaps(String siteUrl, RobotsRules robots) {
+        if (!settings.isSitemaps()) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        List<String> roots = robots.getSitemaps().isEmpty()
+                ? List.of(URI.create(siteUrl).resolve("/sitemap.xml").toString())
+                : robots.getSitemaps();
+        SitemapWalk walk = new SitemapWalk();
+        List<CompletableFuture<Void>> loads = new ArrayList<>();
+        for (String root : roots) {
+            loads.add(loadSitemap(root, walk));
+        }
+        return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    List<SitemapUrl> urls = new ArrayList<>(walk.urls);
+                    return urls.size() > settings.getMaxSitemapUrls()
+                            ? urls.subList(0, settings.getMaxSitemapUrls())
+                            : urls;
+                });
+    }
+
+    private CompletableFuture<Void> loadSitemap(String url, SitemapWalk walk) {
+        if (!walk.seen.add(url) || walk.loaded.incrementAndGet() > settings.getMaxSitemaps()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return fetch(url)
+                .thenCompose(page -> {
+                    if (page.getStatusCode() != 200) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    Sitemap sitemap = SitemapParser.parse(new String(unpack(page.getBody()), StandardCharsets.UTF_8));
+                    walk.urls.addAll(sitemap.getUrls());
+                    List<CompletableFuture<Void>> nested = new ArrayList<>();
+                    for (String child : sitemap.getSitemaps()) {
+                        nested.add(loadSitemap(child, walk));
+                    }
+                    return CompletableFuture.allOf(nested.toArray(new CompletableFuture<?>[0]));
+                })
+                .exceptionally(error -> {
+                    log.warn("Не удалось загрузить карту сайта {}: {}", url, error.getMessage());
+                    return null;
+                });
+    }
+
+    private CompletableFuture<FetchedPage> fetch(String url) {
+        return politenessScheduler.submit(URI.create(url).getHost(), () -> pageFetcher.fetch(url));
+    }
+
+    /**
+     * Карты сайта часто отдаются файлами .xml.gz без Content-Encoding: распаковываем их по сигнатуре gzip.
+     */
+    private byte[] unpack(byte[] body) {
+        if (body.length > 2 && (body[0] & 0xFF) == 0x1F && (body[1] & 0xFF) == 0x8B) {
+            return HttpClientPageFetcher.decode(body, "gzip", maxBodySize);
+        }
+        return body;
+    }
+
+    /**
+     * Состояние загрузки карт одного сайта: карты сайта могут ссылаться друг на друга.
+     */
+    private static class SitemapWalk {
+        private final Set<String> seen = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger loaded = new AtomicInteger();
+        private final Queue<SitemapUrl> urls = new ConcurrentLinkedQueue<>();
+    }
+}
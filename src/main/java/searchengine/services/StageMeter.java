@@ -0,0 +1,45 @@
+package searchengine.services;
+
+import searchengine.dto.statistics.PipelineStageStatistics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики одной стадии индексации: сколько элементов обработано, сколько с ошибкой
+ * и сколько времени на них ушло. Пропускная способность считается с момента последнего сброса.
+ */
+class StageMeter {
+
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    private volatile long sinceNanos = System.nanoTime();
+
+    void record(long nanos, boolean success) {
+        busyNanos.add(nanos);
+        if (success) {
+            processed.increment();
+        } else {
+            failed.increment();
+        }
+    }
+
+    void reset() {
+        processed.reset();
+        failed.reset();
+        busyNanos.reset();
+        sinceNanos = System.nanoTime();
+    }
+
+    void fill(PipelineStageStatistics statistics) {
+        long done = processed.sum();
+        long errors = failed.sum();
+        long total = done + errors;
+        double elapsedSeconds = Math.max(1, System.nanoTime() - sinceNanos) / 1e9;
+        statistics.setProcessed(done);
+        statistics.setFailed(errors);
+        statistics.setAverageMillis(total == 0 ? 0 : (double) busyNanos.sum() / total / TimeUnit.MILLISECONDS.toNanos(1));
+        statistics.setThroughputPerSecond(total / elapsedSeconds);
+    }
+}
@@ -1,7 +1,9 @@
 package searchengine.services;
 
+import searchengine.dto.statistics.PipelineStatisticsResponse;
 import searchengine.dto.statistics.StatisticsResponse;
 
 public interface StatisticsService {
     StatisticsResponse getStatistics();
+    PipelineStatisticsResponse getPipelineStatistics();
 }
@@ -6,6 +6,8 @@ import searchengine.dao.LemmaRepository;
 import searchengine.dao.PageRepository;
 import searchengine.dao.SiteRepository;
 import searchengine.dto.statistics.DetailedStatisticsItem;
+import searchengine.dto.statistics.PipelineStageStatistics;
+import searchengine.dto.statistics.PipelineStatisticsResponse;
 import searchengine.dto.statistics.StatisticsData;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.dto.statistics.TotalStatistics;
@@ -13,7 +15,9 @@ import searchengine.model.Site;
 import searchengine.model.SiteStatus;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -22,19 +26,28 @@ public class StatisticsServiceImpl implements StatisticsService {
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
     private final LemmaRepository lemmaRepository;
+    private final IndexingPipeline indexingPipeline;
+    private final PageIndexQueue pageIndexQueue;
 
+    /**
+     * Для каждого сайта показывает самое новое поколение: во время полной индексации –
+     * строящееся, чтобы был виден ход обхода. Отслужившие поколения, ждущие удаления, не учитываются.
+     */
     @Override
     public StatisticsResponse getStatistics() {
+        Map<String, Site> newest = new LinkedHashMap<>();
+        for (Site site : siteRepository.findAll()) {
+            newest.merge(site.getUrl(), site, (a, b) -> a.getId() >= b.getId() ? a : b);
+        }
         TotalStatistics total = new TotalStatistics();
-        total.setSites((int) siteRepository.count());
-        total.setPages((int) pageRepository.count());
-        total.setLemmas((int) lemmaRepository.count());
+        total.setSites(newest.size());
         boolean indexing = siteRepository.findByStatus(SiteStatus.INDEXING).stream().findAny().isPresent();
         total.setIndexing(indexing);
 
+        int totalPages = 0;
+        int totalLemmas = 0;
         List<DetailedStatisticsItem> detailed = new ArrayList<>();
-        List<Site> sites = siteRepository.findAll();
-        for (Site site : sites) {
+        for (Site site : newest.values()) {
             DetailedStatisticsItem item = new DetailedStatisticsItem();
             item.setUrl(site.getUrl());
             item.setName(site.getName());
@@ -46,7 +59,11 @@ public class StatisticsServiceImpl implements StatisticsService {
             item.setPages(sitePages);
             item.setLemmas(siteLemmas);
             detailed.add(item);
+            totalPages += sitePages;
+            totalLemmas += siteLemmas;
         }
+        total.setPages(totalPages);
+        total.setLemmas(totalLemmas);
 
         StatisticsData data = new StatisticsData();
         data.setTotal(total);
@@ -57,4 +74,18 @@ public class StatisticsServiceImpl implements StatisticsService {
         response.setStatistics(data);
         return response;
     }
+
+    /**
+     * Очереди и пропускная способность стадий конвейера индексации:
+     * стадия с полной очередью и занятыми потоками – узкое место.
+     */
+    @Override
+    public PipelineStatisticsResponse getPipelineStatistics() {
+        PipelineStatisticsResponse response = new PipelineStatisticsResponse();
+        response.setResult(true);
+        List<PipelineStageStatistics> stages = new ArrayList<>(indexingPipeline.getStatistics());
+        stages.add(pageIndexQueue.getStatistics());
+        response.setStages(stages);
+        return response;
+    }
 }
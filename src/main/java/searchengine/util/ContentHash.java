@@ -0,0 +1,40 @@
+package searchengine.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public final class ContentHash {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ContentHash() {
+    }
+
+    /**
+     * Хеш содержимого страницы для обнаружения изменений: учитывает и заголовок, и текст,
+     * чтобы правка одного заголовка тоже считалась изменением.
+     * Нулевой символ разделяет части, поэтому перенос слов между ними даёт другой хеш.
+     */
+    public static String ofPage(String title, String text) {
+        return sha256(title + '\0' + text);
+    }
+
+    /**
+     * @return SHA-256 текста в шестнадцатеричном виде (64 символа)
+     */
+    public static String sha256(String text) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,343 @@
+package searchengine.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.jsoup.parser.Parser;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Однопроходное извлечение заголовка, текста и ссылок из HTML без построения DOM.
+ * Разбор идёт по строке слева направо: текст между тегами сразу нормализуется в буфер,
+ * у ссылок забирается только href, а содержимое script и style пропускается целиком.
+ * В памяти остаются лишь результат и исходная строка, поэтому страница не держит
+ * дерево узлов, пока её ссылки ставятся в очередь и она ждёт лемматизации.
+ * <p>
+ * Текст совпадает с тем, что даёт {@code Document.text()} Jsoup, кроме пробелов на границах
+ * блочных элементов: здесь и открывающий, и закрывающий блочный тег отделяет текст пробелом,
+ * поэтому слова соседних ячеек и абзацев не склеиваются; строчные теги текст не разделяют.
+ */
+public final class HtmlExtractor {
+
+    private static final Set<String> BLOCK_TAGS = Set.of(
+            "html", "head", "body", "title", "meta", "link", "frameset", "frame", "noframes", "noscript",
+            "section", "nav", "aside", "hgroup", "header", "footer", "main", "article", "address",
+            "p", "h1", "h2", "h3", "h4", "h5", "h6", "ul", "ol", "li", "dl", "dt", "dd", "menu", "dir",
+            "pre", "listing", "plaintext", "div", "center", "blockquote", "hr", "br", "figure", "figcaption",
+            "form", "fieldset", "legend", "option", "optgroup", "select", "textarea", "button", "label",
+            "table", "caption", "thead", "tbody", "tfoot", "colgroup", "col", "tr", "th", "td",
+            "video", "audio", "canvas", "details", "summary", "svg", "math", "template", "ins", "del");
+    /** Элементы, содержимое которых не текст страницы и не разметка. */
+    private static final Set<String> SKIPPED_TAGS = Set.of("script", "style");
+    /** Элементы, содержимое которых – текст без разметки. */
+    private static final Set<String> RAW_TEXT_TAGS = Set.of("title", "textarea");
+
+    private static final int CHARSET_SNIFF_BYTES = 5000;
+    private static final Pattern META_CHARSET = Pattern.compile(
+            "<meta[^>]*?charset\\s*=\\s*[\"']?\\s*([a-z0-9_:.\\-]+)", Pattern.CASE_INSENSITIVE);
+
+    private HtmlExtractor() {
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class ExtractedPage {
+        /** Заголовок страницы или пустая строка. */
+        private final String title;
+        /** Текст страницы без разметки с нормализованными пробелами, включая заголовок. */
+        private final String text;
+        /** Абсолютные адреса ссылок a[href] в порядке появления. */
+        private final List<String> links;
+    }
+
+    /**
+     * Переводит тело ответа в строку: кодировка берётся из заголовка Content-Type,
+     * из метки порядка байтов или из meta charset в начале страницы, иначе UTF-8.
+     */
+    public static String decode(byte[] body, String charsetName) {
+        if (body == null || body.length == 0) {
+            return "";
+        }
+        if (body.length >= 3 && (body[0] & 0xFF) == 0xEF && (body[1] & 0xFF) == 0xBB && (body[2] & 0xFF) == 0xBF) {
+            return new String(body, 3, body.length - 3, StandardCharsets.UTF_8);
+        }
+        if (body.length >= 2 && (body[0] & 0xFF) == 0xFE && (body[1] & 0xFF) == 0xFF) {
+            return new String(body, 2, body.length - 2, StandardCharsets.UTF_16BE);
+        }
+        if (body.length >= 2 && (body[0] & 0xFF) == 0xFF && (body[1] & 0xFF) == 0xFE) {
+            return new String(body, 2, body.length - 2, StandardCharsets.UTF_16LE);
+        }
+        Charset charset = forName(charsetName);
+        if (charset == null) {
+            String head = new String(body, 0, Math.min(body.length, CHARSET_SNIFF_BYTES), StandardCharsets.ISO_8859_1);
+            Matcher matcher = META_CHARSET.matcher(head);
+            charset = matcher.find() ? forName(matcher.group(1)) : null;
+        }
+        return new String(body, charset != null ? charset : StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param baseUrl адрес страницы, относительно которого разрешаются ссылки (если на странице нет base href)
+     */
+    public static ExtractedPage extract(String html, String baseUrl) {
+        Extraction extraction = new Extraction(html, baseUrl);
+        extraction.run();
+        return new ExtractedPage(extraction.title != null ? extraction.title : "",
+                extraction.text.toString().trim(), extraction.links);
+    }
+
+    private static Charset forName(String name) {
+        if (name == null || name.isBlank()) {
+            return null;
+        }
+        try {
+            return Charset.forName(name.trim());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Разрешает ссылку относительно адреса страницы так же, как браузер.
+     *
+     * @return абсолютный адрес или пустая строка, если ссылку нельзя разобрать
+     */
+    private static String resolve(String base, String relative) {
+        try {
+            URL baseUrl = new URL(base);
+            // URL(URL, String) отбрасывает последний сегмент пути у ссылки из одного запроса
+            if (relative.startsWith("?")) {
+                relative = baseUrl.getPath() + relative;
+            }
+            return new URL(baseUrl, relative).toExternalForm();
+        } catch (MalformedURLException e) {
+            return "";
+        }
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == '\u00A0';
+    }
+
+    /**
+     * Состояние одного прохода по строке.
+     */
+    private static class Extraction {
+        private final String html;
+        private final int length;
+        private final StringBuilder text;
+        private final List<String> links = new ArrayList<>();
+        private String baseUrl;
+        private boolean baseSeen;
+        private String title;
+        /** Между последним словом и следующим текстом нужен пробел. */
+        private boolean pendingSpace;
+
+        Extraction(String html, String baseUrl) {
+            this.html = html;
+            this.length = html.length();
+            this.text = new StringBuilder(Math.min(length / 4, 1 << 16));
+            this.baseUrl = baseUrl;
+        }
+
+        void run() {
+            int i = 0;
+            while (i < length) {
+                int lt = html.indexOf('<', i);
+                if (lt < 0) {
+                    appendText(i, length);
+                    return;
+                }
+                appendText(i, lt);
+                i = readMarkup(lt);
+            }
+        }
+
+        /**
+         * Разбирает разметку, начинающуюся с «&lt;», и возвращает позицию после неё.
+         */
+        private int readMarkup(int lt) {
+            if (html.startsWith("<!--", lt)) {
+                int end = html.indexOf("-->", lt + 4);
+                return end < 0 ? length : end + 3;
+            }
+            if (lt + 1 < length && (html.charAt(lt + 1) == '!' || html.charAt(lt + 1) == '?')) {
+                int end = html.indexOf('>', lt + 2);
+                return end < 0 ? length : end + 1;
+            }
+            boolean closing = lt + 1 < length && html.charAt(lt + 1) == '/';
+            int nameStart = lt + (closing ? 2 : 1);
+            if (nameStart >= length || !Character.isLetter(html.charAt(nameStart))) {
+                // одиночный «<» – это текст
+                appendText(lt, lt + 1);
+                return lt + 1;
+            }
+            int nameEnd = nameStart;
+            while (nameEnd < length && isNameChar(html.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            String name = html.substring(nameStart, nameEnd).toLowerCase(Locale.ROOT);
+            boolean wantHref = !closing && (name.equals("a") || name.equals("base") && !baseSeen);
+            String[] href = wantHref ? new String[1] : null;
+            int tagEnd = readAttributes(nameEnd, href);
+            if (BLOCK_TAGS.contains(name)) {
+                pendingSpace = text.length() > 0;
+            }
+            if (closing) {
+                return tagEnd;
+            }
+            if (href != null && href[0] != null) {
+                String value = href[0].indexOf('&') >= 0 ? Parser.unescapeEntities(href[0], true) : href[0];
+                if (name.equals("base")) {
+                    baseSeen = true;
+                    String resolved = resolve(baseUrl, value.trim());
+                    if (!resolved.isEmpty()) {
+                        baseUrl = resolved;
+                    }
+                } else {
+                    String resolved = resolve(baseUrl, value.trim());
+                    if (!resolved.isEmpty()) {
+                        links.add(resolved);
+                    }
+                }
+            }
+            if (SKIPPED_TAGS.contains(name)) {
+                return skipContent(name, tagEnd);
+            }
+            if (RAW_TEXT_TAGS.contains(name)) {
+                int close = findClosingTag(name, tagEnd);
+                int start = text.length();
+                appendText(tagEnd, close);
+                if (name.equals("title") && title == null) {
+                    title = text.substring(start).trim();
+                }
+                pendingSpace = text.length() > 0;
+                return skipContent(name, tagEnd);
+            }
+            return tagEnd;
+        }
+
+        /**
+         * Читает атрибуты тега до «&gt;» с учётом кавычек.
+         *
+         * @param href если не null, в первый элемент записывается значение атрибута href
+         * @return позиция после «&gt;»
+         */
+        private int readAttributes(int from, String[] href) {
+            int i = from;
+            while (i < length) {
+                char c = html.charAt(i);
+                if (c == '>') {
+                    return i + 1;
+                }
+                if (isWhitespace(c) || c == '/') {
+                    i++;
+                    continue;
+                }
+                int nameStart = i;
+                while (i < length && !isWhitespace(html.charAt(i)) && html.charAt(i) != '='
+                        && html.charAt(i) != '>' && html.charAt(i) != '/') {
+                    i++;
+                }
+                String attribute = html.substring(nameStart, i);
+                while (i < length && isWhitespace(html.charAt(i))) {
+                    i++;
+                }
+                if (i >= length || html.charAt(i) != '=') {
+                    continue;
+                }
+                i++;
+                while (i < length && isWhitespace(html.charAt(i))) {
+                    i++;
+                }
+                int valueStart;
+                int valueEnd;
+                if (i < length && (html.charAt(i) == '"' || html.charAt(i) == '\'')) {
+                    char quote = html.charAt(i);
+                    valueStart = i + 1;
+                    valueEnd = html.indexOf(quote, valueStart);
+                    if (valueEnd < 0) {
+                        return length;
+                    }
+                    i = valueEnd + 1;
+                } else {
+                    valueStart = i;
+                    while (i < length && !isWhitespace(html.charAt(i)) && html.charAt(i) != '>') {
+                        i++;
+                    }
+                    valueEnd = i;
+                }
+                if (href != null && href[0] == null && attribute.equalsIgnoreCase("href")) {
+                    href[0] = html.substring(valueStart, valueEnd);
+                }
+            }
+            return length;
+        }
+
+        /**
+         * @return позиция после закрывающего тега name или конец строки
+         */
+        private int skipContent(String name, int from) {
+            int close = findClosingTag(name, from);
+            if (close >= length) {
+                return length;
+            }
+            int end = html.indexOf('>', close);
+            return end < 0 ? length : end + 1;
+        }
+
+        /**
+         * @return позиция «&lt;/name» без учёта регистра или конец строки
+         */
+        private int findClosingTag(String name, int from) {
+            int i = from;
+            while ((i = html.indexOf("</", i)) >= 0) {
+                int nameEnd = i + 2 + name.length();
+                if (html.regionMatches(true, i + 2, name, 0, name.length())
+                        && (nameEnd >= length || !isNameChar(html.charAt(nameEnd)))) {
+                    return i;
+                }
+                i += 2;
+            }
+            return length;
+        }
+
+        /**
+         * Добавляет текст между тегами: раскрывает сущности и схлопывает пробельные символы.
+         */
+        private void appendText(int from, int to) {
+            if (from >= to) {
+                return;
+            }
+            String segment = html.substring(from, to);
+            if (segment.indexOf('&') >= 0) {
+                segment = Parser.unescapeEntities(segment, false);
+            }
+            for (int i = 0; i < segment.length(); i++) {
+                char c = segment.charAt(i);
+                if (isWhitespace(c)) {
+                    pendingSpace = text.length() > 0;
+                    continue;
+                }
+                if (pendingSpace) {
+                    text.append(' ');
+                    pendingSpace = false;
+                }
+                text.append(c);
+            }
+        }
+
+        private static boolean isNameChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '-' || c == ':' || c == '_';
+        }
+    }
+}
@@ -2,25 +2,52 @@ package searchengine.util;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.lucene.morphology.LuceneMorphology;
+import org.apache.lucene.morphology.WrongCharaterException;
 import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Лемматизатор, общий для индексации и поиска.
+ * Словари морфологии загружаются один раз на приложение; {@link LuceneMorphology} только читает их,
+ * поэтому экземпляр можно использовать из любого числа потоков.
+ * Результаты разбора словоформ кешируются: по закону Ципфа большая часть слов текста повторяется.
+ */
 @Slf4j
 public class LemmaFinder {
 
-    private final LuceneMorphology luceneMorphology;
-    private static final String WORD_TYPE_REGEX = "\\W\\w&&[^а-яА-Я\\s]";
     private static final String[] particlesNames = new String[]{"МЕЖД", "ПРЕДЛ", "СОЮЗ"};
+    private static final int DEFAULT_CACHE_SIZE = 200_000;
+
+    private static volatile LemmaFinder instance;
+
+    private final LuceneMorphology luceneMorphology;
+    private final int cacheSize;
+    private volatile Map<String, WordInfo> recentWords = new ConcurrentHashMap<>();
+    private volatile Map<String, WordInfo> previousWords = new ConcurrentHashMap<>();
 
+    /**
+     * @return общий экземпляр; словари загружаются при первом вызове
+     */
     public static LemmaFinder getInstance() throws IOException {
-        LuceneMorphology morphology = new RussianLuceneMorphology();
-        return new LemmaFinder(morphology);
+        LemmaFinder finder = instance;
+        if (finder == null) {
+            synchronized (LemmaFinder.class) {
+                finder = instance;
+                if (finder == null) {
+                    finder = new LemmaFinder(new RussianLuceneMorphology(), DEFAULT_CACHE_SIZE);
+                    instance = finder;
+                }
+            }
+        }
+        return finder;
     }
 
-    private LemmaFinder(LuceneMorphology luceneMorphology) {
+    private LemmaFinder(LuceneMorphology luceneMorphology, int cacheSize) {
         this.luceneMorphology = luceneMorphology;
+        this.cacheSize = cacheSize;
     }
 
     private LemmaFinder() {
@@ -34,24 +61,33 @@ public class LemmaFinder {
      * @return Map, где ключ – лемма, а значение – количество её вхождений
      */
     public Map<String, Integer> collectLemmas(String text) {
-        String[] words = arrayContainsRussianWords(text);
         Map<String, Integer> lemmas = new HashMap<>();
-
-        for (String word : words) {
-            if (word.isBlank()) {
-                continue;
-            }
-            List<String> wordBaseForms = luceneMorphology.getMorphInfo(word);
-            if (anyWordBaseBelongToParticle(wordBaseForms)) {
-                continue;
+        WordTokenizer.forEachWord(text, (word, cyrillic) -> {
+            String normalWord = cyrillic ? getLemma(word) : null;
+            if (normalWord != null) {
+                lemmas.merge(normalWord, 1, Integer::sum);
             }
-            List<String> normalForms = luceneMorphology.getNormalForms(word);
-            if (normalForms.isEmpty()) {
-                continue;
+        });
+        return lemmas;
+    }
+
+    /**
+     * Находит леммы текста вместе с местами их вхождений – для индекса и построения сниппетов.
+     * Номера слов считаются по всем словам текста, включая служебные и нерусские.
+     *
+     * @param text текст страницы в том виде, в каком он хранится: позиции указывают в него
+     * @return Map, где ключ – лемма, а значение – её вхождения; их число – rank леммы
+     */
+    public Map<String, TokenPositions> collectLemmaPositions(String text) {
+        Map<String, TokenPositions> lemmas = new HashMap<>();
+        int[] token = new int[1];
+        WordTokenizer.forEachWord(text, (word, cyrillic, start) -> {
+            String normalWord = cyrillic ? getLemma(word) : null;
+            if (normalWord != null) {
+                lemmas.computeIfAbsent(normalWord, lemma -> new TokenPositions()).add(token[0], start, word.length());
             }
-            String normalWord = normalForms.get(0);
-            lemmas.put(normalWord, lemmas.getOrDefault(normalWord, 0) + 1);
-        }
+            token[0]++;
+        });
         return lemmas;
     }
 
@@ -66,51 +102,96 @@ public class LemmaFinder {
     }
 
     /**
+     * Использует ту же нормальную форму слова, что и индексация,
+     * поэтому леммы запроса совпадают с леммами в таблице lemma.
+     *
      * @param text текст, из которого собираем леммы
      * @return Set уникальных лемм, найденных в тексте
      */
     public Set<String> getLemmaSet(String text) {
-        String[] textArray = arrayContainsRussianWords(text);
         Set<String> lemmaSet = new HashSet<>();
-        for (String word : textArray) {
-            if (!word.isEmpty() && isCorrectWordForm(word)) {
-                List<String> wordBaseForms = luceneMorphology.getMorphInfo(word);
-                if (anyWordBaseBelongToParticle(wordBaseForms)) {
-                    continue;
-                }
-                lemmaSet.addAll(luceneMorphology.getNormalForms(word));
+        WordTokenizer.forEachWord(text, (word, cyrillic) -> {
+            String normalWord = cyrillic ? getLemma(word) : null;
+            if (normalWord != null) {
+                lemmaSet.add(normalWord);
             }
-        }
+        });
         return lemmaSet;
     }
 
+    /**
+     * @param word слово в нижнем регистре, «ё» заменена на «е»
+     * @return нормальная форма слова или null, если слово служебное или не разбирается
+     */
+    public String getLemma(String word) {
+        WordInfo info = analyze(word);
+        return info.particle ? null : info.normalForm;
+    }
+
+    private WordInfo analyze(String word) {
+        WordInfo info = recentWords.get(word);
+        if (info != null) {
+            return info;
+        }
+        info = previousWords.get(word);
+        if (info == null) {
+            info = parseWord(word);
+        }
+        recentWords.put(word, info);
+        if (recentWords.size() > cacheSize / 2) {
+            rotateCache();
+        }
+        return info;
+    }
+
+    /**
+     * Кеш из двух поколений: когда новое поколение заполнено, старое отбрасывается целиком.
+     * Часто встречающиеся слова успевают перейти в новое поколение, а размер кеша не превышает cacheSize.
+     */
+    private synchronized void rotateCache() {
+        if (recentWords.size() > cacheSize / 2) {
+            previousWords = recentWords;
+            recentWords = new ConcurrentHashMap<>();
+        }
+    }
+
+    private WordInfo parseWord(String word) {
+        try {
+            List<String> wordBaseForms = luceneMorphology.getMorphInfo(word);
+            if (anyWordBaseBelongToParticle(wordBaseForms)) {
+                return WordInfo.PARTICLE;
+            }
+            List<String> normalForms = luceneMorphology.getNormalForms(word);
+            return normalForms.isEmpty() ? WordInfo.UNKNOWN : new WordInfo(normalForms.get(0), false);
+        } catch (WrongCharaterException e) {
+            log.debug("Слово '{}' не разбирается морфологией: {}", word, e.getMessage());
+            return WordInfo.UNKNOWN;
+        }
+    }
+
     private boolean anyWordBaseBelongToParticle(List<String> wordBaseForms) {
         return wordBaseForms.stream().anyMatch(this::hasParticleProperty);
     }
 
     private boolean hasParticleProperty(String wordBase) {
         for (String property : particlesNames) {
-            if (wordBase.toUpperCase().contains(property)) {
+            if (wordBase.contains(property)) {
                 return true;
             }
         }
         return false;
     }
 
-    private String[] arrayContainsRussianWords(String text) {
-        return text.toLowerCase(Locale.ROOT)
-                .replaceAll("([^а-я\\s])", " ")
-                .trim()
-                .split("\\s+");
-    }
+    private static final class WordInfo {
+        private static final WordInfo PARTICLE = new WordInfo(null, true);
+        private static final WordInfo UNKNOWN = new WordInfo(null, false);
 
-    private boolean isCorrectWordForm(String word) {
-        List<String> wordInfo = luceneMorphology.getMorphInfo(word);
-        for (String morphInfo : wordInfo) {
-            if (morphInfo.matches(WORD_TYPE_REGEX)) {
-                return false;
-            }
+        private final String normalForm;
+        private final boolean particle;
+
+        private WordInfo(String normalForm, boolean particle) {
+            this.normalForm = normalForm;
+            this.particle = particle;
         }
-        return true;
     }
 }
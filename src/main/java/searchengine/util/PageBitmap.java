@@ -0,0 +1,783 @@
+package searchengine.util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Сжатое множество неотрицательных int (id страниц) по схеме Roaring.
+ * Число делится на старшие и младшие 16 бит; для каждого значения старших бит хранится контейнер
+ * младших: отсортированный массив (до 4096 значений), битовая карта на 65536 бит
+ * или список интервалов – для сплошных диапазонов id, как у страниц одного сайта.
+ * Пересечение, объединение и разность идут контейнер за контейнером: две битовые карты
+ * пересекаются пословно, массив проверяется по другому контейнеру, поэтому время операции
+ * зависит от числа контейнеров и размеров массивов, а не от числа элементов.
+ * <p>
+ * Операции над множествами возвращают новые множества и не меняют аргументы.
+ * Не потокобезопасен: синхронизацию обеспечивает владелец.
+ */
+public class PageBitmap {
+
+    /** Больше значений массив не хранит: битовая карта на 65536 бит занимает столько же (8 КБ). */
+    static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    public PageBitmap() {
+        keys = new char[4];
+        containers = new Container[4];
+    }
+
+    private PageBitmap(int capacity) {
+        keys = new char[Math.max(1, capacity)];
+        containers = new Container[keys.length];
+    }
+
+    public static PageBitmap of(int... values) {
+        PageBitmap bitmap = new PageBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    public void add(int value) {
+        char key = (char) (value >>> 16);
+        int position = findKey(key);
+        if (position >= 0) {
+            containers[position] = containers[position].add((char) value);
+        } else {
+            insert(-position - 1, key, new ArrayContainer().add((char) value));
+        }
+    }
+
+    public void remove(int value) {
+        int position = findKey((char) (value >>> 16));
+        if (position < 0) {
+            return;
+        }
+        Container container = containers[position].remove((char) value);
+        if (container.cardinality() == 0) {
+            delete(position);
+        } else {
+            containers[position] = container;
+        }
+    }
+
+    public boolean contains(int value) {
+        int position = findKey((char) (value >>> 16));
+        return position >= 0 && containers[position].contains((char) value);
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public PageBitmap and(PageBitmap other) {
+        PageBitmap result = new PageBitmap(Math.min(size, other.size));
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.append(keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return размер пересечения без построения самого пересечения
+     */
+    public int andCardinality(PageBitmap other) {
+        int cardinality = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                cardinality += containers[i].andCardinality(other.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return cardinality;
+    }
+
+    public boolean intersects(PageBitmap other) {
+        return andCardinality(other) > 0;
+    }
+
+    public PageBitmap or(PageBitmap other) {
+        PageBitmap result = new PageBitmap(size + other.size);
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || i < size && keys[i] < other.keys[j]) {
+                result.append(keys[i], containers[i].copy());
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.append(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public PageBitmap andNot(PageBitmap other) {
+        PageBitmap result = new PageBitmap(size);
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            Container container = j < other.size && other.keys[j] == keys[i]
+                    ? containers[i].andNot(other.containers[j])
+                    : containers[i].copy();
+            if (container.cardinality() > 0) {
+                result.append(keys[i], container);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Перебирает значения по возрастанию.
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    public int[] toArray() {
+        int[] values = new int[cardinality()];
+        int[] count = new int[1];
+        forEach(value -> values[count[0]++] = value);
+        return values;
+    }
+
+    /**
+     * Переводит в списки интервалов контейнеры, которые так занимают меньше места.
+     * Имеет смысл для множеств, которые дальше почти не меняются.
+     */
+    public void runOptimize() {
+        for (int i = 0; i < size; i++) {
+            containers[i] = containers[i].runOptimize();
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PageBitmap && Arrays.equals(toArray(), ((PageBitmap) o).toArray());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toArray());
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    private int findKey(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void append(char key, Container container) {
+        insert(size, key, container);
+    }
+
+    private void insert(int position, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, position, keys, position + 1, size - position);
+        System.arraycopy(containers, position, containers, position + 1, size - position);
+        keys[position] = key;
+        containers[position] = container;
+        size++;
+    }
+
+    private void delete(int position) {
+        System.arraycopy(keys, position + 1, keys, position, size - position - 1);
+        System.arraycopy(containers, position + 1, containers, position, size - position - 1);
+        size--;
+        containers[size] = null;
+    }
+
+    /**
+     * Младшие 16 бит значений с одинаковыми старшими битами. Методы, меняющие контейнер,
+     * возвращают контейнер, который нужно сохранить вместо него: тип может смениться.
+     */
+    private abstract static class Container {
+        abstract int cardinality();
+
+        abstract boolean contains(char value);
+
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract void forEach(int high, IntConsumer action);
+
+        abstract Container copy();
+
+        /** Копия в виде битовой карты. */
+        abstract BitmapContainer toBitmap();
+
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return ((ArrayContainer) other).filter(this, true);
+            }
+            if (other instanceof BitmapContainer) {
+                return other.and(this);
+            }
+            return toBitmap().andInPlace(other.toBitmap()).shrink();
+        }
+
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) {
+                return ((ArrayContainer) other).countIn(this);
+            }
+            if (other instanceof BitmapContainer) {
+                return other.andCardinality(this);
+            }
+            return toBitmap().andCardinality(other.toBitmap());
+        }
+
+        Container or(Container other) {
+            return toBitmap().orInPlace(other).shrink();
+        }
+
+        Container andNot(Container other) {
+            return toBitmap().andNotInPlace(other).shrink();
+        }
+
+        /**
+         * Интервалы выгоднее, если на каждый из них (4 байта) приходится больше двух значений.
+         */
+        Container runOptimize() {
+            RunContainer runs = RunContainer.from(this);
+            return runs.sizeInBytes() < sizeInBytes() ? runs : this;
+        }
+
+        abstract int sizeInBytes();
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        Container add(char value) {
+            int position = Arrays.binarySearch(values, 0, cardinality, value);
+            if (position >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_MAX) {
+                return toBitmap().add(value);
+            }
+            position = -position - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            System.arraycopy(values, position, values, position + 1, cardinality - position);
+            values[position] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int position = Arrays.binarySearch(values, 0, cardinality, value);
+            if (position >= 0) {
+                System.arraycopy(values, position + 1, values, position, cardinality - position - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < cardinality; i++) {
+                action.accept(high | values[i]);
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(1, cardinality)), cardinality);
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.set(values[i]);
+            }
+            return bitmap;
+        }
+
+        @Override
+        Container and(Container other) {
+            return filter(other, true);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            return countIn(other);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof ArrayContainer && cardinality + other.cardinality() <= ARRAY_MAX) {
+                return merge((ArrayContainer) other);
+            }
+            return super.or(other);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            return filter(other, false);
+        }
+
+        /**
+         * @param keep true – значения, которые есть в other; false – которых в other нет
+         */
+        ArrayContainer filter(Container other, boolean keep) {
+            char[] result = new char[Math.max(1, cardinality)];
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i]) == keep) {
+                    result[count++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        int countIn(Container other) {
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i])) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private ArrayContainer merge(ArrayContainer other) {
+            char[] result = new char[Math.max(1, cardinality + other.cardinality)];
+            int i = 0;
+            int j = 0;
+            int count = 0;
+            while (i < cardinality || j < other.cardinality) {
+                if (j == other.cardinality || i < cardinality && values[i] < other.values[j]) {
+                    result[count++] = values[i++];
+                } else if (i == cardinality || values[i] > other.values[j]) {
+                    result[count++] = other.values[j++];
+                } else {
+                    result[count++] = values[i++];
+                    j++;
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        int sizeInBytes() {
+            return cardinality * 2;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer() {
+            this(new long[BITMAP_WORDS], 0);
+        }
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        void set(char value) {
+            long before = words[value >>> 6];
+            long after = before | (1L << value);
+            if (before != after) {
+                words[value >>> 6] = after;
+                cardinality++;
+            }
+        }
+
+        void clear(char value) {
+            long before = words[value >>> 6];
+            long after = before & ~(1L << value);
+            if (before != after) {
+                words[value >>> 6] = after;
+                cardinality--;
+            }
+        }
+
+        /**
+         * @return число значений в интервале [start, end]
+         */
+        int cardinalityInRange(int start, int end) {
+            int first = start >>> 6;
+            int last = end >>> 6;
+            long firstMask = -1L << start;
+            long lastMask = -1L >>> (63 - (end & 63));
+            if (first == last) {
+                return Long.bitCount(words[first] & firstMask & lastMask);
+            }
+            int count = Long.bitCount(words[first] & firstMask);
+            for (int w = first + 1; w < last; w++) {
+                count += Long.bitCount(words[w]);
+            }
+            return count + Long.bitCount(words[last] & lastMask);
+        }
+
+        /**
+         * Переносит в target значения из интервала [start, end].
+         */
+        void copyRange(BitmapContainer target, int start, int end) {
+            int first = start >>> 6;
+            int last = end >>> 6;
+            for (int w = first; w <= last; w++) {
+                long mask = -1L;
+                if (w == first) {
+                    mask &= -1L << start;
+                }
+                if (w == last) {
+                    mask &= -1L >>> (63 - (end & 63));
+                }
+                long word = words[w] & mask;
+                target.cardinality += Long.bitCount(word & ~target.words[w]);
+                target.words[w] |= word;
+            }
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(char value) {
+            set(value);
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            clear(value);
+            return shrink();
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    action.accept(high | (w << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof BitmapContainer) {
+                long[] otherWords = ((BitmapContainer) other).words;
+                int count = 0;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    count += Long.bitCount(words[w] & otherWords[w]);
+                }
+                return count;
+            }
+            return other.andCardinality(this);
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof BitmapContainer) {
+                // Размер известен заранее: небольшой результат сразу пишется в массив без промежуточной карты
+                long[] otherWords = ((BitmapContainer) other).words;
+                int count = andCardinality(other);
+                if (count > ARRAY_MAX) {
+                    long[] result = new long[BITMAP_WORDS];
+                    for (int w = 0; w < BITMAP_WORDS; w++) {
+                        result[w] = words[w] & otherWords[w];
+                    }
+                    return new BitmapContainer(result, count);
+                }
+                char[] values = new char[Math.max(1, count)];
+                int position = 0;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    long word = words[w] & otherWords[w];
+                    while (word != 0) {
+                        values[position++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+                return new ArrayContainer(values, count);
+            }
+            return other.and(this);
+        }
+
+        BitmapContainer andInPlace(BitmapContainer other) {
+            int count = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                words[w] &= other.words[w];
+                count += Long.bitCount(words[w]);
+            }
+            cardinality = count;
+            return this;
+        }
+
+        BitmapContainer orInPlace(Container other) {
+            if (other instanceof BitmapContainer) {
+                long[] otherWords = ((BitmapContainer) other).words;
+                int count = 0;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    words[w] |= otherWords[w];
+                    count += Long.bitCount(words[w]);
+                }
+                cardinality = count;
+            } else {
+                other.forEach(0, value -> set((char) value));
+            }
+            return this;
+        }
+
+        BitmapContainer andNotInPlace(Container other) {
+            if (other instanceof BitmapContainer) {
+                long[] otherWords = ((BitmapContainer) other).words;
+                int count = 0;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    words[w] &= ~otherWords[w];
+                    count += Long.bitCount(words[w]);
+                }
+                cardinality = count;
+            } else {
+                other.forEach(0, value -> clear((char) value));
+            }
+            return this;
+        }
+
+        /**
+         * @return массив, если значений не больше {@link #ARRAY_MAX}, иначе эта же карта
+         */
+        Container shrink() {
+            if (cardinality > ARRAY_MAX) {
+                return this;
+            }
+            char[] values = new char[Math.max(1, cardinality)];
+            int count = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    values[count++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, cardinality);
+        }
+
+        @Override
+        int sizeInBytes() {
+            return BITMAP_WORDS * Long.BYTES;
+        }
+    }
+
+    /**
+     * Отсортированные непересекающиеся интервалы [start, start + length].
+     * Изменение превращает контейнер обратно в массив или битовую карту.
+     */
+    private static final class RunContainer extends Container {
+        private final char[] starts;
+        private final char[] lengths;
+        private final int runs;
+        private final int cardinality;
+
+        private RunContainer(char[] starts, char[] lengths, int runs) {
+            this.starts = starts;
+            this.lengths = lengths;
+            this.runs = runs;
+            int count = 0;
+            for (int i = 0; i < runs; i++) {
+                count += lengths[i] + 1;
+            }
+            this.cardinality = count;
+        }
+
+        static RunContainer from(Container container) {
+            int[] values = new int[container.cardinality()];
+            int[] count = new int[1];
+            container.forEach(0, value -> values[count[0]++] = value);
+            char[] starts = new char[Math.max(1, values.length)];
+            char[] lengths = new char[starts.length];
+            int runs = 0;
+            for (int i = 0; i < values.length; i++) {
+                if (runs > 0 && starts[runs - 1] + lengths[runs - 1] + 1 == values[i]) {
+                    lengths[runs - 1]++;
+                } else {
+                    starts[runs] = (char) values[i];
+                    lengths[runs] = 0;
+                    runs++;
+                }
+            }
+            return new RunContainer(Arrays.copyOf(starts, Math.max(1, runs)),
+                    Arrays.copyOf(lengths, Math.max(1, runs)), runs);
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            int position = Arrays.binarySearch(starts, 0, runs, value);
+            if (position >= 0) {
+                return true;
+            }
+            position = -position - 2;
+            return position >= 0 && value <= starts[position] + lengths[position];
+        }
+
+        @Override
+        Container add(char value) {
+            return contains(value) ? this : unpack().add(value);
+        }
+
+        @Override
+        Container remove(char value) {
+            return contains(value) ? unpack().remove(value) : this;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < runs; i++) {
+                int end = starts[i] + lengths[i];
+                for (int value = starts[i]; value <= end; value++) {
+                    action.accept(high | value);
+                }
+            }
+        }
+
+        @Override
+        Container copy() {
+            return this;
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            forEach(0, value -> bitmap.set((char) value));
+            return bitmap;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof BitmapContainer) {
+                BitmapContainer result = new BitmapContainer();
+                for (int i = 0; i < runs; i++) {
+                    ((BitmapContainer) other).copyRange(result, starts[i], starts[i] + lengths[i]);
+                }
+                return result.shrink();
+            }
+            return super.and(other);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof BitmapContainer) {
+                int count = 0;
+                for (int i = 0; i < runs; i++) {
+                    count += ((BitmapContainer) other).cardinalityInRange(starts[i], starts[i] + lengths[i]);
+                }
+                return count;
+            }
+            return super.andCardinality(other);
+        }
+
+        @Override
+        Container runOptimize() {
+            return this;
+        }
+
+        private Container unpack() {
+            return toBitmap().shrink();
+        }
+
+        @Override
+        int sizeInBytes() {
+            return runs * 4;
+        }
+    }
+}
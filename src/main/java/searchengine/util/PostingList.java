@@ -0,0 +1,183 @@
+package searchengine.util;
+
+import java.util.Arrays;
+
+/**
+ * Список страниц одной леммы: id страниц по возрастанию и rank леммы на каждой из них.
+ * Хранится в двух массивах примитивов без объектов на каждую запись.
+ * Не потокобезопасен: синхронизацию обеспечивает владелец.
+ */
+public class PostingList {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] pageIds;
+    private float[] ranks;
+    private int size;
+    private boolean sorted = true;
+
+    public PostingList() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public PostingList(int capacity) {
+        pageIds = new int[Math.max(1, capacity)];
+        ranks = new float[pageIds.length];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int pageId(int position) {
+        return pageIds[position];
+    }
+
+    public float rank(int position) {
+        return ranks[position];
+    }
+
+    /**
+     * Добавляет страницу или заменяет её rank, сохраняя порядок. Новые страницы обычно
+     * получают наибольший id, поэтому чаще всего запись просто дописывается в конец.
+     */
+    public void put(int pageId, float rank) {
+        ensureSorted();
+        if (size == 0 || pageIds[size - 1] < pageId) {
+            append(pageId, rank);
+            return;
+        }
+        int position = Arrays.binarySearch(pageIds, 0, size, pageId);
+        if (position >= 0) {
+            ranks[position] = rank;
+            return;
+        }
+        position = -position - 1;
+        grow();
+        System.arraycopy(pageIds, position, pageIds, position + 1, size - position);
+        System.arraycopy(ranks, position, ranks, position + 1, size - position);
+        pageIds[position] = pageId;
+        ranks[position] = rank;
+        size++;
+    }
+
+    /**
+     * Дописывает страницу в конец без проверки порядка – для начальной загрузки.
+     * Перед чтением список нужно упорядочить вызовом {@link #seal()}.
+     */
+    public void append(int pageId, float rank) {
+        grow();
+        if (size > 0 && pageIds[size - 1] >= pageId) {
+            sorted = false;
+        }
+        pageIds[size] = pageId;
+        ranks[size] = rank;
+        size++;
+    }
+
+    /**
+     * @return true, если страница была в списке
+     */
+    public boolean remove(int pageId) {
+        ensureSorted();
+        int position = Arrays.binarySearch(pageIds, 0, size, pageId);
+        if (position < 0) {
+            return false;
+        }
+        System.arraycopy(pageIds, position + 1, pageIds, position, size - position - 1);
+        System.arraycopy(ranks, position + 1, ranks, position, size - position - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * Удаляет все страницы из множества – например, страницы удаляемого сайта.
+     */
+    public void removeAll(PageBitmap pages) {
+        ensureSorted();
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!pages.contains(pageIds[i])) {
+                pageIds[kept] = pageIds[i];
+                ranks[kept] = ranks[i];
+                kept++;
+            }
+        }
+        size = kept;
+    }
+
+    /**
+     * Ищет первую позицию не раньше {@code from}, где id страницы не меньше заданного.
+     * Поиск идёт скачками от {@code from}: при пересечении с коротким списком
+     * длинный список не просматривается целиком.
+     *
+     * @return позиция или {@link #size()}, если таких страниц нет
+     */
+    public int seek(int pageId, int from) {
+        int low = from;
+        int step = 1;
+        int high = from;
+        while (high < size && pageIds[high] < pageId) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        high = Math.min(high, size);
+        int position = Arrays.binarySearch(pageIds, low, high, pageId);
+        return position >= 0 ? position : -position - 1;
+    }
+
+    /**
+     * Упорядочивает список после {@link #append} и освобождает лишнюю ёмкость.
+     * Из повторяющихся страниц остаётся последняя добавленная.
+     */
+    public void seal() {
+        ensureSorted();
+        if (pageIds.length > size) {
+            pageIds = Arrays.copyOf(pageIds, Math.max(1, size));
+            ranks = Arrays.copyOf(ranks, pageIds.length);
+        }
+    }
+
+    private void ensureSorted() {
+        if (sorted) {
+            return;
+        }
+        // id страницы в старших 32 битах, порядковый номер – в младших: сортировка устойчива
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = ((long) pageIds[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] sortedIds = new int[pageIds.length];
+        float[] sortedRanks = new float[ranks.length];
+        int count = 0;
+        for (long key : keys) {
+            int pageId = (int) (key >>> 32);
+            float rank = ranks[(int) key];
+            if (count > 0 && sortedIds[count - 1] == pageId) {
+                sortedRanks[count - 1] = rank;
+            } else {
+                sortedIds[count] = pageId;
+                sortedRanks[count] = rank;
+                count++;
+            }
+        }
+        pageIds = sortedIds;
+        ranks = sortedRanks;
+        size = count;
+        sorted = true;
+    }
+
+    private void grow() {
+        if (size == pageIds.length) {
+            int capacity = pageIds.length + (pageIds.length >> 1) + 1;
+            pageIds = Arrays.copyOf(pageIds, capacity);
+            ranks = Arrays.copyOf(ranks, capacity);
+        }
+    }
+}
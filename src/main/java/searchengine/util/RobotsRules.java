@@ -0,0 +1,205 @@
+package searchengine.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Правила robots.txt для одного робота: разрешённые и запрещённые пути, Crawl-delay и адреса карт сайта.
+ * Из групп файла выбирается группа с самым длинным User-agent, который входит в имя нашего робота,
+ * иначе группа «*». Путь проверяется по самому длинному совпавшему правилу; при равной длине
+ * побеждает Allow. В шаблонах поддерживаются «*» и «$» в конце; шаблон сопоставляется
+ * жадно по частям между «*», без перебора с возвратами, поэтому время проверки линейно по длине пути.
+ * Если robots.txt временно недоступен, действуют правила {@link #unavailable()}, запрещающие весь сайт.
+ */
+public class RobotsRules {
+
+    private static final RobotsRules ALLOW_ALL =
+            new RobotsRules(Collections.emptyList(), 0, Collections.emptyList(), false);
+    private static final RobotsRules UNAVAILABLE =
+            new RobotsRules(List.of(new Rule("/", false)), 0, Collections.emptyList(), true);
+
+    private final List<Rule> rules;
+    private final double crawlDelaySeconds;
+    private final List<String> sitemaps;
+    private final boolean unavailable;
+
+    private RobotsRules(List<Rule> rules, double crawlDelaySeconds, List<String> sitemaps, boolean unavailable) {
+        this.rules = rules;
+        this.crawlDelaySeconds = crawlDelaySeconds;
+        this.sitemaps = sitemaps;
+        this.unavailable = unavailable;
+    }
+
+    /**
+     * Правила для сайта без robots.txt (сервер ответил 4xx): разрешено всё.
+     */
+    public static RobotsRules allowAll() {
+        return ALLOW_ALL;
+    }
+
+    /**
+     * Правила для сайта, robots.txt которого временно недоступен (5xx или ошибка сети):
+     * запрещено всё, пока файл не удастся загрузить при следующем обходе.
+     */
+    public static RobotsRules unavailable() {
+        return UNAVAILABLE;
+    }
+
+    /**
+     * @param userAgent имя робота из заголовка User-Agent
+     */
+    public static RobotsRules parse(String text, String userAgent) {
+        String agent = userAgent.toLowerCase(Locale.ROOT);
+        List<String> sitemaps = new ArrayList<>();
+        Group best = null;
+        int bestLength = -1;
+        Group current = null;
+        boolean readingAgents = false;
+
+        for (String rawLine : text.split("\r\n|\r|\n")) {
+            int comment = rawLine.indexOf('#');
+            String line = (comment >= 0 ? rawLine.substring(0, comment) : rawLine).trim();
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String field = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+
+            if (field.equals("sitemap")) {
+                if (!value.isEmpty()) {
+                    sitemaps.add(value);
+                }
+                continue;
+            }
+            if (field.equals("user-agent")) {
+                if (!readingAgents) {
+                    current = new Group();
+                    readingAgents = true;
+                }
+                String token = value.toLowerCase(Locale.ROOT);
+                int length = token.equals("*") ? 0 : (agent.contains(token) && !token.isEmpty() ? token.length() : -1);
+                if (length > bestLength) {
+                    best = current;
+                    bestLength = length;
+                }
+                continue;
+            }
+            readingAgents = false;
+            if (current == null) {
+                continue;
+            }
+            switch (field) {
+                case "allow":
+                    if (!value.isEmpty()) {
+                        current.rules.add(new Rule(value, true));
+                    }
+                    break;
+                case "disallow":
+                    if (!value.isEmpty()) {
+                        current.rules.add(new Rule(value, false));
+                    }
+                    break;
+                case "crawl-delay":
+                    try {
+                        current.crawlDelaySeconds = Math.max(0, Double.parseDouble(value));
+                    } catch (NumberFormatException e) {
+                        // некорректное значение игнорируется
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (best == null) {
+            return new RobotsRules(Collections.emptyList(), 0, sitemaps, false);
+        }
+        return new RobotsRules(best.rules, best.crawlDelaySeconds, sitemaps, false);
+    }
+
+    /**
+     * @param path путь с запросом, начинающийся с «/»
+     */
+    public boolean isAllowed(String path) {
+        Rule matched = null;
+        for (Rule rule : rules) {
+            if (!rule.matches(path)) {
+                continue;
+            }
+            if (matched == null || rule.pattern.length() > matched.pattern.length()
+                    || (rule.pattern.length() == matched.pattern.length() && rule.allow)) {
+                matched = rule;
+            }
+        }
+        return matched == null || matched.allow;
+    }
+
+    /**
+     * @return пауза между запросами в секундах или 0, если robots.txt её не задаёт
+     */
+    public double getCrawlDelaySeconds() {
+        return crawlDelaySeconds;
+    }
+
+    public List<String> getSitemaps() {
+        return sitemaps;
+    }
+
+    /**
+     * @return true, если robots.txt не загрузился из-за ошибки сервера или сети и действует запрет на весь сайт
+     */
+    public boolean isUnavailable() {
+        return unavailable;
+    }
+
+    private static class Group {
+        private final List<Rule> rules = new ArrayList<>();
+        private double crawlDelaySeconds;
+    }
+
+    private static class Rule {
+        private final String pattern;
+        private final boolean allow;
+        /** Части шаблона между «*»; первая совпадает с началом пути. */
+        private final String[] segments;
+        /** Шаблон заканчивается «$»: последняя часть должна совпасть с концом пути. */
+        private final boolean anchored;
+
+        Rule(String pattern, boolean allow) {
+            this.pattern = pattern;
+            this.allow = allow;
+            this.anchored = pattern.endsWith("$");
+            String body = anchored ? pattern.substring(0, pattern.length() - 1) : pattern;
+            this.segments = body.split("\\*", -1);
+        }
+
+        /**
+         * Первая часть проверяется как префикс, средние ищутся слева направо с самого раннего вхождения,
+         * последняя при «$» – как суффикс. Самое раннее вхождение каждой части оставляет
+         * больше всего места остальным, поэтому возвращаться к другим вариантам не нужно.
+         */
+        boolean matches(String path) {
+            if (!path.startsWith(segments[0])) {
+                return false;
+            }
+            int position = segments[0].length();
+            if (segments.length == 1) {
+                return !anchored || position == path.length();
+            }
+            for (int i = 1; i < segments.length - 1; i++) {
+                int found = path.indexOf(segments[i], position);
+                if (found < 0) {
+                    return false;
+                }
+                position = found + segments[i].length();
+            }
+            String last = segments[segments.length - 1];
+            if (anchored) {
+                return path.length() - last.length() >= position && path.endsWith(last);
+            }
+            return path.indexOf(last, position) >= 0;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package searchengine.util;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Разбор sitemap.xml: список страниц (urlset) или список вложенных карт (sitemapindex).
+ */
+public final class SitemapParser {
+
+    private SitemapParser() {
+    }
+
+    public static Sitemap parse(String xml) {
+        Document doc = Jsoup.parse(xml, "", Parser.xmlParser());
+        Sitemap sitemap = new Sitemap();
+        for (Element entry : doc.select("sitemapindex > sitemap")) {
+            String loc = childText(entry, "loc");
+            if (!loc.isEmpty()) {
+                sitemap.sitemaps.add(loc);
+            }
+        }
+        for (Element entry : doc.select("urlset > url")) {
+            String loc = childText(entry, "loc");
+            if (!loc.isEmpty()) {
+                sitemap.urls.add(new SitemapUrl(loc, parseLastmod(childText(entry, "lastmod"))));
+            }
+        }
+        return sitemap;
+    }
+
+    private static String childText(Element parent, String tag) {
+        for (Element child : parent.children()) {
+            if (child.normalName().equals(tag)) {
+                return child.text().trim();
+            }
+        }
+        return "";
+    }
+
+    /**
+     * @param value дата в формате W3C Datetime: «2024-05-01» или «2024-05-01T10:00:00+03:00»
+     * @return момент времени или null, если дата не указана или не разбирается
+     */
+    static Instant parseLastmod(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+        try {
+            if (value.length() == 10) {
+                return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+            }
+            return OffsetDateTime.parse(value).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    public static class Sitemap {
+        private final List<String> sitemaps = new ArrayList<>();
+        private final List<SitemapUrl> urls = new ArrayList<>();
+
+        /** Адреса вложенных карт, если это индекс карт сайта. */
+        public List<String> getSitemaps() {
+            return sitemaps;
+        }
+
+        public List<SitemapUrl> getUrls() {
+            return urls;
+        }
+    }
+
+    public static class SitemapUrl {
+        private final String url;
+        private final Instant lastmod;
+
+        public SitemapUrl(String url, Instant lastmod) {
+            this.url = url;
+            this.lastmod = lastmod;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        /** Дата последнего изменения страницы по карте сайта или null. */
+        public Instant getLastmod() {
+            return lastmod;
+        }
+    }
+}
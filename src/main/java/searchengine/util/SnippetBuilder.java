@@ -0,0 +1,209 @@
+package searchengine.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Сниппет по сохранённому тексту страницы и вхождениям лемм запроса из индекса ({@link TokenPositions}).
+ * Выбирается участок, где в пределах {@link #WINDOW_WORDS} слов встречается больше всего разных лемм
+ * запроса, при равенстве – больше вхождений. Найденные слова выделяются тегом {@code <b>} точно
+ * по сохранённым позициям, поэтому подсвечиваются любые словоформы; текст заново не разбирается.
+ */
+public final class SnippetBuilder {
+
+    static final int SNIPPET_LENGTH = 200;
+    private static final int WINDOW_WORDS = 30;
+    private static final String ELLIPSIS = "...";
+
+    private SnippetBuilder() {
+    }
+
+    /**
+     * @param lemmas вхождения каждой леммы запроса на странице; леммы, которых на странице нет, не передаются
+     * @return фрагмент текста около {@link #SNIPPET_LENGTH} символов с выделенными словами;
+     * без вхождений – начало текста
+     */
+    public static String build(String text, Collection<TokenPositions> lemmas) {
+        Hits hits = new Hits(text, lemmas);
+        if (hits.count == 0) {
+            return render(text, 0, boundaryBefore(text, Math.min(text.length(), SNIPPET_LENGTH), 0), hits);
+        }
+
+        int[] inWindow = new int[lemmas.size()];
+        int distinct = 0;
+        int left = 0;
+        int bestLeft = 0;
+        int bestRight = 0;
+        int bestDistinct = 0;
+        int bestHits = 0;
+        for (int right = 0; right < hits.count; right++) {
+            if (inWindow[hits.lemmas[right]]++ == 0) {
+                distinct++;
+            }
+            while (hits.tokens[right] - hits.tokens[left] >= WINDOW_WORDS) {
+                if (--inWindow[hits.lemmas[left]] == 0) {
+                    distinct--;
+                }
+                left++;
+            }
+            int count = right - left + 1;
+            if (distinct > bestDistinct || distinct == bestDistinct && count > bestHits) {
+                bestDistinct = distinct;
+                bestHits = count;
+                bestLeft = left;
+                bestRight = right;
+            }
+        }
+
+        int firstStart = hits.starts[bestLeft];
+        int lastEnd = hits.ends[bestRight];
+        int from = firstStart;
+        int to = lastEnd;
+        if (to - from < SNIPPET_LENGTH) {
+            // Свободное место делится между текстом до первого и после последнего найденного слова
+            from = Math.max(0, from - (SNIPPET_LENGTH - (to - from)) / 2);
+            to = Math.max(lastEnd, Math.min(text.length(), from + SNIPPET_LENGTH));
+        }
+        return render(text, boundaryAfter(text, from, firstStart), boundaryBefore(text, to, lastEnd), hits);
+    }
+
+    /**
+     * Выводит текст [from, to) с выделенными словами, схлопывая пробельные символы.
+     */
+    private static String render(String text, int from, int to, Hits hits) {
+        StringBuilder snippet = new StringBuilder(to - from + 32);
+        if (from > 0) {
+            snippet.append(ELLIPSIS);
+        }
+        int hit = 0;
+        while (hit < hits.count && hits.starts[hit] < from) {
+            hit++;
+        }
+        boolean space = true;
+        for (int i = from; i < to; i++) {
+            if (hit < hits.count && hits.starts[hit] == i && hits.ends[hit] <= to) {
+                snippet.append("<b>");
+                appendEscaped(snippet, text, i, hits.ends[hit]);
+                snippet.append("</b>");
+                i = hits.ends[hit] - 1;
+                hit++;
+                space = false;
+                continue;
+            }
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (!space) {
+                    snippet.append(' ');
+                    space = true;
+                }
+            } else {
+                appendEscaped(snippet, text, i, i + 1);
+                space = false;
+            }
+        }
+        int length = snippet.length();
+        if (length > 0 && snippet.charAt(length - 1) == ' ') {
+            snippet.setLength(length - 1);
+        }
+        if (to < text.length()) {
+            snippet.append(ELLIPSIS);
+        }
+        return snippet.toString();
+    }
+
+    private static void appendEscaped(StringBuilder snippet, String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    snippet.append("&lt;");
+                    break;
+                case '>':
+                    snippet.append("&gt;");
+                    break;
+                case '&':
+                    snippet.append("&amp;");
+                    break;
+                default:
+                    snippet.append(c);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Сдвигает начало вперёд до начала слова, но не дальше {@code limit}.
+     */
+    private static int boundaryAfter(String text, int from, int limit) {
+        if (from == 0 || !Character.isLetterOrDigit(text.charAt(from - 1))) {
+            return from;
+        }
+        while (from < limit && Character.isLetterOrDigit(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Сдвигает конец назад до конца слова, но не раньше {@code limit}.
+     */
+    private static int boundaryBefore(String text, int to, int limit) {
+        if (to == text.length() || !Character.isLetterOrDigit(text.charAt(to))) {
+            return to;
+        }
+        while (to > limit && Character.isLetterOrDigit(text.charAt(to - 1))) {
+            to--;
+        }
+        return to;
+    }
+
+    /**
+     * Вхождения всех лемм запроса по порядку слов в тексте. Позиции, не попадающие в текст
+     * (например, текст изменился после записи индекса), отбрасываются.
+     */
+    private static final class Hits {
+        private final int[] tokens;
+        private final int[] starts;
+        private final int[] ends;
+        private final int[] lemmas;
+        private int count;
+
+        private Hits(String text, Collection<TokenPositions> positions) {
+            int total = 0;
+            for (TokenPositions lemma : positions) {
+                total += lemma.size();
+            }
+            // Номер слова в старших 32 битах, номер вхождения – в младших
+            long[] order = new long[total];
+            int[] rawStarts = new int[total];
+            int[] rawEnds = new int[total];
+            int[] rawLemmas = new int[total];
+            int lemmaIndex = 0;
+            for (TokenPositions lemma : positions) {
+                for (int i = 0; i < lemma.size(); i++) {
+                    int end = lemma.start(i) + lemma.length(i);
+                    if (end <= text.length()) {
+                        order[count] = ((long) lemma.token(i) << 32) | count;
+                        rawStarts[count] = lemma.start(i);
+                        rawEnds[count] = end;
+                        rawLemmas[count] = lemmaIndex;
+                        count++;
+                    }
+                }
+                lemmaIndex++;
+            }
+            Arrays.sort(order, 0, count);
+            tokens = new int[count];
+            starts = new int[count];
+            ends = new int[count];
+            lemmas = new int[count];
+            for (int i = 0; i < count; i++) {
+                int hit = (int) order[i];
+                tokens[i] = (int) (order[i] >>> 32);
+                starts[i] = rawStarts[hit];
+                ends[i] = rawEnds[hit];
+                lemmas[i] = rawLemmas[hit];
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package searchengine.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Вхождения одной леммы в текст страницы: порядковый номер слова в тексте, позиция его первого
+ * символа и длина. Вхождения добавляются по порядку текста.
+ * <p>
+ * В колонке index.positions хранятся в виде {@link #toBytes()}: для каждого вхождения три числа
+ * переменной длины (приращения номера слова и позиции и длина слова), обычно 3–4 байта.
+ */
+public class TokenPositions {
+
+    private int[] tokens;
+    private int[] starts;
+    private int[] lengths;
+    private int size;
+
+    public TokenPositions() {
+        tokens = new int[2];
+        starts = new int[2];
+        lengths = new int[2];
+    }
+
+    public void add(int token, int start, int length) {
+        if (size == tokens.length) {
+            tokens = Arrays.copyOf(tokens, size * 2);
+            starts = Arrays.copyOf(starts, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+        }
+        tokens[size] = token;
+        starts[size] = start;
+        lengths[size] = length;
+        size++;
+    }
+
+    /**
+     * @return число вхождений – rank леммы на странице
+     */
+    public int size() {
+        return size;
+    }
+
+    /** Порядковый номер слова в тексте. */
+    public int token(int i) {
+        return tokens[i];
+    }
+
+    /** Позиция первого символа слова в тексте. */
+    public int start(int i) {
+        return starts[i];
+    }
+
+    public int length(int i) {
+        return lengths[i];
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size * 4);
+        int token = 0;
+        int start = 0;
+        for (int i = 0; i < size; i++) {
+            writeVarInt(out, tokens[i] - token);
+            writeVarInt(out, starts[i] - start);
+            writeVarInt(out, lengths[i]);
+            token = tokens[i];
+            start = starts[i];
+        }
+        return out.toByteArray();
+    }
+
+    public static TokenPositions fromBytes(byte[] bytes) {
+        TokenPositions positions = new TokenPositions();
+        int[] offset = new int[1];
+        int token = 0;
+        int start = 0;
+        while (offset[0] < bytes.length) {
+            token += readVarInt(bytes, offset);
+            start += readVarInt(bytes, offset);
+            positions.add(token, start, readVarInt(bytes, offset));
+        }
+        return positions;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(byte[] bytes, int[] offset) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[offset[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
@@ -0,0 +1,186 @@
+package searchengine.util;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Приводит адрес страницы к каноническому виду, чтобы варианты одного адреса
+ * не становились отдельными загрузками и отдельными строками page:
+ * схема и хост в нижнем регистре, без порта по умолчанию, фрагмента, «;jsessionid»,
+ * сегментов «.» и «..» и повторных «/», с единым видом %-кодирования,
+ * отсортированными параметрами запроса без служебных (utm_* и т. п.)
+ * и, по настройке, без «/» в конце пути.
+ */
+public class UrlNormalizer {
+
+    private static final Pattern SESSION_ID = Pattern.compile("(?i);jsessionid=[^/]*");
+    private static final String UNRESERVED = "-._~";
+
+    private final Set<String> allowedParams;
+    private final Set<String> deniedParams = new HashSet<>();
+    private final List<String> deniedPrefixes = new ArrayList<>();
+    private final boolean stripTrailingSlash;
+
+    /**
+     * @param allowedParams параметры запроса, которые сохраняются; пустой список – все, кроме запрещённых
+     * @param deniedParams  параметры, которые удаляются; «*» в конце задаёт префикс
+     */
+    public UrlNormalizer(Collection<String> allowedParams, Collection<String> deniedParams, boolean stripTrailingSlash) {
+        this.allowedParams = new HashSet<>();
+        for (String param : allowedParams) {
+            this.allowedParams.add(param.toLowerCase(Locale.ROOT));
+        }
+        for (String param : deniedParams) {
+            String name = param.toLowerCase(Locale.ROOT);
+            if (name.endsWith("*")) {
+                deniedPrefixes.add(name.substring(0, name.length() - 1));
+            } else {
+                this.deniedParams.add(name);
+            }
+        }
+        this.stripTrailingSlash = stripTrailingSlash;
+    }
+
+    /**
+     * @return канонический адрес или null, если это не http(s)-адрес или он не разбирается
+     */
+    public String normalize(String url) {
+        URI uri;
+        try {
+            uri = new URI(url.trim().replace(" ", "%20"));
+        } catch (URISyntaxException e) {
+            return null;
+        }
+        String scheme = uri.getScheme() == null ? null : uri.getScheme().toLowerCase(Locale.ROOT);
+        if (!"http".equals(scheme) && !"https".equals(scheme) || uri.getHost() == null) {
+            return null;
+        }
+        StringBuilder result = new StringBuilder(url.length());
+        result.append(scheme).append("://").append(uri.getHost().toLowerCase(Locale.ROOT));
+        int port = uri.getPort();
+        if (port != -1 && !(port == 80 && scheme.equals("http")) && !(port == 443 && scheme.equals("https"))) {
+            result.append(':').append(port);
+        }
+        result.append(normalizePath(uri.getRawPath()));
+        String query = normalizeQuery(uri.getRawQuery());
+        if (!query.isEmpty()) {
+            result.append('?').append(query);
+        }
+        return result.toString();
+    }
+
+    private String normalizePath(String rawPath) {
+        if (rawPath == null || rawPath.isEmpty()) {
+            return "/";
+        }
+        String path = SESSION_ID.matcher(rawPath).replaceAll("");
+        path = normalizeEscapes(path);
+        StringBuilder collapsed = new StringBuilder(path.length());
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '/' && collapsed.length() > 0 && collapsed.charAt(collapsed.length() - 1) == '/') {
+                continue;
+            }
+            collapsed.append(c);
+        }
+        path = removeDotSegments(collapsed.toString());
+        if (stripTrailingSlash && path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    private static String removeDotSegments(String path) {
+        List<String> segments = new ArrayList<>();
+        String[] parts = path.split("/", -1);
+        for (int i = 1; i < parts.length; i++) {
+            String part = parts[i];
+            boolean last = i == parts.length - 1;
+            if (part.equals(".")) {
+                if (last) {
+                    segments.add("");
+                }
+            } else if (part.equals("..")) {
+                if (!segments.isEmpty()) {
+                    segments.remove(segments.size() - 1);
+                }
+                if (last) {
+                    segments.add("");
+                }
+            } else {
+                segments.add(part);
+            }
+        }
+        return "/" + String.join("/", segments);
+    }
+
+    private String normalizeQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        List<String> kept = new ArrayList<>();
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            String name = (eq >= 0 ? pair.substring(0, eq) : pair).toLowerCase(Locale.ROOT);
+            if (keepParam(name)) {
+                kept.add(normalizeEscapes(pair));
+            }
+        }
+        kept.sort(null);
+        return String.join("&", kept);
+    }
+
+    private boolean keepParam(String name) {
+        if (!allowedParams.isEmpty()) {
+            return allowedParams.contains(name);
+        }
+        if (deniedParams.contains(name)) {
+            return false;
+        }
+        for (String prefix : deniedPrefixes) {
+            if (name.startsWith(prefix)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Раскодирует %-последовательности незарезервированных символов и переводит остальные в верхний регистр.
+     */
+    private static String normalizeEscapes(String value) {
+        if (value.indexOf('%') < 0) {
+            return value;
+        }
+        StringBuilder out = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%' && i + 2 < value.length() && isHex(value.charAt(i + 1)) && isHex(value.charAt(i + 2))) {
+                char decoded = (char) Integer.parseInt(value.substring(i + 1, i + 3), 16);
+                if (Character.isLetterOrDigit(decoded) && decoded < 0x80 || UNRESERVED.indexOf(decoded) >= 0) {
+                    out.append(decoded);
+                } else {
+                    out.append('%').append(value.substring(i + 1, i + 3).toUpperCase(Locale.ROOT));
+                }
+                i += 2;
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    private static boolean isHex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+}
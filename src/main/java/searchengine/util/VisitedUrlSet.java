@@ -0,0 +1,35 @@
+package searchengine.util;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Множество уже обнаруженных путей одного сайта.
+ * Путь «захватывается» атомарно: только одна задача получает право его скачать,
+ * поэтому проверка дублей не требует обращений к базе данных.
+ */
+public class VisitedUrlSet {
+
+    private final Set<String> claimed = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Заполняет множество путями, которые уже сохранены в базе.
+     */
+    public void seed(Collection<String> paths) {
+        for (String path : paths) {
+            claim(path);
+        }
+    }
+
+    /**
+     * @return true, если путь встретился впервые и вызывающая задача должна его обработать
+     */
+    public boolean claim(String path) {
+        return claimed.add(path);
+    }
+
+    public int size() {
+        return claimed.size();
+    }
+}
@@ -0,0 +1,81 @@
+package searchengine.util;
+
+/**
+ * Однопроходный разбор текста на слова без регулярных выражений.
+ * Слово – непрерывная последовательность букв; символы сразу приводятся к нижнему регистру,
+ * «ё» заменяется на «е». Строка создаётся только для готового слова, текст целиком не копируется.
+ * Используется и при индексации страниц, и при разборе поискового запроса.
+ */
+public final class WordTokenizer {
+
+    private static final int INITIAL_BUFFER_SIZE = 32;
+
+    private WordTokenizer() {
+    }
+
+    @FunctionalInterface
+    public interface WordConsumer {
+        /**
+         * @param word     слово в нижнем регистре
+         * @param cyrillic true, если слово состоит только из русских букв
+         */
+        void accept(String word, boolean cyrillic);
+    }
+
+    @FunctionalInterface
+    public interface PositionedWordConsumer {
+        /**
+         * @param word     слово в нижнем регистре; его длина совпадает с длиной в исходном тексте
+         * @param cyrillic true, если слово состоит только из русских букв
+         * @param start    позиция первого символа слова в тексте
+         */
+        void accept(String word, boolean cyrillic, int start);
+    }
+
+    public static void forEachWord(CharSequence text, WordConsumer consumer) {
+        forEachWord(text, (word, cyrillic, start) -> consumer.accept(word, cyrillic));
+    }
+
+    public static void forEachWord(CharSequence text, PositionedWordConsumer consumer) {
+        char[] buffer = new char[INITIAL_BUFFER_SIZE];
+        int length = 0;
+        boolean cyrillic = true;
+        int textLength = text.length();
+        for (int i = 0; i <= textLength; i++) {
+            char c = i < textLength ? text.charAt(i) : ' ';
+            char lower = toLowerCyrillic(c);
+            if (lower != 0 || Character.isLetter(c)) {
+                if (lower == 0) {
+                    lower = Character.toLowerCase(c);
+                    cyrillic = false;
+                }
+                if (length == buffer.length) {
+                    char[] grown = new char[buffer.length * 2];
+                    System.arraycopy(buffer, 0, grown, 0, length);
+                    buffer = grown;
+                }
+                buffer[length++] = lower;
+            } else if (length > 0) {
+                consumer.accept(new String(buffer, 0, length), cyrillic, i - length);
+                length = 0;
+                cyrillic = true;
+            }
+        }
+    }
+
+    /**
+     * @return русская буква в нижнем регистре или 0, если символ не русская буква
+     */
+    private static char toLowerCyrillic(char c) {
+        if (c >= 'а' && c <= 'я') {
+            return c;
+        }
+        if (c >= 'А' && c <= 'Я') {
+            return (char) (c + ('а' - 'А'));
+        }
+        if (c == 'ё' || c == 'Ё') {
+            return 'е';
+        }
+        return 0;
+    }
+}
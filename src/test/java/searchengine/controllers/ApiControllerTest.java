@@ -8,10 +8,12 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import searchengine.dto.indexing.IndexPageResponse;
 import searchengine.dto.search.SearchData;
 import searchengine.dto.search.SearchResponse;
 import searchengine.dto.statistics.*;
 import searchengine.services.IndexingService;
+import searchengine.services.PageIndexQueue;
 import searchengine.services.SearchService;
 import searchengine.services.StatisticsService;
 
@@ -56,6 +58,24 @@ public class ApiControllerTest {
                 .andExpect(jsonPath("$.error").value("Индексация уже запущена"));
     }
 
+    @Test
+    void testStartIncrementalIndexingSuccess() throws Exception {
+        when(indexingService.startIncrementalIndexing()).thenReturn(new GenericResponse(true));
+        mockMvc.perform(get("/api/startIncrementalIndexing"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result").value(true))
+                .andExpect(jsonPath("$.error").doesNotExist());
+    }
+
+    @Test
+    void testResumeIndexingWithoutFrontier() throws Exception {
+        when(indexingService.resumeIndexing()).thenReturn(new GenericResponse(false, "Нет прерванной индексации"));
+        mockMvc.perform(get("/api/resumeIndexing"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.result").value(false))
+                .andExpect(jsonPath("$.error").value("Нет прерванной индексации"));
+    }
+
     @Test
     void testStopIndexingNotRunning() throws Exception {
         when(indexingService.stopIndexing()).thenReturn(new GenericResponse(false, "Индексация не запущена"));
@@ -76,18 +96,43 @@ public class ApiControllerTest {
 
     @Test
     void testIndexPageSuccess() throws Exception {
-        when(indexingService.indexPage("http://example.com/page1")).thenReturn(new GenericResponse(true));
-        mockMvc.perform(post("/api/indexPage").param("url", "http://example.com/page1")
+        IndexPageResponse queued = new IndexPageResponse(true, null);
+        queued.setTicket(42L);
+        queued.setStatus(PageIndexQueue.Status.QUEUED);
+        when(indexingService.indexPage("http://example.com/page1", 3)).thenReturn(queued);
+        mockMvc.perform(post("/api/indexPage").param("url", "http://example.com/page1").param("priority", "3")
                         .contentType(MediaType.APPLICATION_FORM_URLENCODED))
-                .andExpect(status().isOk())
+                .andExpect(status().isAccepted())
                 .andExpect(jsonPath("$.result").value(true))
+                .andExpect(jsonPath("$.ticket").value(42))
+                .andExpect(jsonPath("$.status").value("QUEUED"))
                 .andExpect(jsonPath("$.error").doesNotExist());
     }
 
+    @Test
+    void testIndexPageStatus() throws Exception {
+        IndexPageResponse done = new IndexPageResponse(true, null);
+        done.setTicket(42L);
+        done.setStatus(PageIndexQueue.Status.DONE);
+        when(indexingService.getPageTask(42)).thenReturn(done);
+        mockMvc.perform(get("/api/indexPage/status").param("ticket", "42"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("DONE"));
+    }
+
+    @Test
+    void testIndexPageStatusUnknownTicket() throws Exception {
+        when(indexingService.getPageTask(1))
+                .thenReturn(new IndexPageResponse(false, "Задача переиндексации не найдена"));
+        mockMvc.perform(get("/api/indexPage/status").param("ticket", "1"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.result").value(false));
+    }
+
     @Test
     void testIndexPageOutOfConfig() throws Exception {
-        when(indexingService.indexPage("http://unknown.com/page"))
-                .thenReturn(new GenericResponse(false, "Данная страница находится за пределами сайтов, указанных в конфигурационном файле"));
+        when(indexingService.indexPage("http://unknown.com/page", 0))
+                .thenReturn(new IndexPageResponse(false, "Данная страница находится за пределами сайтов, указанных в конфигурационном файле"));
         mockMvc.perform(post("/api/indexPage").param("url", "http://unknown.com/page")
                         .contentType(MediaType.APPLICATION_FORM_URLENCODED))
                 .andExpect(status().isBadRequest())
@@ -97,14 +142,14 @@ public class ApiControllerTest {
     }
 
     @Test
-    void testIndexPagePageError() throws Exception {
-        when(indexingService.indexPage("http://example.com/error"))
-                .thenReturn(new GenericResponse(false, "Страница вернула ошибку 404"));
-        mockMvc.perform(post("/api/indexPage").param("url", "http://example.com/error")
+    void testIndexPageQueueFull() throws Exception {
+        when(indexingService.indexPage("http://example.com/page", 0))
+                .thenReturn(new IndexPageResponse(false, "Очередь переиндексации страниц переполнена"));
+        mockMvc.perform(post("/api/indexPage").param("url", "http://example.com/page")
                         .contentType(MediaType.APPLICATION_FORM_URLENCODED))
-                .andExpect(status().isBadRequest())
+                .andExpect(status().isServiceUnavailable())
                 .andExpect(jsonPath("$.result").value(false))
-                .andExpect(jsonPath("$.error").value("Страница вернула ошибку 404"));
+                .andExpect(jsonPath("$.error").value("Очередь переиндексации страниц переполнена"));
     }
 
     @Test
@@ -201,5 +246,25 @@ public class ApiControllerTest {
                 .andExpect(jsonPath("$.statistics.detailed[0].url").value("http://example.com"))
                 .andExpect(jsonPath("$.statistics.detailed[0].status").value("INDEXED"));
     }
-}
 
+    @Test
+    void testPipelineStatisticsSuccess() throws Exception {
+        PipelineStageStatistics parse = new PipelineStageStatistics();
+        parse.setName("parse");
+        parse.setWorkers(4);
+        parse.setQueueSize(256);
+        parse.setQueueCapacity(256);
+        parse.setProcessed(1000);
+        PipelineStatisticsResponse statsResp = new PipelineStatisticsResponse();
+        statsResp.setResult(true);
+        statsResp.setStages(Collections.singletonList(parse));
+        when(statisticsService.getPipelineStatistics()).thenReturn(statsResp);
+
+        mockMvc.perform(get("/api/pipelineStatistics"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result").value(true))
+                .andExpect(jsonPath("$.stages[0].name").value("parse"))
+                .andExpect(jsonPath("$.stages[0].queueSize").value(256))
+                .andExpect(jsonPath("$.stages[0].processed").value(1000));
+    }
+}
@@ -0,0 +1,153 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Captor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import searchengine.config.IndexWriterSettings;
+import searchengine.util.TokenPositions;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BulkIndexWriterTest {
+
+    private static final String INSERT_INDEX_SQL =
+            "INSERT INTO `index` (page_id, lemma_id, `rank`, positions) VALUES (?, ?, ?, ?)";
+
+    @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private LemmaDictionary lemmaDictionary;
+    @Mock private InvertedIndex invertedIndex;
+
+    @Captor private ArgumentCaptor<List<Object[]>> indexRows;
+
+    private BulkIndexWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        writer = new BulkIndexWriter(jdbcTemplate, transactionManager, lemmaDictionary,
+                new IndexWriterSettings(), invertedIndex);
+    }
+
+    @Test
+    void testWritesIndexRowsWithDictionaryIds() {
+        when(lemmaDictionary.findId(1, "кот")).thenReturn(5);
+        when(lemmaDictionary.findId(1, "пёс")).thenReturn(6);
+        Map<String, TokenPositions> page = Map.of("кот", positions(2), "пёс", positions(1));
+
+        writer.add(1, 10, page);
+        verify(lemmaDictionary).record(1, page.keySet(), 1);
+        writer.flush();
+
+        InOrder inOrder = inOrder(lemmaDictionary, jdbcTemplate);
+        inOrder.verify(lemmaDictionary).flush(any(LemmaDictionary.FlushedChanges.class));
+        inOrder.verify(jdbcTemplate).batchUpdate(eq(INSERT_INDEX_SQL), indexRows.capture());
+        assertEquals(Set.of("10 5 2.0", "10 6 1.0"), rows(indexRows.getValue()));
+        Object[] row = indexRows.getValue().stream().filter(r -> r[1].equals(5)).findFirst().orElseThrow();
+        assertArrayEquals(page.get("кот").toBytes(), (byte[]) row[3]);
+        verify(invertedIndex).addPage(1, 10, Map.of("кот", 2, "пёс", 1));
+    }
+
+    @Test
+    void testFailedFlushRequeuesBatchAndRestoresLemmas() {
+        when(lemmaDictionary.findId(1, "кот")).thenReturn(5);
+        when(jdbcTemplate.batchUpdate(eq(INSERT_INDEX_SQL), ArgumentMatchers.<Object[]>anyList()))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"))
+                .thenReturn(new int[1]);
+        writer.add(1, 10, Map.of("кот", positions(1)));
+
+        assertThrows(DataAccessException.class, writer::flush);
+        ArgumentCaptor<LemmaDictionary.FlushedChanges> flushed = ArgumentCaptor.forClass(LemmaDictionary.FlushedChanges.class);
+        ArgumentCaptor<LemmaDictionary.FlushedChanges> restored = ArgumentCaptor.forClass(LemmaDictionary.FlushedChanges.class);
+        verify(lemmaDictionary).flush(flushed.capture());
+        verify(lemmaDictionary).restore(restored.capture());
+        assertSame(flushed.getValue(), restored.getValue());
+        verify(lemmaDictionary, never()).evict(anyInt());
+        verify(invertedIndex, never()).addPage(anyInt(), anyInt(), any());
+
+        writer.flush();
+
+        verify(jdbcTemplate, times(2)).batchUpdate(eq(INSERT_INDEX_SQL), indexRows.capture());
+        assertEquals(Set.of("10 5 1.0"), rows(indexRows.getValue()));
+        verify(invertedIndex).addPage(1, 10, Map.of("кот", 1));
+    }
+
+    @Test
+    void testRemovesPendingPageWithoutFlushing() {
+        when(lemmaDictionary.findId(1, "пёс")).thenReturn(6);
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq(10))).thenReturn(List.of());
+        writer.add(1, 10, Map.of("кот", positions(1)));
+        writer.add(1, 11, Map.of("пёс", positions(1)));
+
+        writer.removePage(1, 10);
+
+        verify(lemmaDictionary, never()).flush(any());
+        verify(lemmaDictionary).record(1, Set.of("кот"), -1);
+        verify(jdbcTemplate).update("DELETE FROM `index` WHERE page_id = ?", 10);
+        verify(invertedIndex).removePage(1, 10, List.of());
+
+        writer.flush();
+
+        verify(jdbcTemplate).batchUpdate(eq(INSERT_INDEX_SQL), indexRows.capture());
+        assertEquals(Set.of("11 6 1.0"), rows(indexRows.getValue()));
+    }
+
+    @Test
+    void testRemovesWrittenPageRows() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq(10))).thenReturn(List.of("кот", "пёс"));
+
+        writer.removePage(1, 10);
+
+        verify(jdbcTemplate).update("DELETE FROM `index` WHERE page_id = ?", 10);
+        verify(lemmaDictionary).record(1, List.of("кот", "пёс"), -1);
+        verify(invertedIndex).removePage(1, 10, List.of("кот", "пёс"));
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), ArgumentMatchers.<Object[]>anyList());
+    }
+
+    @Test
+    void testFailedRemovalKeepsPageRows() {
+        when(lemmaDictionary.findId(1, "кот")).thenReturn(5);
+        writer.add(1, 10, Map.of("кот", positions(1)));
+
+        assertThrows(IllegalStateException.class, () -> writer.removePage(1, 10, () -> {
+            throw new IllegalStateException("page save failed");
+        }));
+
+        verify(lemmaDictionary, never()).record(anyInt(), any(), eq(-1));
+        verify(invertedIndex, never()).removePage(anyInt(), anyInt(), any());
+        writer.flush();
+        verify(jdbcTemplate).batchUpdate(eq(INSERT_INDEX_SQL), indexRows.capture());
+        assertEquals(Set.of("10 5 1.0"), rows(indexRows.getValue()));
+    }
+
+    private static TokenPositions positions(int count) {
+        TokenPositions positions = new TokenPositions();
+        for (int i = 0; i < count; i++) {
+            positions.add(i * 2, i * 12, 5);
+        }
+        return positions;
+    }
+
+    private static Set<String> rows(List<Object[]> rows) {
+        return rows.stream()
+                .map(row -> row[0] + " " + row[1] + " " + row[2])
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,42 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.ScopeSettings;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CrawlScopeTest {
+
+    @Test
+    void testDepthAndExcludedPaths() {
+        ScopeSettings settings = new ScopeSettings();
+        settings.setMaxDepth(2);
+        settings.setExcludedPaths(List.of("^/calendar/\\d{4}/", "[?&]print="));
+        CrawlScope scope = new CrawlScope(settings);
+
+        assertTrue(scope.isInScope("/news", 2));
+        assertFalse(scope.isInScope("/news", 3));
+        assertFalse(scope.isInScope("/calendar/2031/01", 1));
+        assertFalse(scope.isInScope("/article?id=5&print=1", 1));
+        assertTrue(scope.isInScope("/article?id=5", 1));
+    }
+
+    @Test
+    void testRepeatedSegmentsAreTreatedAsTrap() {
+        CrawlScope scope = new CrawlScope(new ScopeSettings());
+        assertTrue(scope.isInScope("/a/b/a/b/a/b", 1));
+        assertFalse(scope.isInScope("/a/b/a/b/a/b/a/b", 1));
+    }
+
+    @Test
+    void testMaxPages() {
+        ScopeSettings settings = new ScopeSettings();
+        assertTrue(new CrawlScope(settings).hasRoom(1_000_000));
+        settings.setMaxPages(10);
+        CrawlScope scope = new CrawlScope(settings);
+        assertTrue(scope.hasRoom(9));
+        assertFalse(scope.hasRoom(10));
+    }
+}
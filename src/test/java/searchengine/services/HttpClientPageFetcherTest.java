@@ -0,0 +1,128 @@
+package searchengine.services;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.FetchSettings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpClientPageFetcherTest {
+
+    private static final String PAGE = "<html><head><title>Тест</title></head><body>Привет</body></html>";
+
+    private HttpServer server;
+    private HttpClientPageFetcher fetcher;
+    private final AtomicInteger requests = new AtomicInteger();
+    private String baseUrl;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/gzip", exchange -> {
+            requests.incrementAndGet();
+            byte[] body = gzip(PAGE.getBytes(StandardCharsets.UTF_8));
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+            if (exchange.getRequestHeaders().getFirst("Accept-Encoding").contains("gzip")) {
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/large", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/html");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                byte[] chunk = new byte[1024];
+                for (int i = 0; i < 1024; i++) {
+                    out.write(chunk);
+                }
+            } catch (Exception e) {
+                // клиент закрыл соединение после лимита
+            }
+        });
+        server.createContext("/report", exchange -> {
+            requests.incrementAndGet();
+            exchange.getResponseHeaders().add("Content-Type", "application/pdf");
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+                return;
+            }
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                byte[] chunk = new byte[1024];
+                for (int i = 0; i < 1024; i++) {
+                    out.write(chunk);
+                }
+            } catch (Exception e) {
+                // клиент закрыл соединение, не читая тело
+            }
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+
+        FetchSettings settings = new FetchSettings();
+        settings.setMaxBodySize(64 * 1024);
+        fetcher = new HttpClientPageFetcher(settings);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fetcher.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void testCompressedResponseIsDecodedWithSingleRequest() throws Exception {
+        FetchedPage page = fetcher.fetch(baseUrl + "/gzip").get(5, TimeUnit.SECONDS);
+        assertEquals(200, page.getStatusCode());
+        assertEquals("UTF-8", page.getCharset());
+        assertEquals(PAGE, new String(page.getBody(), StandardCharsets.UTF_8));
+        assertFalse(page.isTruncated());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void testBodyIsCutAtMaxSize() throws Exception {
+        FetchedPage page = fetcher.fetch(baseUrl + "/large").get(5, TimeUnit.SECONDS);
+        assertTrue(page.isTruncated());
+        assertEquals(64 * 1024, page.getBody().length);
+    }
+
+    @Test
+    void testNonHtmlBodyIsNotDownloaded() throws Exception {
+        FetchedPage page = fetcher.fetchHtml(baseUrl + "/report", null, null).get(5, TimeUnit.SECONDS);
+        assertEquals(200, page.getStatusCode());
+        assertFalse(page.isHtml());
+        assertEquals(0, page.getBody().length);
+    }
+
+    @Test
+    void testProbeReturnsContentTypeWithoutBody() throws Exception {
+        FetchedPage page = fetcher.probe(baseUrl + "/report").get(5, TimeUnit.SECONDS);
+        assertEquals(200, page.getStatusCode());
+        assertEquals("application/pdf", page.getContentType());
+        assertEquals(0, page.getBody().length);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+}
@@ -3,23 +3,28 @@ package searchengine.services;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.dao.DataAccessException;
 import org.springframework.test.util.ReflectionTestUtils;
 import searchengine.config.SitesList;
-import searchengine.dao.IndexRepository;
-import searchengine.dao.LemmaRepository;
 import searchengine.dao.PageRepository;
 import searchengine.dao.SiteRepository;
+import searchengine.dto.indexing.IndexPageResponse;
 import searchengine.dto.statistics.GenericResponse;
 import searchengine.model.Site;
 import searchengine.model.SiteStatus;
+import searchengine.util.LemmaFinder;
 
 import java.time.LocalDateTime;
+import java.io.IOException;
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -30,8 +35,19 @@ public class IndexingServiceImplTest {
     @Mock private SitesList sitesList;
     @Mock private SiteRepository siteRepository;
     @Mock private PageRepository pageRepository;
-    @Mock private LemmaRepository lemmaRepository;
-    @Mock private IndexRepository indexRepository;
+    @Mock private PolitenessScheduler politenessScheduler;
+    @Mock private PageFetcher pageFetcher;
+    @Mock private BulkIndexWriter bulkIndexWriter;
+    @Mock private LemmaDictionary lemmaDictionary;
+    @Mock private LemmaFinder lemmaFinder;
+    @Mock private IndexingPipeline indexingPipeline;
+    @Mock private FrontierJournal frontierJournal;
+    @Mock private SiteSeeder siteSeeder;
+    @Mock private CrawlScope crawlScope;
+    @Mock private ResourceFilter resourceFilter;
+    @Mock private RejectedUrlRegistry rejectedUrlRegistry;
+    @Mock private SiteGenerations siteGenerations;
+    @Mock private PageIndexQueue pageIndexQueue;
 
     @InjectMocks
     private IndexingServiceImpl indexingService;
@@ -57,6 +73,108 @@ public class IndexingServiceImplTest {
         assertEquals("Ошибка базы данных", response.getError());
     }
 
+    @Test
+    void testStartIndexingBuildsNewGenerationAndPromotesIt() {
+        searchengine.config.Site configSite = new searchengine.config.Site();
+        configSite.setUrl("http://example.com");
+        configSite.setName("Example");
+        Site live = new Site();
+        live.setId(7);
+        live.setUrl("http://example.com");
+        live.setStatus(SiteStatus.INDEXED);
+        when(sitesList.getSites()).thenReturn(Collections.singletonList(configSite));
+        when(siteRepository.findByUrlAndLiveTrue("http://example.com")).thenReturn(live);
+        when(siteRepository.save(any(Site.class))).thenAnswer(invocation -> {
+            Site saved = invocation.getArgument(0);
+            saved.setId(8);
+            return saved;
+        });
+        when(siteSeeder.loadRobots("http://example.com"))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("robots.txt недоступен")));
+
+        GenericResponse response = indexingService.startIndexing();
+        assertTrue(response.isResult());
+        verify(siteRepository).save(argThat(site -> !site.isLive() && site.getStatus() == SiteStatus.INDEXING));
+        verify(rejectedUrlRegistry).copy(7, 8);
+        verify(siteGenerations, timeout(1000)).promote(argThat(site -> site.getId() == 8));
+        verify(siteGenerations, never()).promote(live);
+        verify(bulkIndexWriter, atLeastOnce()).flush();
+        verify(lemmaDictionary).purgeUnused(8);
+    }
+
+    @Test
+    void testFailedPromotionMarksSiteFailedAndReleasesFlag() throws InterruptedException {
+        searchengine.config.Site configSite = new searchengine.config.Site();
+        configSite.setUrl("http://example.com");
+        configSite.setName("Example");
+        when(sitesList.getSites()).thenReturn(Collections.singletonList(configSite));
+        when(siteRepository.save(any(Site.class))).thenAnswer(invocation -> {
+            Site saved = invocation.getArgument(0);
+            saved.setId(8);
+            return saved;
+        });
+        when(siteSeeder.loadRobots("http://example.com"))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("robots.txt недоступен")));
+        doThrow(new DataAccessException("DB fail") {}).when(siteGenerations).promote(any(Site.class));
+
+        assertTrue(indexingService.startIndexing().isResult());
+        verify(siteRepository, timeout(1000)).save(argThat(site -> site.getStatus() == SiteStatus.FAILED
+                && site.getLastError().contains("DB fail")));
+        AtomicBoolean inProgress = (AtomicBoolean) ReflectionTestUtils.getField(indexingService, "indexingInProgress");
+        long deadline = System.currentTimeMillis() + 1000;
+        while (inProgress.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(inProgress.get());
+    }
+
+    @Test
+    void testStartIncrementalIndexingWhenAlreadyRunning() {
+        ReflectionTestUtils.setField(indexingService, "indexingInProgress", new AtomicBoolean(true));
+        GenericResponse response = indexingService.startIncrementalIndexing();
+        assertFalse(response.isResult());
+        assertEquals("Индексация уже запущена", response.getError());
+    }
+
+    @Test
+    void testResumeIndexingWhenAlreadyRunning() {
+        ReflectionTestUtils.setField(indexingService, "indexingInProgress", new AtomicBoolean(true));
+        GenericResponse response = indexingService.resumeIndexing();
+        assertFalse(response.isResult());
+        assertEquals("Индексация уже запущена", response.getError());
+    }
+
+    @Test
+    void testResumeIndexingWithEmptyFrontier() {
+        searchengine.config.Site configSite = new searchengine.config.Site();
+        configSite.setUrl("http://example.com");
+        configSite.setName("Example");
+        Site site = new Site();
+        site.setId(1);
+        site.setUrl("http://example.com");
+        site.setStatus(SiteStatus.FAILED);
+        when(sitesList.getSites()).thenReturn(Collections.singletonList(configSite));
+        when(siteRepository.findFirstByUrlOrderByIdDesc("http://example.com")).thenReturn(site);
+        when(frontierJournal.load(1)).thenReturn(Collections.emptyList());
+
+        GenericResponse response = indexingService.resumeIndexing();
+        assertFalse(response.isResult());
+        assertEquals("Нет прерванной индексации", response.getError());
+        verify(pageFetcher, never()).fetch(anyString(), any(), any());
+        assertFalse(((AtomicBoolean) ReflectionTestUtils.getField(indexingService, "indexingInProgress")).get());
+    }
+
+    @Test
+    void testStopIndexingKeepsFrontier() {
+        ReflectionTestUtils.setField(indexingService, "indexingInProgress", new AtomicBoolean(true));
+        when(siteRepository.findByStatus(SiteStatus.INDEXING)).thenReturn(Collections.emptyList());
+
+        GenericResponse response = indexingService.stopIndexing();
+        assertTrue(response.isResult());
+        verify(frontierJournal).flush();
+        verify(frontierJournal, never()).clear(anyInt());
+    }
+
     @Test
     void testStopIndexingWhenNotRunning() {
         GenericResponse response = indexingService.stopIndexing();
@@ -83,25 +201,77 @@ public class IndexingServiceImplTest {
     @Test
     void testIndexPageWithInvalidUrl() {
         when(sitesList.getSites()).thenReturn(Collections.emptyList());
-        GenericResponse response = indexingService.indexPage("http://invalid.com/page");
+        IndexPageResponse response = indexingService.indexPage("http://invalid.com/page", 0);
         assertFalse(response.isResult());
         assertEquals("Данная страница находится за пределами сайтов, указанных в конфигурационном файле", response.getError());
     }
 
     @Test
-    void testIndexPageDatabaseError() {
+    void testIndexPageQueuesPageWithoutFetching() {
+        searchengine.config.Site configSite = new searchengine.config.Site();
+        configSite.setUrl("http://example.com");
+        configSite.setName("Example");
+        when(sitesList.getSites()).thenReturn(Collections.singletonList(configSite));
+        when(pageIndexQueue.submit(eq("http://example.com/page1"), eq(5), any()))
+                .thenAnswer(invocation -> new PageIndexQueue.Ticket(7, "http://example.com/page1", 5,
+                        invocation.getArgument(2)));
+
+        IndexPageResponse response = indexingService.indexPage("http://example.com/page1", 5);
+        assertTrue(response.isResult());
+        assertEquals(7L, response.getTicket());
+        assertEquals("QUEUED", response.getStatus());
+        verify(pageFetcher, never()).fetchHtml(anyString(), any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testQueuedPageReportsDatabaseError() {
         searchengine.config.Site configSite = new searchengine.config.Site();
         configSite.setUrl("http://example.com");
         configSite.setName("Example");
         when(sitesList.getSites()).thenReturn(Collections.singletonList(configSite));
-        when(siteRepository.findByUrl("http://example.com"))
+        when(siteRepository.findByUrlAndLiveTrue("http://example.com"))
                 .thenThrow(new DataAccessException("DB fail") {});
+        ArgumentCaptor<Supplier<GenericResponse>> task = ArgumentCaptor.forClass(Supplier.class);
+        when(pageIndexQueue.submit(eq("http://example.com/page1"), eq(0), task.capture()))
+                .thenAnswer(invocation -> new PageIndexQueue.Ticket(1, "http://example.com/page1", 0,
+                        invocation.getArgument(2)));
 
-        GenericResponse response = indexingService.indexPage("http://example.com/page1");
+        indexingService.indexPage("http://example.com/page1", 0);
+        GenericResponse response = task.getValue().get();
         assertFalse(response.isResult());
         assertTrue(response.getError().contains("Ошибка при работе с базой данных"));
     }
 
+    @Test
+    void testIndexPageReportsFullQueue() {
+        searchengine.config.Site configSite = new searchengine.config.Site();
+        configSite.setUrl("http://example.com");
+        configSite.setName("Example");
+        when(sitesList.getSites()).thenReturn(Collections.singletonList(configSite));
+        when(pageIndexQueue.submit(anyString(), anyInt(), any()))
+                .thenThrow(new RejectedExecutionException("Очередь переиндексации страниц переполнена"));
+
+        IndexPageResponse response = indexingService.indexPage("http://example.com/page1", 0);
+        assertFalse(response.isResult());
+        assertEquals("Очередь переиндексации страниц переполнена", response.getError());
+    }
+
+    @Test
+    void testIndexPageRejectsBinaryResourceWithoutFetching() {
+        searchengine.config.Site configSite = new searchengine.config.Site();
+        configSite.setUrl("http://example.com");
+        configSite.setName("Example");
+        when(sitesList.getSites()).thenReturn(Collections.singletonList(configSite));
+        when(resourceFilter.classify("http://example.com/report.pdf")).thenReturn(ResourceFilter.Kind.SKIPPED);
+
+        IndexPageResponse response = indexingService.indexPage("http://example.com/report.pdf", 0);
+        assertFalse(response.isResult());
+        assertEquals("Адрес ведёт не на HTML-страницу", response.getError());
+        verify(pageFetcher, never()).fetchHtml(anyString(), any(), any());
+        verify(pageIndexQueue, never()).submit(anyString(), anyInt(), any());
+    }
+
     @Test
     void testGetPathMethod() {
         String fullUrl = "http://example.com/page1";
@@ -0,0 +1,75 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.SearchSettings;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InvertedIndexTest {
+
+    private InvertedIndex index;
+
+    @BeforeEach
+    void setUp() {
+        SearchSettings settings = new SearchSettings();
+        settings.setInMemoryIndex(true);
+        index = new InvertedIndex(null, settings);
+        index.addPage(1, 10, Map.of("кот", 2, "пёс", 1));
+        index.addPage(1, 11, Map.of("кот", 1));
+        index.addPage(1, 12, Map.of("кот", 3, "пёс", 4, "мышь", 1));
+        index.addPage(1, 13, Map.of("птица", 1));
+        index.addPage(2, 20, Map.of("кот", 5, "пёс", 5));
+    }
+
+    @Test
+    void testIntersectsAndSumsRanks() {
+        Map<Integer, Float> result = index.search(List.of(1, 2), List.of("кот", "пёс"), 1f);
+
+        assertEquals(Map.of(10, 3f, 12, 7f, 20, 10f), result);
+    }
+
+    @Test
+    void testSearchesOnlySelectedSites() {
+        index.addPage(2, 21, Map.of("птица", 1));
+
+        assertEquals(Map.of(20, 10f), index.search(List.of(2), List.of("кот", "пёс"), 1f));
+    }
+
+    @Test
+    void testPagesWithoutLemmasCountTowardsShare() {
+        // «кот» есть на единственной странице сайта 2 – на всех его страницах
+        assertTrue(index.search(List.of(2), List.of("кот"), 1f).isEmpty());
+
+        index.addPage(2, 21, Map.of());
+
+        assertEquals(Map.of(20, 5f), index.search(List.of(2), List.of("кот"), 1f));
+    }
+
+    @Test
+    void testSkipsLemmasOnTooManyPages() {
+        // «кот» встречается на 4 страницах из 5 и отбрасывается, остаётся «мышь»
+        Map<Integer, Float> result = index.search(List.of(1, 2), List.of("кот", "мышь"), 0.8f);
+
+        assertEquals(Map.of(12, 1f), result);
+    }
+
+    @Test
+    void testUnknownLemmaMatchesNothing() {
+        assertTrue(index.search(List.of(1), List.of("кот", "слон"), 1f).isEmpty());
+    }
+
+    @Test
+    void testRemovePageAndDropSite() {
+        index.removePage(1, 12, List.of("кот", "пёс", "мышь"));
+        assertEquals(Map.of(10, 3f), index.search(List.of(1), List.of("кот", "пёс"), 1f));
+        assertTrue(index.search(List.of(1), List.of("мышь"), 1f).isEmpty());
+
+        index.dropSite(2);
+        assertTrue(index.search(List.of(2), List.of("кот"), 1f).isEmpty());
+        assertEquals(Map.of(10, 2f, 11, 1f), index.search(List.of(1, 2), List.of("кот"), 1f));
+    }
+}
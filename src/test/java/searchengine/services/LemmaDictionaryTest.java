@@ -0,0 +1,204 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LemmaDictionaryTest {
+
+    private static final int SITE_ID = 1;
+    private static final String UPSERT_SQL = "INSERT INTO lemma (site_id, lemma, frequency) VALUES (?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE frequency = frequency + VALUES(frequency)";
+
+    @Mock private JdbcTemplate jdbcTemplate;
+
+    private LemmaDictionary dictionary;
+
+    /** Строки таблицы lemma сайта: лемма → id. */
+    private final Map<String, Integer> table = new HashMap<>();
+    /** Леммы, которые добавил в таблицу последний upsert. */
+    private final List<String> created = new ArrayList<>();
+    private final List<List<Object[]>> upserts = new ArrayList<>();
+    private int nextId = 100;
+    private boolean failUpsert;
+
+    @BeforeEach
+    void setUp() {
+        dictionary = new LemmaDictionary(jdbcTemplate);
+        // Ответы синхронизированы: в тесте очистки словарь читают и пишут два потока
+        lenient().doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            synchronized (table) {
+                for (Map.Entry<String, Integer> row : table.entrySet()) {
+                    handler.processRow(row(row.getValue(), row.getKey()));
+                }
+            }
+            return null;
+        }).when(jdbcTemplate).query(eq("SELECT id, lemma FROM lemma WHERE site_id = ?"),
+                any(RowCallbackHandler.class), eq(SITE_ID));
+        lenient().when(jdbcTemplate.batchUpdate(eq(UPSERT_SQL), ArgumentMatchers.<Object[]>anyList()))
+                .thenAnswer(invocation -> {
+                    if (failUpsert) {
+                        throw new DataAccessResourceFailureException("connection lost");
+                    }
+                    List<Object[]> rows = invocation.getArgument(1);
+                    synchronized (table) {
+                        upserts.add(rows);
+                        created.clear();
+                        for (Object[] row : rows) {
+                            String lemma = (String) row[1];
+                            if (!table.containsKey(lemma)) {
+                                table.put(lemma, nextId++);
+                                created.add(lemma);
+                            }
+                        }
+                    }
+                    return new int[rows.size()];
+                });
+        // Запрос id созданных лемм
+        lenient().doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            synchronized (table) {
+                for (String lemma : created) {
+                    handler.processRow(row(table.get(lemma), lemma));
+                }
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void testUpsertsAggregatedDeltasAndResolvesCreatedIds() {
+        dictionary.record(SITE_ID, List.of("пёс", "кот"), 1);
+        dictionary.record(SITE_ID, List.of("кот", "мышь"), 1);
+        dictionary.record(SITE_ID, List.of("мышь"), -1);
+
+        dictionary.flush(new LemmaDictionary.FlushedChanges());
+
+        assertEquals(List.of(List.of("1 кот 2", "1 пёс 1")), upsertedRows());
+        assertEquals(table.get("кот"), dictionary.findId(SITE_ID, "кот"));
+        assertEquals(table.get("пёс"), dictionary.findId(SITE_ID, "пёс"));
+        // Изменения «мыши» взаимно погасились: в базу она не попадает
+        assertNull(dictionary.findId(SITE_ID, "мышь"));
+    }
+
+    @Test
+    void testFlushesOnlyChangesSinceLastFlush() {
+        table.put("кот", 5);
+        dictionary.record(SITE_ID, List.of("кот"), 1);
+        dictionary.flush(new LemmaDictionary.FlushedChanges());
+        dictionary.record(SITE_ID, List.of("кот"), -1);
+        dictionary.record(SITE_ID, List.of("пёс"), 1);
+        dictionary.flush(new LemmaDictionary.FlushedChanges());
+        dictionary.flush(new LemmaDictionary.FlushedChanges());
+
+        assertEquals(List.of(List.of("1 кот 1"), List.of("1 кот -1", "1 пёс 1")), upsertedRows());
+        assertEquals(5, dictionary.findId(SITE_ID, "кот"));
+        assertEquals(100, dictionary.findId(SITE_ID, "пёс"));
+    }
+
+    @Test
+    void testRestoreReturnsDeltasOfFailedFlush() {
+        table.put("кот", 5);
+        dictionary.record(SITE_ID, List.of("кот", "пёс"), 1);
+        failUpsert = true;
+        LemmaDictionary.FlushedChanges changes = new LemmaDictionary.FlushedChanges();
+
+        assertThrows(DataAccessException.class, () -> dictionary.flush(changes));
+        dictionary.restore(changes);
+        failUpsert = false;
+        dictionary.flush(new LemmaDictionary.FlushedChanges());
+
+        assertEquals(List.of(List.of("1 кот 1", "1 пёс 1")), upsertedRows());
+        assertEquals(100, dictionary.findId(SITE_ID, "пёс"));
+    }
+
+    @Test
+    void testRestoreForgetsIdsOfRolledBackLemmas() {
+        dictionary.record(SITE_ID, List.of("пёс"), 1);
+        LemmaDictionary.FlushedChanges changes = new LemmaDictionary.FlushedChanges();
+        dictionary.flush(changes);
+        assertEquals(100, dictionary.findId(SITE_ID, "пёс"));
+
+        // Транзакция откатилась вместе с созданной строкой
+        table.remove("пёс");
+        dictionary.restore(changes);
+        assertNull(dictionary.findId(SITE_ID, "пёс"));
+
+        dictionary.flush(new LemmaDictionary.FlushedChanges());
+        assertEquals(List.of(List.of("1 пёс 1"), List.of("1 пёс 1")), upsertedRows());
+        assertEquals(101, dictionary.findId(SITE_ID, "пёс"));
+    }
+
+    @Test
+    void testPurgeUnusedFlushesSiteAndDeletesUnusedLemmas() {
+        table.put("кот", 5);
+        dictionary.record(SITE_ID, List.of("кот"), -1);
+
+        dictionary.purgeUnused(SITE_ID);
+
+        assertEquals(List.of(List.of("1 кот -1")), upsertedRows());
+        verify(jdbcTemplate).update("DELETE FROM lemma WHERE site_id = ? AND frequency <= 0", SITE_ID);
+        // Словарь сайта загружается заново и видит, что лемма удалена
+        table.remove("кот");
+        assertNull(dictionary.findId(SITE_ID, "кот"));
+    }
+
+    @Test
+    void testRecordsDuringPurgeAreNotLost() throws Exception {
+        int pages = 5000;
+        // Индексатор страниц пишет частоты, пока завершение обхода очищает словарь сайта
+        Thread indexer = new Thread(() -> {
+            for (int i = 0; i < pages; i++) {
+                dictionary.record(SITE_ID, List.of("кот"), 1);
+            }
+        });
+        indexer.start();
+        while (indexer.isAlive()) {
+            dictionary.purgeUnused(SITE_ID);
+        }
+        indexer.join();
+        dictionary.flush(new LemmaDictionary.FlushedChanges());
+
+        long written;
+        synchronized (table) {
+            written = upserts.stream().flatMap(List::stream).mapToLong(row -> (Long) row[2]).sum();
+        }
+        assertEquals(pages, written);
+        assertEquals(table.get("кот"), dictionary.findId(SITE_ID, "кот"));
+    }
+
+    private List<List<String>> upsertedRows() {
+        return upserts.stream()
+                .map(rows -> rows.stream()
+                        .map(row -> row[0] + " " + row[1] + " " + row[2])
+                        .collect(Collectors.toList()))
+                .collect(Collectors.toList());
+    }
+
+    private static ResultSet row(int id, String lemma) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        lenient().when(rs.getInt("id")).thenReturn(id);
+        lenient().when(rs.getString("lemma")).thenReturn(lemma);
+        return rs;
+    }
+}
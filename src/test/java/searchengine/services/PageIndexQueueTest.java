@@ -0,0 +1,154 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.PageQueueSettings;
+import searchengine.dto.statistics.GenericResponse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PageIndexQueueTest {
+
+    private final PageIndexQueue queue = new PageIndexQueue(settings(2));
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        queue.shutdown();
+    }
+
+    @Test
+    void testRunsHigherPriorityFirst() throws Exception {
+        PageIndexQueue single = new PageIndexQueue(settings(1));
+        try {
+            single.submit("http://site.ru/busy", 0, this::block);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            List<String> order = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch done = new CountDownLatch(3);
+            for (String path : List.of("low", "high", "middle")) {
+                int priority = path.equals("high") ? 10 : path.equals("middle") ? 5 : 0;
+                single.submit("http://site.ru/" + path, priority, () -> {
+                    order.add(path);
+                    done.countDown();
+                    return new GenericResponse(true);
+                });
+            }
+
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(List.of("high", "middle", "low"), order);
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    @Test
+    void testCoalescesRequestsForQueuedUrl() throws Exception {
+        queue.submit("http://site.ru/busy", 0, this::block);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        AtomicInteger runs = new AtomicInteger();
+
+        PageIndexQueue.Ticket first = queue.submit("http://site.ru/page", 0, () -> count(runs));
+        PageIndexQueue.Ticket second = queue.submit("http://site.ru/page", 3, () -> count(runs));
+
+        assertSame(first, second);
+        assertEquals(2, first.getRequests());
+        assertEquals(3, first.getPriority());
+        release.countDown();
+        awaitStatus(first, PageIndexQueue.Status.DONE);
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void testRequestForRunningUrlWaitsForCurrentRun() throws Exception {
+        PageIndexQueue.Ticket running = queue.submit("http://site.ru/page", 0, this::block);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        PageIndexQueue.Ticket next = queue.submit("http://site.ru/page", 0, () -> new GenericResponse(true));
+
+        assertNotSame(running, next);
+        Thread.sleep(100);
+        assertEquals(PageIndexQueue.Status.QUEUED, next.getStatus());
+        release.countDown();
+        awaitStatus(next, PageIndexQueue.Status.DONE);
+    }
+
+    @Test
+    void testFailedTaskKeepsError() throws Exception {
+        PageIndexQueue.Ticket ticket = queue.submit("http://site.ru/404", 0,
+                () -> new GenericResponse(false, "Страница вернула ошибку 404"));
+
+        awaitStatus(ticket, PageIndexQueue.Status.FAILED);
+        assertEquals("Страница вернула ошибку 404", ticket.getError());
+        assertSame(ticket, queue.find(ticket.getId()).orElseThrow());
+    }
+
+    @Test
+    void testErrorInTaskReleasesUrl() throws Exception {
+        PageIndexQueue.Ticket broken = queue.submit("http://site.ru/page", 0, () -> {
+            throw new StackOverflowError();
+        });
+        awaitStatus(broken, PageIndexQueue.Status.FAILED);
+
+        PageIndexQueue.Ticket next = queue.submit("http://site.ru/page", 0, () -> new GenericResponse(true));
+
+        awaitStatus(next, PageIndexQueue.Status.DONE);
+        assertEquals(0, queue.getStatistics().getBusyWorkers());
+    }
+
+    @Test
+    void testRejectsWhenFull() throws Exception {
+        PageQueueSettings settings = settings(1);
+        settings.setCapacity(1);
+        PageIndexQueue small = new PageIndexQueue(settings);
+        try {
+            small.submit("http://site.ru/busy", 0, this::block);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            small.submit("http://site.ru/a", 0, () -> new GenericResponse(true));
+            assertThrows(RejectedExecutionException.class,
+                    () -> small.submit("http://site.ru/b", 0, () -> new GenericResponse(true)));
+        } finally {
+            release.countDown();
+            small.shutdown();
+        }
+    }
+
+    private GenericResponse block() {
+        started.countDown();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new GenericResponse(true);
+    }
+
+    private static GenericResponse count(AtomicInteger runs) {
+        runs.incrementAndGet();
+        return new GenericResponse(true);
+    }
+
+    private static void awaitStatus(PageIndexQueue.Ticket ticket, PageIndexQueue.Status status) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (ticket.getStatus() != status && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(status, ticket.getStatus());
+    }
+
+    private static PageQueueSettings settings(int threads) {
+        PageQueueSettings settings = new PageQueueSettings();
+        settings.setThreads(threads);
+        return settings;
+    }
+}
@@ -0,0 +1,105 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import searchengine.dto.statistics.PipelineStageStatistics;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PipelineStageTest {
+
+    private PipelineStage stage;
+
+    @AfterEach
+    void tearDown() {
+        stage.shutdown();
+    }
+
+    @Test
+    void testSubmitBlocksWhenQueueIsFull() throws Exception {
+        stage = new PipelineStage("test", 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        stage.submit(() -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        stage.submit(() -> { });
+
+        AtomicBoolean thirdAccepted = new AtomicBoolean();
+        Thread producer = new Thread(() -> {
+            stage.submit(() -> { });
+            thirdAccepted.set(true);
+        });
+        producer.start();
+        producer.join(200);
+        assertFalse(thirdAccepted.get());
+        assertEquals(1, stage.getStatistics().getQueueSize());
+        assertEquals(1, stage.getStatistics().getBusyWorkers());
+
+        release.countDown();
+        producer.join(5000);
+        assertTrue(thirdAccepted.get());
+    }
+
+    @Test
+    void testStatisticsCountProcessedAndFailedTasks() throws Exception {
+        stage = new PipelineStage("test", 2, 10);
+        CountDownLatch done = new CountDownLatch(3);
+        stage.submit(done::countDown);
+        stage.submit(done::countDown);
+        stage.submit(() -> {
+            done.countDown();
+            throw new IllegalStateException("boom");
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        PipelineStageStatistics statistics = waitForTotal(3);
+        assertEquals("test", statistics.getName());
+        assertEquals(2, statistics.getWorkers());
+        assertEquals(2, statistics.getProcessed());
+        assertEquals(1, statistics.getFailed());
+        assertEquals(10, statistics.getQueueCapacity());
+    }
+
+    @Test
+    void testClearDropsQueuedTasks() throws Exception {
+        stage = new PipelineStage("test", 1, 10);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean ran = new AtomicBoolean();
+        stage.submit(() -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        stage.submit(() -> ran.set(true));
+        assertEquals(1, stage.clear().size());
+        release.countDown();
+        Thread.sleep(100);
+        assertFalse(ran.get());
+    }
+
+    private PipelineStageStatistics waitForTotal(long total) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        PipelineStageStatistics statistics = stage.getStatistics();
+        while (statistics.getProcessed() + statistics.getFailed() < total && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            statistics = stage.getStatistics();
+        }
+        return statistics;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
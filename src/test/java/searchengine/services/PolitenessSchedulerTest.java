@@ -0,0 +1,126 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.FetchSettings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PolitenessSchedulerTest {
+
+    private PolitenessScheduler scheduler = new PolitenessScheduler(new FetchSettings());
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void testMaxInFlightHoldsRequestUntilSlotIsReleased() throws Exception {
+        scheduler.configure("example.com", 1000, 1);
+        CompletableFuture<String> first = new CompletableFuture<>();
+        AtomicInteger started = new AtomicInteger();
+
+        CompletableFuture<String> firstResult = scheduler.submit("example.com", () -> {
+            started.incrementAndGet();
+            return first;
+        });
+        CompletableFuture<String> secondResult = scheduler.submit("example.com", () -> {
+            started.incrementAndGet();
+            return CompletableFuture.completedFuture("second");
+        });
+
+        Thread.sleep(50);
+        assertEquals(1, started.get());
+        first.complete("first");
+        assertEquals("first", firstResult.get(1, TimeUnit.SECONDS));
+        assertEquals("second", secondResult.get(1, TimeUnit.SECONDS));
+        assertEquals(2, started.get());
+    }
+
+    @Test
+    void testRequestsAreSpacedByRate() throws Exception {
+        scheduler.configure("example.com", 20, 10);
+        long start = System.nanoTime();
+        CompletableFuture<?>[] results = new CompletableFuture<?>[3];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = scheduler.submit("example.com", () -> CompletableFuture.completedFuture(null));
+        }
+        CompletableFuture.allOf(results).get(2, TimeUnit.SECONDS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMs >= 90, "elapsed " + elapsedMs + " ms");
+    }
+
+    @Test
+    void testUrgentRequestOvertakesQueuedRequests() throws Exception {
+        scheduler.configure("example.com", 1000, 1);
+        CompletableFuture<String> gate = new CompletableFuture<>();
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        scheduler.submit("example.com", () -> gate);
+        CompletableFuture<?> crawl = scheduler.submit("example.com", () -> {
+            order.add("crawl");
+            return CompletableFuture.completedFuture(null);
+        });
+        CompletableFuture<?> urgent = scheduler.submit("example.com", () -> {
+            order.add("urgent");
+            return CompletableFuture.completedFuture(null);
+        }, true);
+
+        gate.complete("done");
+        CompletableFuture.allOf(crawl, urgent).get(1, TimeUnit.SECONDS);
+        assertEquals(List.of("urgent", "crawl"), order);
+    }
+
+    @Test
+    void testCancelAllDropsQueuedRequests() {
+        scheduler.configure("example.com", 0.1, 1);
+        scheduler.submit("example.com", () -> CompletableFuture.completedFuture(null));
+        CompletableFuture<Object> queued = scheduler.submit("example.com",
+                () -> CompletableFuture.completedFuture(null));
+        scheduler.cancelAll();
+        assertTrue(queued.isCancelled());
+    }
+
+    @Test
+    void testGlobalSlotsAreSharedBetweenHostsInTurn() throws Exception {
+        scheduler.shutdown();
+        FetchSettings settings = new FetchSettings();
+        settings.setMaxInFlight(1);
+        scheduler = new PolitenessScheduler(settings);
+        scheduler.configure("big.example", 1000, 4);
+        scheduler.configure("small.example", 1000, 4);
+
+        CompletableFuture<Void> gate = new CompletableFuture<>();
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<?>> results = new ArrayList<>();
+        results.add(scheduler.submit("big.example", () -> {
+            order.add("big");
+            return gate;
+        }));
+        for (int i = 0; i < 4; i++) {
+            results.add(scheduler.submit("big.example", () -> {
+                order.add("big");
+                return CompletableFuture.completedFuture(null);
+            }));
+        }
+        results.add(scheduler.submit("small.example", () -> {
+            order.add("small");
+            return CompletableFuture.completedFuture(null);
+        }));
+
+        Thread.sleep(50);
+        assertEquals(List.of("big"), order);
+        gate.complete(null);
+        CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).get(2, TimeUnit.SECONDS);
+        assertEquals(6, order.size());
+        assertTrue(order.indexOf("small") <= 2, "order " + order);
+    }
+}
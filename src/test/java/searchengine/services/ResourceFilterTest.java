@@ -0,0 +1,37 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.ResourceSettings;
+import searchengine.services.ResourceFilter.Kind;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResourceFilterTest {
+
+    private final ResourceFilter filter = new ResourceFilter(new ResourceSettings());
+
+    @Test
+    void testPagesAreFetchedWithoutProbe() {
+        assertEquals(Kind.HTML, filter.classify("http://example.com/"));
+        assertEquals(Kind.HTML, filter.classify("http://example.com/catalog"));
+        assertEquals(Kind.HTML, filter.classify("http://example.com/about.HTML"));
+        assertEquals(Kind.HTML, filter.classify("http://example.com/index.php?file=report.pdf"));
+        assertEquals(Kind.HTML, filter.classify("http://example.com/v1.2/"));
+    }
+
+    @Test
+    void testBinaryResourcesAreSkipped() {
+        assertEquals(Kind.SKIPPED, filter.classify("http://example.com/files/report.pdf"));
+        assertEquals(Kind.SKIPPED, filter.classify("http://example.com/img/Photo.JPG?size=2"));
+        assertEquals(Kind.SKIPPED, filter.classify("http://example.com/dist/archive.tar.gz"));
+    }
+
+    @Test
+    void testUnknownExtensionNeedsProbe() {
+        assertEquals(Kind.UNKNOWN, filter.classify("http://example.com/download.cgi"));
+
+        ResourceSettings settings = new ResourceSettings();
+        settings.setHeadProbe(false);
+        assertEquals(Kind.HTML, new ResourceFilter(settings).classify("http://example.com/download.cgi"));
+    }
+}
@@ -8,13 +8,17 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import searchengine.dao.IndexRepository;
 import searchengine.dao.LemmaRepository;
+import searchengine.dao.PageRepository;
 import searchengine.dao.SiteRepository;
 import searchengine.dto.search.SearchResponse;
 import searchengine.model.*;
+import searchengine.util.LemmaFinder;
+import searchengine.util.PageBitmap;
+import searchengine.util.TokenPositions;
 
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -26,6 +30,9 @@ public class SearchServiceImplTest {
     @Mock private SiteRepository siteRepository;
     @Mock private LemmaRepository lemmaRepository;
     @Mock private IndexRepository indexRepository;
+    @Mock private PageRepository pageRepository;
+    @Mock private InvertedIndex invertedIndex;
+    @Mock private LemmaFinder lemmaFinder;
 
     @InjectMocks
     private SearchServiceImpl searchService;
@@ -43,7 +50,9 @@ public class SearchServiceImplTest {
         examplePage = new Page();
         examplePage.setSite(exampleSite);
         examplePage.setPath("/test-page");
-        examplePage.setContent("<title>Test Page</title> Это тестовая страница.");
+        examplePage.setHtml("<title>Test Page</title> Это тестовая страница.");
+        examplePage.setTitle("Test Page");
+        examplePage.setText("Это тестовая страница.");
     }
 
     @Test
@@ -55,7 +64,7 @@ public class SearchServiceImplTest {
 
     @Test
     void testSearchSiteNotIndexed() {
-        when(siteRepository.findByUrl("http://invalid.com")).thenReturn(null);
+        when(siteRepository.findByUrlAndLiveTrue("http://invalid.com")).thenReturn(null);
         SearchResponse response = searchService.search("тест", "http://invalid.com", 0, 20);
         assertFalse(response.isResult());
         assertEquals("Сайт не найден или не проиндексирован", response.getError());
@@ -63,7 +72,7 @@ public class SearchServiceImplTest {
 
     @Test
     void testSearchWithNoIndexedSites() {
-        when(siteRepository.findAll()).thenReturn(Collections.emptyList());
+        when(siteRepository.findByLiveTrue()).thenReturn(Collections.emptyList());
         SearchResponse response = searchService.search("тест", null, 0, 20);
         assertFalse(response.isResult());
         assertEquals("Нет доступных проиндексированных сайтов", response.getError());
@@ -71,47 +80,199 @@ public class SearchServiceImplTest {
 
     @Test
     void testGetLemmaFrequencySum() {
-        Lemma lemma = new Lemma();
-        lemma.setLemma("тест");
-        lemma.setFrequency(5);
-        when(lemmaRepository.findBySiteAndLemma(any(), eq("тест")))
-                .thenReturn(Optional.of(lemma));
-        int freqSum = searchService.getLemmaFrequencySum("тест", List.of(exampleSite));
-        assertEquals(5, freqSum);
+        Lemma first = new Lemma();
+        first.setLemma("тест");
+        first.setFrequency(5);
+        Lemma second = new Lemma();
+        second.setLemma("тест");
+        second.setFrequency(2);
+        assertEquals(7, searchService.getLemmaFrequencySum(List.of(first, second)));
     }
 
     @Test
     void testFindPagesByLemma() {
+        when(indexRepository.findPageIdsByLemmaIds(List.of(1, 2))).thenReturn(List.of(10, 11));
+
+        PageBitmap resultPages = searchService.findPagesByLemma(List.of(1, 2), null);
+        assertEquals(PageBitmap.of(10, 11), resultPages);
+        verify(indexRepository, never()).findAll();
+    }
+
+    @Test
+    void testFindPagesByLemmaOnlyAmongCandidates() {
+        when(indexRepository.findPageIdsByLemmaIdsAndPageIds(eq(List.of(1)), anyCollection()))
+                .thenReturn(List.of(11));
+
+        PageBitmap resultPages = searchService.findPagesByLemma(List.of(1), PageBitmap.of(10, 11));
+        assertEquals(PageBitmap.of(11), resultPages);
+        verify(indexRepository, never()).findPageIdsByLemmaIds(any());
+    }
+
+    @Test
+    void testSearchRanksPagesWithPostingQueries() {
+        exampleSite.setId(1);
+        examplePage.setId(10);
+        Page otherPage = new Page();
+        otherPage.setId(11);
+        otherPage.setSite(exampleSite);
+        otherPage.setPath("/other");
+        otherPage.setTitle("Other");
+        otherPage.setText("Ещё одна тестовая страница.");
         Lemma lemma = new Lemma();
         lemma.setId(1);
-        lemma.setLemma("тест");
         lemma.setSite(exampleSite);
+        lemma.setLemma("тестовый");
+        lemma.setFrequency(2);
+
+        when(siteRepository.findByLiveTrue()).thenReturn(List.of(exampleSite));
+        when(lemmaFinder.getLemmaSet("тестовая")).thenReturn(Set.of("тестовый"));
+        when(lemmaRepository.findBySiteInAndLemmaIn(List.of(exampleSite), Set.of("тестовый")))
+                .thenReturn(List.of(lemma));
+        when(pageRepository.countBySite(exampleSite)).thenReturn(10);
+        when(indexRepository.findPageIdsByLemmaIds(List.of(1))).thenReturn(List.of(10, 11));
+        when(indexRepository.sumRanksByPageIds(anyCollection(), eq(List.of(1))))
+                .thenReturn(List.of(rank(10, 1), rank(11, 4)));
+        when(pageRepository.findSummariesByIdIn(anyCollection()))
+                .thenReturn(List.of(summary(examplePage), summary(otherPage)));
+
+        SearchResponse response = searchService.search("тестовая", null, 0, 20);
+        assertTrue(response.isResult());
+        assertEquals(2, response.getCount());
+        assertEquals("/other", response.getData().get(0).getUri());
+        assertEquals(1.0f, response.getData().get(0).getRelevance());
+        assertEquals(0.25f, response.getData().get(1).getRelevance());
+        verify(indexRepository, never()).findAll();
+    }
 
-        IndexEntity indexEntity = new IndexEntity();
-        indexEntity.setPage(examplePage);
-        indexEntity.setLemma(lemma);
+    @Test
+    void testSearchUsesInMemoryIndexWhenLoaded() {
+        exampleSite.setId(1);
+        examplePage.setId(10);
+        when(siteRepository.findByLiveTrue()).thenReturn(List.of(exampleSite));
+        when(lemmaFinder.getLemmaSet("тестовая")).thenReturn(Set.of("тестовый"));
+        when(invertedIndex.isReady()).thenReturn(true);
+        when(invertedIndex.search(List.of(1), Set.of("тестовый"), 0.8f)).thenReturn(Map.of(10, 2f));
+        when(pageRepository.findSummariesByIdIn(anyCollection())).thenReturn(List.of(summary(examplePage)));
+
+        SearchResponse response = searchService.search("тестовая", null, 0, 20);
+        assertTrue(response.isResult());
+        assertEquals(1, response.getCount());
+        assertEquals("/test-page", response.getData().get(0).getUri());
+        verify(indexRepository, never()).findPageIdsByLemmaIds(any());
+        verifyNoInteractions(lemmaRepository);
+    }
 
-        when(lemmaRepository.findBySiteAndLemma(any(), eq("тест")))
-                .thenReturn(Optional.of(lemma));
-        when(indexRepository.findAll()).thenReturn(Collections.singletonList(indexEntity));
+    @Test
+    void testSnippetHighlightsStoredPositions() {
+        exampleSite.setId(1);
+        examplePage.setId(10);
+        TokenPositions positions = new TokenPositions();
+        positions.add(1, 4, 8);
+        when(siteRepository.findByLiveTrue()).thenReturn(List.of(exampleSite));
+        when(lemmaFinder.getLemmaSet("тестовый")).thenReturn(Set.of("тестовый"));
+        when(invertedIndex.isReady()).thenReturn(true);
+        when(invertedIndex.search(List.of(1), Set.of("тестовый"), 0.8f)).thenReturn(Map.of(10, 1f));
+        when(pageRepository.findSummariesByIdIn(List.of(10))).thenReturn(List.of(summary(examplePage)));
+        when(indexRepository.findPositions(List.of(10), Set.of("тестовый")))
+                .thenReturn(List.of(positions(10, positions.toBytes())));
 
-        Set<Page> resultPages = searchService.findPagesByLemma("тест", List.of(exampleSite));
-        assertFalse(resultPages.isEmpty());
-        assertTrue(resultPages.contains(examplePage));
+        SearchResponse response = searchService.search("тестовый", null, 0, 20);
+        assertEquals("Это <b>тестовая</b> страница.", response.getData().get(0).getSnippet());
     }
 
     @Test
-    void testExtractTitle() {
-        String html = "<html><head><title>Пример заголовка</title></head><body>Содержимое страницы</body></html>";
-        String title = searchService.extractTitle(html);
-        assertEquals("Пример заголовка", title);
+    void testSearchLoadsOnlyRequestedWindow() {
+        exampleSite.setId(1);
+        examplePage.setId(10);
+        when(siteRepository.findByLiveTrue()).thenReturn(List.of(exampleSite));
+        when(lemmaFinder.getLemmaSet("тестовая")).thenReturn(Set.of("тестовый"));
+        when(invertedIndex.isReady()).thenReturn(true);
+        when(invertedIndex.search(List.of(1), Set.of("тестовый"), 0.8f))
+                .thenReturn(Map.of(10, 2f, 11, 4f, 12, 1f));
+        when(pageRepository.findSummariesByIdIn(List.of(10))).thenReturn(List.of(summary(examplePage)));
+
+        SearchResponse response = searchService.search("тестовая", null, 1, 1);
+        assertEquals(3, response.getCount());
+        assertEquals(1, response.getData().size());
+        assertEquals("/test-page", response.getData().get(0).getUri());
+        assertEquals(0.5f, response.getData().get(0).getRelevance());
+        verify(pageRepository).findSummariesByIdIn(List.of(10));
+        verify(pageRepository, never()).findAllById(any());
     }
 
     @Test
-    void testMakeSnippet() {
-        String html = "<html><body>Это <b>тест</b>овая страница с некоторым текстом.</body></html>";
-        Set<String> queryLemmas = Set.of("тест");
-        String snippet = searchService.makeSnippet(html, queryLemmas);
-        assertTrue(snippet.contains("<b>тест</b>"));
+    void testTopPagesOrdersByRelevanceThenId() {
+        Map<Integer, Float> relevance = Map.of(1, 1f, 2, 5f, 3, 3f, 4, 5f, 5, 2f);
+
+        assertEquals(List.of(2, 4, 3), SearchServiceImpl.topPages(relevance, 0, 3));
+        assertEquals(List.of(5, 1), SearchServiceImpl.topPages(relevance, 3, 10));
+        assertTrue(SearchServiceImpl.topPages(relevance, 5, 10).isEmpty());
+    }
+
+    private static PageRepository.PageSummary summary(Page page) {
+        return new PageRepository.PageSummary() {
+            @Override
+            public int getId() {
+                return page.getId();
+            }
+
+            @Override
+            public String getPath() {
+                return page.getPath();
+            }
+
+            @Override
+            public String getTitle() {
+                return page.getTitle();
+            }
+
+            @Override
+            public String getText() {
+                return page.getText();
+            }
+
+            @Override
+            public int getSiteId() {
+                return page.getSite().getId();
+            }
+
+            @Override
+            public String getSiteUrl() {
+                return page.getSite().getUrl();
+            }
+
+            @Override
+            public String getSiteName() {
+                return page.getSite().getName();
+            }
+        };
+    }
+
+    private static IndexRepository.PagePositions positions(int pageId, byte[] positions) {
+        return new IndexRepository.PagePositions() {
+            @Override
+            public int getPageId() {
+                return pageId;
+            }
+
+            @Override
+            public byte[] getPositions() {
+                return positions;
+            }
+        };
+    }
+
+    private static IndexRepository.PageRank rank(int pageId, double relevance) {
+        return new IndexRepository.PageRank() {
+            @Override
+            public int getPageId() {
+                return pageId;
+            }
+
+            @Override
+            public double getRelevance() {
+                return relevance;
+            }
+        };
     }
 }
@@ -0,0 +1,167 @@
+package searchengine.services;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.FetchSettings;
+import searchengine.config.SeedSettings;
+import searchengine.util.RobotsRules;
+import searchengine.util.SitemapParser.SitemapUrl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SiteSeederTest {
+
+    private HttpServer server;
+    private HttpClientPageFetcher fetcher;
+    private PolitenessScheduler scheduler;
+    private SeedSettings settings;
+    private SiteSeeder seeder;
+    private String baseUrl;
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+
+        FetchSettings fetchSettings = new FetchSettings();
+        fetcher = new HttpClientPageFetcher(fetchSettings);
+        scheduler = new PolitenessScheduler(fetchSettings);
+        scheduler.configure("localhost", 1000, 4);
+        settings = new SeedSettings();
+        seeder = new SiteSeeder(fetcher, scheduler, settings, fetchSettings.getMaxBodySize());
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+        fetcher.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void testRobotsAndNestedSitemapsAreLoaded() throws Exception {
+        serve("/robots.txt", "text/plain", ("User-agent: *\nDisallow: /cart\nCrawl-delay: 2\n"
+                + "Sitemap: " + baseUrl + "/sitemap_index.xml\n").getBytes(StandardCharsets.UTF_8));
+        serve("/sitemap_index.xml", "application/xml", utf8("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+                + "<sitemap><loc>" + baseUrl + "/sitemap-pages.xml</loc></sitemap>"
+                + "<sitemap><loc>" + baseUrl + "/sitemap-news.xml.gz</loc></sitemap>"
+                + "<sitemap><loc>" + baseUrl + "/sitemap_index.xml</loc></sitemap>"
+                + "</sitemapindex>"));
+        serve("/sitemap-pages.xml", "application/xml", utf8(urlset(
+                "<url><loc>" + baseUrl + "/about</loc><lastmod>2024-05-01</lastmod></url>"
+                        + "<url><loc>" + baseUrl + "/contacts</loc></url>")));
+        serve("/sitemap-news.xml.gz", "application/octet-stream", gzip(utf8(urlset(
+                "<url><loc>" + baseUrl + "/news/1</loc><lastmod>2024-05-02T10:00:00+03:00</lastmod></url>"))));
+
+        RobotsRules robots = seeder.loadRobots(baseUrl + "/").get(5, TimeUnit.SECONDS);
+        assertFalse(robots.isAllowed("/cart/checkout"));
+        assertEquals(2.0, robots.getCrawlDelaySeconds());
+
+        List<SitemapUrl> urls = seeder.loadSitemaps(baseUrl + "/", robots).get(5, TimeUnit.SECONDS);
+        Map<String, Instant> lastmods = urls.stream().collect(Collectors.toMap(SitemapUrl::getUrl,
+                url -> url.getLastmod() != null ? url.getLastmod() : Instant.EPOCH));
+        assertEquals(3, lastmods.size());
+        assertEquals(Instant.parse("2024-05-01T00:00:00Z"), lastmods.get(baseUrl + "/about"));
+        assertEquals(Instant.EPOCH, lastmods.get(baseUrl + "/contacts"));
+        assertEquals(Instant.parse("2024-05-02T07:00:00Z"), lastmods.get(baseUrl + "/news/1"));
+        assertEquals(1, requests.get("/sitemap_index.xml").get());
+    }
+
+    @Test
+    void testMissingFilesFallBackToDefaults() throws Exception {
+        serve("/sitemap.xml", "application/xml", utf8(urlset("<url><loc>" + baseUrl + "/page</loc></url>")));
+
+        RobotsRules robots = seeder.loadRobots(baseUrl + "/").get(5, TimeUnit.SECONDS);
+        assertTrue(robots.isAllowed("/anything"));
+        assertEquals(0.0, robots.getCrawlDelaySeconds());
+
+        List<SitemapUrl> urls = seeder.loadSitemaps(baseUrl + "/", robots).get(5, TimeUnit.SECONDS);
+        assertEquals(1, urls.size());
+        assertEquals(baseUrl + "/page", urls.get(0).getUrl());
+        assertNull(urls.get(0).getLastmod());
+    }
+
+    @Test
+    void testServerErrorDisallowsSiteUntilNextCrawl() throws Exception {
+        server.createContext("/robots.txt", exchange -> {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+
+        RobotsRules robots = seeder.loadRobots(baseUrl + "/").get(5, TimeUnit.SECONDS);
+        assertTrue(robots.isUnavailable());
+        assertFalse(robots.isAllowed("/"));
+    }
+
+    @Test
+    void testClientErrorAllowsEverything() throws Exception {
+        server.createContext("/robots.txt", exchange -> {
+            exchange.sendResponseHeaders(403, -1);
+            exchange.close();
+        });
+
+        RobotsRules robots = seeder.loadRobots(baseUrl + "/").get(5, TimeUnit.SECONDS);
+        assertFalse(robots.isUnavailable());
+        assertTrue(robots.isAllowed("/anything"));
+    }
+
+    @Test
+    void testSitemapUrlLimit() throws Exception {
+        StringBuilder entries = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            entries.append("<url><loc>").append(baseUrl).append("/p").append(i).append("</loc></url>");
+        }
+        serve("/sitemap.xml", "application/xml", utf8(urlset(entries.toString())));
+        settings.setMaxSitemapUrls(4);
+
+        List<SitemapUrl> urls = seeder.loadSitemaps(baseUrl + "/", RobotsRules.allowAll()).get(5, TimeUnit.SECONDS);
+        assertEquals(4, urls.size());
+    }
+
+    private void serve(String path, String contentType, byte[] body) {
+        server.createContext(path, exchange -> {
+            requests.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+            exchange.getResponseHeaders().add("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+    }
+
+    private static String urlset(String entries) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">" + entries + "</urlset>";
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+}
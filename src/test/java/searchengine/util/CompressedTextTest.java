@@ -0,0 +1,22 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompressedTextTest {
+
+    @Test
+    void testRoundTrip() {
+        String html = "<html><head><title>Тест</title></head><body>" + "Привет, мир! ".repeat(500) + "</body></html>";
+        byte[] compressed = CompressedText.compress(html);
+        assertTrue(compressed.length < html.length() / 10);
+        assertEquals(html, CompressedText.decompress(compressed));
+    }
+
+    @Test
+    void testEmptyValues() {
+        assertEquals("", CompressedText.decompress(CompressedText.compress("")));
+        assertEquals("", CompressedText.decompress(null));
+    }
+}
@@ -0,0 +1,28 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContentHashTest {
+
+    @Test
+    void testSha256Hex() {
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", ContentHash.sha256(""));
+        assertEquals(64, ContentHash.sha256("Привет").length());
+    }
+
+    @Test
+    void testPageHashCoversTitle() {
+        String text = "Это тестовая страница.";
+        assertEquals(ContentHash.ofPage("Тест", text), ContentHash.ofPage("Тест", text));
+        assertNotEquals(ContentHash.ofPage("Тест", text), ContentHash.ofPage("Новый тест", text));
+        assertNotEquals(ContentHash.ofPage("Тест", text), ContentHash.sha256(text));
+    }
+
+    @Test
+    void testPageHashSeparatesTitleFromText() {
+        assertNotEquals(ContentHash.ofPage("Тест страница", "текст"), ContentHash.ofPage("Тест", "страница текст"));
+        assertNotEquals(ContentHash.ofPage("ab", ""), ContentHash.ofPage("a", "b"));
+    }
+}
@@ -0,0 +1,92 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+import searchengine.util.HtmlExtractor.ExtractedPage;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HtmlExtractorTest {
+
+    @Test
+    void testExtractsTitleTextAndLinks() {
+        String html = "<!DOCTYPE html><html><head><title>Главная &amp; новости</title>"
+                + "<script>var a = '<a href=\"/js\">';</script><style>p { color: red }</style></head>"
+                + "<body><!-- <a href=\"/comment\"> --><h1>Заголовок</h1><p>Первый&nbsp;абзац</p>"
+                + "<a href=\"/about?x=1&amp;y=2\">О нас</a> <A HREF='news/'>Новости</A> "
+                + "<a href=\"https://other.ru/\">Чужой</a> <a name=\"anchor\">Якорь</a></body></html>";
+
+        ExtractedPage page = HtmlExtractor.extract(html, "http://site.ru/dir/index.html");
+
+        assertEquals("Главная & новости", page.getTitle());
+        assertEquals("Главная & новости Заголовок Первый абзац О нас Новости Чужой Якорь", page.getText());
+        assertEquals(List.of("http://site.ru/about?x=1&y=2", "http://site.ru/dir/news/", "https://other.ru/"),
+                page.getLinks());
+    }
+
+    @Test
+    void testResolvesLinksAgainstBaseHref() {
+        String html = "<head><base href=\"http://cdn.site.ru/root/\"><base href=\"/ignored/\"></head>"
+                + "<body><a href=\"page\">x</a></body>";
+
+        assertEquals(List.of("http://cdn.site.ru/root/page"),
+                HtmlExtractor.extract(html, "http://site.ru/").getLinks());
+    }
+
+    @Test
+    void testResolvesRelativeLinksLikeBrowser() {
+        String html = "<a href=\"?page=2\">2</a><a href=\"../up\">up</a><a href=\"//cdn.site.ru/x\">cdn</a>"
+                + "<a href=\"#top\">top</a><a href=\"javascript:void(0)\">js</a>";
+
+        assertEquals(List.of("http://site.ru/dir/list?page=2", "http://site.ru/up", "http://cdn.site.ru/x",
+                        "http://site.ru/dir/list?p=1#top"),
+                HtmlExtractor.extract(html, "http://site.ru/dir/list?p=1").getLinks());
+    }
+
+    @Test
+    void testSeparatesWordsAtBlockBoundaries() {
+        String html = "<div>один</div><div>два<br>три</div><span>че</span><b>тыре</b>";
+
+        assertEquals("один два три четыре", HtmlExtractor.extract(html, "http://site.ru/").getText());
+    }
+
+    @Test
+    void testPageWithoutTitle() {
+        ExtractedPage page = HtmlExtractor.extract("<p>текст", "http://site.ru/");
+
+        assertEquals("", page.getTitle());
+        assertEquals("текст", page.getText());
+        assertTrue(page.getLinks().isEmpty());
+    }
+
+    @Test
+    void testDecodeUsesHeaderCharset() {
+        byte[] body = "<p>Привет</p>".getBytes(Charset.forName("windows-1251"));
+
+        assertEquals("<p>Привет</p>", HtmlExtractor.decode(body, "windows-1251"));
+    }
+
+    @Test
+    void testDecodeSniffsMetaCharset() {
+        String html = "<html><head><meta charset=\"windows-1251\"></head><body>Привет</body></html>";
+        byte[] body = html.getBytes(Charset.forName("windows-1251"));
+
+        assertEquals(html, HtmlExtractor.decode(body, null));
+    }
+
+    @Test
+    void testDecodeDefaultsToUtf8AndSkipsBom() {
+        byte[] text = "<p>Привет</p>".getBytes(StandardCharsets.UTF_8);
+        byte[] body = new byte[text.length + 3];
+        body[0] = (byte) 0xEF;
+        body[1] = (byte) 0xBB;
+        body[2] = (byte) 0xBF;
+        System.arraycopy(text, 0, body, 3, text.length);
+
+        assertEquals("<p>Привет</p>", HtmlExtractor.decode(body, null));
+        assertEquals("", HtmlExtractor.decode(null, null));
+    }
+}
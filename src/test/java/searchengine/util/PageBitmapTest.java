@@ -0,0 +1,119 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PageBitmapTest {
+
+    @Test
+    void testAddRemoveContains() {
+        PageBitmap bitmap = PageBitmap.of(5, 70000, 1, 5);
+
+        assertEquals(3, bitmap.cardinality());
+        assertTrue(bitmap.contains(70000));
+        assertFalse(bitmap.contains(2));
+        assertArrayEquals(new int[]{1, 5, 70000}, bitmap.toArray());
+
+        bitmap.remove(70000);
+        bitmap.remove(3);
+        assertArrayEquals(new int[]{1, 5}, bitmap.toArray());
+    }
+
+    @Test
+    void testDenseContainerSwitchesToBitmapAndBack() {
+        PageBitmap bitmap = new PageBitmap();
+        for (int value = 0; value < 10000; value++) {
+            bitmap.add(value * 2);
+        }
+        assertEquals(10000, bitmap.cardinality());
+        assertTrue(bitmap.contains(19998));
+        assertFalse(bitmap.contains(19999));
+
+        for (int value = 0; value < 9000; value++) {
+            bitmap.remove(value * 2);
+        }
+        assertEquals(1000, bitmap.cardinality());
+        assertEquals(18000, bitmap.toArray()[0]);
+    }
+
+    @Test
+    void testRunOptimizeKeepsValues() {
+        PageBitmap bitmap = new PageBitmap();
+        for (int value = 100; value < 50000; value++) {
+            bitmap.add(value);
+        }
+        bitmap.add(200000);
+        bitmap.runOptimize();
+
+        assertEquals(49901, bitmap.cardinality());
+        assertTrue(bitmap.contains(100));
+        assertTrue(bitmap.contains(49999));
+        assertFalse(bitmap.contains(50000));
+
+        bitmap.remove(1000);
+        bitmap.add(99);
+        assertFalse(bitmap.contains(1000));
+        assertTrue(bitmap.contains(99));
+        assertEquals(49901, bitmap.cardinality());
+    }
+
+    @Test
+    void testSetOperationsMatchTreeSet() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            TreeSet<Integer> first = randomSet(random);
+            TreeSet<Integer> second = randomSet(random);
+            PageBitmap a = toBitmap(first, round % 2 == 0);
+            PageBitmap b = toBitmap(second, round % 3 == 0);
+
+            TreeSet<Integer> and = new TreeSet<>(first);
+            and.retainAll(second);
+            TreeSet<Integer> or = new TreeSet<>(first);
+            or.addAll(second);
+            TreeSet<Integer> andNot = new TreeSet<>(first);
+            andNot.removeAll(second);
+
+            assertArrayEquals(toArray(and), a.and(b).toArray());
+            assertEquals(and.size(), a.andCardinality(b));
+            assertArrayEquals(toArray(or), a.or(b).toArray());
+            assertArrayEquals(toArray(andNot), a.andNot(b).toArray());
+            assertArrayEquals(toArray(first), a.toArray(), "аргументы не меняются");
+        }
+    }
+
+    /**
+     * Смесь редких значений, плотных участков и сплошных интервалов в нескольких контейнерах.
+     */
+    private static TreeSet<Integer> randomSet(Random random) {
+        TreeSet<Integer> set = new TreeSet<>();
+        for (int i = 0; i < 3000; i++) {
+            set.add(random.nextInt(300000));
+        }
+        int denseStart = random.nextInt(4) << 16;
+        for (int i = 0; i < 30000; i++) {
+            set.add(denseStart + random.nextInt(65536));
+        }
+        int runStart = random.nextInt(200000);
+        for (int value = runStart; value < runStart + 20000; value++) {
+            set.add(value);
+        }
+        return set;
+    }
+
+    private static PageBitmap toBitmap(TreeSet<Integer> set, boolean optimize) {
+        PageBitmap bitmap = new PageBitmap();
+        set.forEach(bitmap::add);
+        if (optimize) {
+            bitmap.runOptimize();
+        }
+        return bitmap;
+    }
+
+    private static int[] toArray(TreeSet<Integer> set) {
+        return set.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
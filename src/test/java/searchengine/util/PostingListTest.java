@@ -0,0 +1,80 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PostingListTest {
+
+    @Test
+    void testPutKeepsPagesOrdered() {
+        PostingList postings = new PostingList();
+        postings.put(5, 1);
+        postings.put(1, 2);
+        postings.put(9, 3);
+        postings.put(5, 4);
+
+        assertEquals(3, postings.size());
+        assertArrayEquals(new int[]{1, 5, 9}, pageIds(postings));
+        assertEquals(4, postings.rank(1));
+    }
+
+    @Test
+    void testSealSortsAppendedPages() {
+        PostingList postings = new PostingList();
+        postings.append(7, 1);
+        postings.append(3, 2);
+        postings.append(7, 5);
+        postings.seal();
+
+        assertArrayEquals(new int[]{3, 7}, pageIds(postings));
+        assertEquals(5, postings.rank(1));
+    }
+
+    @Test
+    void testRemove() {
+        PostingList postings = new PostingList();
+        for (int pageId = 1; pageId <= 5; pageId++) {
+            postings.put(pageId, pageId);
+        }
+
+        assertTrue(postings.remove(3));
+        assertFalse(postings.remove(3));
+        assertArrayEquals(new int[]{1, 2, 4, 5}, pageIds(postings));
+        assertEquals(4, postings.rank(2));
+    }
+
+    @Test
+    void testRemoveAll() {
+        PostingList postings = new PostingList();
+        for (int pageId = 1; pageId <= 5; pageId++) {
+            postings.put(pageId, pageId);
+        }
+
+        postings.removeAll(PageBitmap.of(2, 4, 6));
+        assertArrayEquals(new int[]{1, 3, 5}, pageIds(postings));
+        assertEquals(5, postings.rank(2));
+    }
+
+    @Test
+    void testSeekFindsFirstPageNotLess() {
+        PostingList postings = new PostingList();
+        for (int pageId = 0; pageId < 100; pageId += 2) {
+            postings.put(pageId, 1);
+        }
+
+        assertEquals(5, postings.seek(10, 0));
+        assertEquals(6, postings.seek(11, 0));
+        assertEquals(6, postings.seek(11, 6));
+        assertEquals(49, postings.seek(98, 10));
+        assertEquals(postings.size(), postings.seek(99, 0));
+    }
+
+    private static int[] pageIds(PostingList postings) {
+        int[] ids = new int[postings.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = postings.pageId(i);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,87 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RobotsRulesTest {
+
+    private static final String ROBOTS = "User-agent: *\n"
+            + "Disallow: /admin\n"
+            + "Disallow: /*?sort=\n"
+            + "Crawl-delay: 3\n"
+            + "\n"
+            + "User-agent: HeliontSearchBot\n"
+            + "Disallow: /private/\n"
+            + "Allow: /private/public\n"
+            + "Disallow: /*.pdf$\n"
+            + "Crawl-delay: 0.5 # полсекунды\n"
+            + "\n"
+            + "Sitemap: http://example.com/sitemap_index.xml\n";
+
+    @Test
+    void testMostSpecificGroupIsSelected() {
+        RobotsRules rules = RobotsRules.parse(ROBOTS, "HeliontSearchBot/1.0");
+        assertTrue(rules.isAllowed("/admin"));
+        assertFalse(rules.isAllowed("/private/data"));
+        assertEquals(0.5, rules.getCrawlDelaySeconds());
+        assertEquals(List.of("http://example.com/sitemap_index.xml"), rules.getSitemaps());
+    }
+
+    @Test
+    void testWildcardGroupForOtherAgents() {
+        RobotsRules rules = RobotsRules.parse(ROBOTS, "OtherBot");
+        assertFalse(rules.isAllowed("/admin/users"));
+        assertFalse(rules.isAllowed("/catalog?sort=price"));
+        assertTrue(rules.isAllowed("/catalog?page=2"));
+        assertEquals(3.0, rules.getCrawlDelaySeconds());
+    }
+
+    @Test
+    void testLongestMatchAndEndAnchor() {
+        RobotsRules rules = RobotsRules.parse(ROBOTS, "HeliontSearchBot");
+        assertTrue(rules.isAllowed("/private/public/page"));
+        assertFalse(rules.isAllowed("/docs/price.pdf"));
+        assertTrue(rules.isAllowed("/docs/price.pdf?download=1"));
+    }
+
+    @Test
+    void testEmptyDisallowAllowsEverything() {
+        RobotsRules rules = RobotsRules.parse("User-agent: *\nDisallow:\n", "HeliontSearchBot");
+        assertTrue(rules.isAllowed("/"));
+        assertTrue(RobotsRules.allowAll().isAllowed("/admin"));
+    }
+
+    @Test
+    void testUnavailableRobotsDisallowsEverything() {
+        assertFalse(RobotsRules.unavailable().isAllowed("/"));
+        assertFalse(RobotsRules.unavailable().isAllowed("/catalog?page=2"));
+        assertTrue(RobotsRules.unavailable().isUnavailable());
+        assertFalse(RobotsRules.allowAll().isUnavailable());
+    }
+
+    @Test
+    void testWildcardSegments() {
+        RobotsRules rules = RobotsRules.parse("User-agent: *\n"
+                + "Disallow: /*/print*.html$\n"
+                + "Disallow: /a*b*c\n"
+                + "Disallow: /end*$\n", "HeliontSearchBot");
+        assertFalse(rules.isAllowed("/news/2024/print-version.html"));
+        assertTrue(rules.isAllowed("/news/2024/print-version.html?x=1"));
+        assertFalse(rules.isAllowed("/a-b-c-d"));
+        assertTrue(rules.isAllowed("/a-c-b"));
+        assertFalse(rules.isAllowed("/endless"));
+    }
+
+    @Test
+    void testManyWildcardsDoNotBacktrack() {
+        RobotsRules rules = RobotsRules.parse("User-agent: *\nDisallow: /" + "*a".repeat(30) + "*b$\n",
+                "HeliontSearchBot");
+        String path = "/" + "a".repeat(100_000);
+        assertTimeoutPreemptively(Duration.ofSeconds(1), () -> assertTrue(rules.isAllowed(path)));
+        assertFalse(rules.isAllowed(path + "b"));
+    }
+}
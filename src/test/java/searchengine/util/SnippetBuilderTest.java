@@ -0,0 +1,77 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnippetBuilderTest {
+
+    @Test
+    void testHighlightsStoredSpans() {
+        String text = "Кошки   спят. Кошка  <спит> на окне.";
+        TokenPositions cat = new TokenPositions();
+        cat.add(0, 0, 5);
+        cat.add(2, 14, 5);
+
+        assertEquals("<b>Кошки</b> спят. <b>Кошка</b> &lt;спит&gt; на окне.",
+                SnippetBuilder.build(text, List.of(cat)));
+    }
+
+    @Test
+    void testPicksWindowWithMostDistinctLemmas() {
+        StringBuilder text = new StringBuilder();
+        TokenPositions cat = new TokenPositions();
+        TokenPositions dog = new TokenPositions();
+        for (int token = 0; token < 200; token++) {
+            int start = text.length();
+            String word = token == 5 || token == 150 ? "кот" : token == 152 ? "пёс" : "слово";
+            text.append(word).append(' ');
+            if (word.equals("кот")) {
+                cat.add(token, start, word.length());
+            } else if (word.equals("пёс")) {
+                dog.add(token, start, word.length());
+            }
+        }
+
+        String snippet = SnippetBuilder.build(text.toString(), List.of(cat, dog));
+        assertTrue(snippet.contains("<b>кот</b> слово <b>пёс</b>"), snippet);
+        assertTrue(snippet.startsWith("...слово"), snippet);
+        assertTrue(snippet.endsWith("слово..."), snippet);
+        assertTrue(snippet.length() <= SnippetBuilder.SNIPPET_LENGTH + 30, snippet);
+    }
+
+    @Test
+    void testWithoutPositionsReturnsTextStart() {
+        String text = "слово ".repeat(100);
+
+        String snippet = SnippetBuilder.build(text, Collections.emptyList());
+        assertTrue(snippet.startsWith("слово слово"));
+        assertTrue(snippet.endsWith("слово..."));
+        assertFalse(snippet.contains("<b>"));
+    }
+
+    @Test
+    void testIgnoresPositionsOutsideText() {
+        TokenPositions stale = new TokenPositions();
+        stale.add(40, 500, 4);
+
+        assertEquals("Короткий текст", SnippetBuilder.build("Короткий текст", List.of(stale)));
+    }
+
+    @Test
+    void testPositionsSurviveEncoding() {
+        TokenPositions positions = new TokenPositions();
+        positions.add(0, 0, 5);
+        positions.add(3, 200, 12);
+        positions.add(100000, 900000, 7);
+
+        TokenPositions decoded = TokenPositions.fromBytes(positions.toBytes());
+        assertEquals(3, decoded.size());
+        assertEquals(100000, decoded.token(2));
+        assertEquals(900000, decoded.start(2));
+        assertEquals(12, decoded.length(1));
+    }
+}
@@ -0,0 +1,43 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UrlNormalizerTest {
+
+    private final UrlNormalizer normalizer = new UrlNormalizer(List.of(), List.of("utm_*", "fbclid"), true);
+
+    @Test
+    void testVariantsOfOnePageAreEqual() {
+        String canonical = "http://example.com/catalog/phones";
+        assertEquals(canonical, normalizer.normalize("HTTP://Example.COM:80/catalog/phones/"));
+        assertEquals(canonical, normalizer.normalize("http://example.com/catalog/phones#reviews"));
+        assertEquals(canonical, normalizer.normalize("http://example.com//catalog/./old/../phones"));
+        assertEquals(canonical, normalizer.normalize("http://example.com/catalog/phones;jsessionid=A1B2"));
+        assertEquals(canonical, normalizer.normalize("http://example.com/catalog/phones?utm_source=mail&fbclid=x"));
+    }
+
+    @Test
+    void testQueryParamsAreSortedAndEscapesUnified() {
+        assertEquals("https://example.com/search?page=2&q=%D0%B0",
+                normalizer.normalize("https://example.com:443/search?q=%d0%b0&page=2&utm_medium=cpc"));
+        assertEquals("http://example.com/~user", normalizer.normalize("http://example.com/%7Euser"));
+        assertEquals("http://example.com:8080/", normalizer.normalize("http://example.com:8080"));
+    }
+
+    @Test
+    void testAllowListKeepsOnlyListedParams() {
+        UrlNormalizer strict = new UrlNormalizer(List.of("page"), List.of(), false);
+        assertEquals("http://example.com/news/?page=3", strict.normalize("http://example.com/news/?sort=date&page=3"));
+    }
+
+    @Test
+    void testNonHttpUrlsAreRejected() {
+        assertNull(normalizer.normalize("mailto:info@example.com"));
+        assertNull(normalizer.normalize("javascript:void(0)"));
+        assertNull(normalizer.normalize("http://exa mple.com/%"));
+    }
+}
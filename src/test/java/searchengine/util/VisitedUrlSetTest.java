@@ -0,0 +1,46 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VisitedUrlSetTest {
+
+    @Test
+    void testSeededPathsAreAlreadyClaimed() {
+        VisitedUrlSet visited = new VisitedUrlSet();
+        visited.seed(List.of("/", "/about"));
+        assertFalse(visited.claim("/about"));
+        assertTrue(visited.claim("/contacts"));
+        assertFalse(visited.claim("/contacts"));
+        assertEquals(3, visited.size());
+    }
+
+    @Test
+    void testOnlyOneThreadClaimsPath() throws Exception {
+        VisitedUrlSet visited = new VisitedUrlSet();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger winners = new AtomicInteger();
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> {
+                start.await();
+                for (int p = 0; p < 1000; p++) {
+                    if (visited.claim("/page" + p)) {
+                        winners.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(1000, winners.get());
+    }
+}
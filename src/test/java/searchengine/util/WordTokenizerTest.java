@@ -0,0 +1,137 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WordTokenizerTest {
+
+    private static final Logger log = LoggerFactory.getLogger(WordTokenizerTest.class);
+
+    private static final String SAMPLE = "Ёлки-палки, ЁЖ и ёж! Java 17 вышла в 2021 году; тест123тест, naïve café.";
+
+    @Test
+    void testSplitsLowercasesAndFoldsYo() {
+        List<String> words = new ArrayList<>();
+        List<Boolean> cyrillic = new ArrayList<>();
+        WordTokenizer.forEachWord(SAMPLE, (word, isCyrillic) -> {
+            words.add(word);
+            cyrillic.add(isCyrillic);
+        });
+        assertEquals(List.of("елки", "палки", "еж", "и", "еж", "java", "вышла", "в", "году",
+                "тест", "тест", "naïve", "café"), words);
+        assertTrue(cyrillic.get(0));
+        assertFalse(cyrillic.get(5));
+        assertFalse(cyrillic.get(12));
+    }
+
+    @Test
+    void testMixedScriptWordIsNotCyrillic() {
+        List<Boolean> cyrillic = new ArrayList<>();
+        WordTokenizer.forEachWord("словоword", (word, isCyrillic) -> cyrillic.add(isCyrillic));
+        assertEquals(List.of(false), cyrillic);
+    }
+
+    @Test
+    void testReportsWordStarts() {
+        String text = "Ёлки-палки, ёж!";
+        List<Integer> starts = new ArrayList<>();
+        WordTokenizer.forEachWord(text, (word, isCyrillic, start) -> {
+            assertEquals(word, text.substring(start, start + word.length()).toLowerCase().replace('ё', 'е'));
+            starts.add(start);
+        });
+        assertEquals(List.of(0, 5, 12), starts);
+    }
+
+    @Test
+    void testEmptyAndPunctuationOnlyText() {
+        List<String> words = new ArrayList<>();
+        WordTokenizer.forEachWord("", (word, isCyrillic) -> words.add(word));
+        WordTokenizer.forEachWord(" ,.-— 42 ", (word, isCyrillic) -> words.add(word));
+        assertTrue(words.isEmpty());
+    }
+
+    @Test
+    void testLongWordGrowsBuffer() {
+        String longWord = "а".repeat(1000);
+        List<String> words = new ArrayList<>();
+        WordTokenizer.forEachWord("x " + longWord.toUpperCase() + " y", (word, isCyrillic) -> words.add(word));
+        assertEquals(List.of("x", longWord, "y"), words);
+    }
+
+    /**
+     * Сравнение с прежним разбором через регулярные выражения.
+     * Запуск: mvn test -Dtest=WordTokenizerTest -Dbenchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkAgainstRegexSplit() {
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 1_000_000) {
+            builder.append(SAMPLE).append(" Поисковый движок индексирует страницы сайта, ")
+                    .append("сохраняет леммы и считает релевантность. ");
+        }
+        String text = builder.toString();
+        int rounds = 30;
+        for (int i = 0; i < 10; i++) {
+            regexIndexerPath(text);
+            regexQueryPath(text);
+            tokenizerPath(text);
+        }
+        long indexer = time(() -> regexIndexerPath(text), rounds);
+        long query = time(() -> regexQueryPath(text), rounds);
+        long tokenizer = time(() -> tokenizerPath(text), rounds);
+        log.info("text: {} chars, {} rounds", text.length(), rounds);
+        log.info("split(\\W+) + matches:   {} MB/s", String.format("%.1f", throughput(text, rounds, indexer)));
+        log.info("replaceAll + split:     {} MB/s", String.format("%.1f", throughput(text, rounds, query)));
+        log.info("WordTokenizer:          {} MB/s", String.format("%.1f", throughput(text, rounds, tokenizer)));
+    }
+
+    private static int regexIndexerPath(String text) {
+        int count = 0;
+        for (String token : text.toLowerCase().split("\\W+")) {
+            if (!token.trim().isEmpty() && token.matches("[а-яёa-z]+")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int regexQueryPath(String text) {
+        int count = 0;
+        for (String word : text.toLowerCase().replaceAll("([^а-я\\s])", " ").trim().split("\\s+")) {
+            if (!word.isBlank()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int tokenizerPath(String text) {
+        int[] count = new int[1];
+        WordTokenizer.forEachWord(text, (word, cyrillic) -> {
+            if (cyrillic) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    private static long time(Runnable action, int rounds) {
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            action.run();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static double throughput(String text, int rounds, long nanos) {
+        return (double) text.length() * rounds / (1 << 20) / (nanos / 1e9);
+    }
+}